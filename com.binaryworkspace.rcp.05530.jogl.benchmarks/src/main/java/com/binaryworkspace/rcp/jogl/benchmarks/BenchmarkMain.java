@@ -0,0 +1,47 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * Entry point of {@code benchmarks.jar}: the JMH command line with defaults
+ * suited to tracking results across releases.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Unless given on the command line, results are written as JSON to
+ * {@value #DEFAULT_RESULT_FILE} ({@code -rf json -rff ...}) and the GC
+ * profiler is enabled ({@code -prof gc}) to report the allocation per
+ * operation.
+ * <li>All other JMH options (benchmark regex, -p, -f, -wi, -i, -l, -h ...)
+ * are passed through unchanged.
+ * </ul>
+ */
+public final class BenchmarkMain {
+
+	public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws Exception {
+		List<String> options = new ArrayList<String>(Arrays.asList(args));
+		if (!options.contains("-rf")) {
+			options.add(0, "json");
+			options.add(0, "-rf");
+		}
+		if (!options.contains("-rff")) {
+			options.add(0, DEFAULT_RESULT_FILE);
+			options.add(0, "-rff");
+		}
+		if (!options.contains("-prof")) {
+			options.add(0, "gc");
+			options.add(0, "-prof");
+		}
+		Main.main(options.toArray(new String[options.size()]));
+	}
+
+	private BenchmarkMain() {
+		// Entry point only
+	}
+}
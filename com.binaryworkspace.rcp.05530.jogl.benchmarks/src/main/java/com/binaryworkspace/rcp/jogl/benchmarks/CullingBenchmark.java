@@ -0,0 +1,206 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GLProfile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.binaryworkspace.rcp.jogl.util.GL2ES2_Util;
+import com.binaryworkspace.rcp.jogl.util.SpatialGrid;
+import com.binaryworkspace.rcp.jogl.util.VertexBatchRenderer;
+
+/**
+ * Cost of culling a scene of 100K quads with the {@link SpatialGrid} when 1%
+ * to 100% of it is visible.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The view is a square showing {@code visiblePercent} of the scene's
+ * area, queried through its gluOrtho2D style projection. The fraction of
+ * quads submitted is printed at setup.
+ * <li>{@link #query()} is the grid query, {@link #bruteForce()} the same
+ * culling by testing every quad, and {@link #move()} moves 1% of the quads.
+ * <li>{@link #drawCulled(Renderer)} and {@link #drawAll(Renderer)} fill,
+ * upload and draw a vertex batch of the visible or of all quads, then
+ * glFinish(): the frame cost saved by only submitting what is visible.
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CullingBenchmark {
+
+	private static final int QUAD_COUNT = 100000;
+
+	private static final float SCENE_SIZE = 1000;
+
+	private static final float MAX_QUAD_SIZE = 4;
+
+	private static final int MOVES_PER_OPERATION = QUAD_COUNT / 100;
+
+	@Param({ "1", "10", "50", "100" })
+	public int visiblePercent;
+
+	private SpatialGrid grid;
+
+	private int[] ids;
+
+	private float[] projection;
+
+	private float viewMinX;
+	private float viewMinY;
+	private float viewMaxX;
+	private float viewMaxY;
+
+	private final Random random = new Random(5530);
+
+	private int visited;
+
+	private final SpatialGrid.IVisitor counter = new SpatialGrid.IVisitor() {
+		public void visit(int id) {
+			visited++;
+		}
+	};
+
+	/**
+	 * The offscreen context, only set up for the draw benchmarks so the
+	 * culling benchmarks run without GL.
+	 */
+	@State(Scope.Thread)
+	public static class Renderer {
+
+		private OffscreenGL offscreenGL;
+
+		private VertexBatchRenderer batch;
+
+		private SpatialGrid grid;
+
+		private final SpatialGrid.IVisitor addQuad = new SpatialGrid.IVisitor() {
+			public void visit(int id) {
+				Renderer.this.addQuad(id);
+			}
+		};
+
+		@Setup(Level.Trial)
+		public void setup(CullingBenchmark benchmark) {
+			offscreenGL = new OffscreenGL(GLProfile.GL2, 512, 512);
+			grid = benchmark.grid;
+			batch = new VertexBatchRenderer(QUAD_COUNT * 6);
+			batch.setAsyncBuild(false);
+			batch.init(offscreenGL.getGL2ES2());
+			batch.setProjection(benchmark.projection);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			batch.dispose(offscreenGL.getGL2ES2());
+			offscreenGL.destroy();
+		}
+
+		void addQuad(int id) {
+			float x0 = grid.getMinX(id);
+			float y0 = grid.getMinY(id);
+			float x1 = grid.getMaxX(id);
+			float y1 = grid.getMaxY(id);
+			batch.addVertex(x0, y0, 1, 0, 0);
+			batch.addVertex(x1, y0, 0, 1, 0);
+			batch.addVertex(x1, y1, 0, 0, 1);
+			batch.addVertex(x0, y0, 1, 0, 0);
+			batch.addVertex(x1, y1, 0, 0, 1);
+			batch.addVertex(x0, y1, 0, 1, 0);
+		}
+
+		void draw() {
+			GL2ES2 gl2es2 = offscreenGL.getGL2ES2();
+			gl2es2.glClear(GL.GL_COLOR_BUFFER_BIT);
+			batch.draw(gl2es2, GL.GL_TRIANGLES);
+			gl2es2.glFinish();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		grid = new SpatialGrid(0, 0, SCENE_SIZE, SCENE_SIZE, MAX_QUAD_SIZE);
+		ids = new int[QUAD_COUNT];
+		for (int i = 0; i < QUAD_COUNT; i++) {
+			float x = random.nextFloat() * SCENE_SIZE;
+			float y = random.nextFloat() * SCENE_SIZE;
+			float size = random.nextFloat() * MAX_QUAD_SIZE;
+			ids[i] = grid.insert(x, y, x + size, y + size);
+		}
+
+		// A centered square showing the requested share of the scene
+		float side = SCENE_SIZE * (float) Math.sqrt(visiblePercent / 100.0);
+		viewMinX = (SCENE_SIZE - side) / 2;
+		viewMinY = viewMinX;
+		viewMaxX = viewMinX + side;
+		viewMaxY = viewMaxX;
+		projection = GL2ES2_Util.ortho2D(new float[16], viewMinX, viewMaxX, viewMinY, viewMaxY);
+		System.out.println("Submitted: " + query() + " of " + QUAD_COUNT + " quads, " + grid);
+	}
+
+	@Benchmark
+	public int query() {
+		visited = 0;
+		grid.query(projection, counter);
+		return visited;
+	}
+
+	@Benchmark
+	public int bruteForce() {
+		int count = 0;
+		for (int id : ids) {
+			if ((grid.getMinX(id) <= viewMaxX) && (grid.getMaxX(id) >= viewMinX) && (grid.getMinY(id) <= viewMaxY) && (grid.getMaxY(id) >= viewMinY)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public void move() {
+		for (int i = 0; i < MOVES_PER_OPERATION; i++) {
+			int id = ids[random.nextInt(QUAD_COUNT)];
+			float dx = random.nextFloat() - 0.5f;
+			float dy = random.nextFloat() - 0.5f;
+			float x = Math.max(0, Math.min(SCENE_SIZE, grid.getMinX(id) + dx));
+			float y = Math.max(0, Math.min(SCENE_SIZE, grid.getMinY(id) + dy));
+			grid.move(id, x, y, x + (grid.getMaxX(id) - grid.getMinX(id)), y + (grid.getMaxY(id) - grid.getMinY(id)));
+		}
+	}
+
+	@Benchmark
+	public void drawCulled(Renderer renderer) {
+		renderer.batch.clear();
+		grid.query(projection, renderer.addQuad);
+		renderer.draw();
+	}
+
+	@Benchmark
+	public void drawAll(Renderer renderer) {
+		renderer.batch.clear();
+		for (int id : ids) {
+			renderer.addQuad(id);
+		}
+		renderer.draw();
+	}
+}
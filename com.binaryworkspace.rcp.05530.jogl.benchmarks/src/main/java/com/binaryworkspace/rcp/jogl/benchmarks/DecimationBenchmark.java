@@ -0,0 +1,165 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GLProfile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.binaryworkspace.rcp.jogl.util.DecimatedSeriesRenderer;
+import com.binaryworkspace.rcp.jogl.util.MappedSampleFile;
+import com.binaryworkspace.rcp.jogl.util.MinMaxPyramid;
+
+/**
+ * Frame cost of plotting 10K to 10G samples through the min/max pyramid.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The sample file is written once per trial to the temp directory: up to
+ * 16M synthetic samples, extended to the sample count as a sparse file, so
+ * the large sizes need little disk space. The pyramid is built before
+ * measuring; the build time is printed at setup.
+ * <li>{@link #decimateAll()} and {@link #decimateZoomed()} reduce the whole
+ * file and a 1M sample window to one min/max per pixel of a
+ * {@value #WIDTH} pixel view, the CPU work of streaming a full view. Both
+ * should stay flat across sample counts.
+ * <li>{@link #pan(Renderer)} is a whole frame of the time series view while
+ * panning by 1% of the view per frame, including the tile uploads, then
+ * glFinish().
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecimationBenchmark {
+
+	private static final int WIDTH = 1920;
+
+	private static final long MAX_WRITTEN_SAMPLES = 16L * 1024 * 1024;
+
+	private static final long ZOOMED_SAMPLES = 1000000;
+
+	@Param({ "10000", "10000000", "1000000000", "10000000000" })
+	public long sampleCount;
+
+	private File file;
+
+	private MinMaxPyramid pyramid;
+
+	private final float[] minMax = new float[2];
+
+	/**
+	 * The offscreen context, only set up for {@link #pan(Renderer)} so the
+	 * decimation benchmarks run without GL.
+	 */
+	@State(Scope.Thread)
+	public static class Renderer {
+
+		private OffscreenGL offscreenGL;
+
+		private DecimatedSeriesRenderer renderer;
+
+		private double from;
+
+		@Setup(Level.Trial)
+		public void setup(DecimationBenchmark benchmark) {
+			offscreenGL = new OffscreenGL(GLProfile.GL2, WIDTH, 512);
+			renderer = new DecimatedSeriesRenderer(benchmark.pyramid, null);
+			renderer.setAsyncBuild(false);
+			renderer.init(offscreenGL.getGL2ES2());
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			System.out.println("Tile uploads: " + renderer.getUploadCount());
+			renderer.dispose(offscreenGL.getGL2ES2());
+			offscreenGL.destroy();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, InterruptedException {
+		file = File.createTempFile("decimation", ".bin");
+		MappedSampleFile.writeSynthetic(file, Math.min(sampleCount, MAX_WRITTEN_SAMPLES), 5530);
+		try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+			output.setLength(sampleCount * MappedSampleFile.BYTES_PER_SAMPLE);
+		}
+
+		long startNanos = System.nanoTime();
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = MinMaxPyramid.createBuildExecutor(threads);
+		pyramid = new MinMaxPyramid(new MappedSampleFile(file), null);
+		pyramid.build(executor, threads);
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.HOURS);
+		if (!pyramid.isComplete()) {
+			throw new IllegalStateException("Pyramid build failed: " + pyramid, pyramid.getFailure());
+		}
+		System.out.println(pyramid + " built in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		pyramid.getFile().close();
+		pyramid = null;
+		if (!file.delete()) {
+			// Still mapped on some platforms
+			file.deleteOnExit();
+		}
+	}
+
+	@Benchmark
+	public float decimateAll() {
+		return decimate(0, sampleCount);
+	}
+
+	@Benchmark
+	public float decimateZoomed() {
+		long from = Math.max(0, (sampleCount - ZOOMED_SAMPLES) / 2);
+		return decimate(from, Math.min(sampleCount, from + ZOOMED_SAMPLES));
+	}
+
+	@Benchmark
+	public void pan(Renderer renderer) {
+		GL2ES2 gl2es2 = renderer.offscreenGL.getGL2ES2();
+		double span = sampleCount / 4.0;
+		renderer.from = (renderer.from + (span / 100)) % (sampleCount - span);
+		gl2es2.glClear(GL.GL_COLOR_BUFFER_BIT);
+		renderer.renderer.draw(gl2es2, renderer.from, renderer.from + span, -2, 2, WIDTH);
+		gl2es2.glFinish();
+	}
+
+	// As the renderer streams the buckets of a view
+	private float decimate(long from, long to) {
+		int bucketShift = DecimatedSeriesRenderer.getBucketShift(from, to, WIDTH);
+		long first = from >>> bucketShift;
+		long last = Math.min(pyramid.getBucketCount(bucketShift), ((to - 1) >>> bucketShift) + 1);
+		float sum = 0;
+		for (long bucket = first; bucket < last; bucket++) {
+			pyramid.minMax(bucketShift, bucket, minMax, 0);
+			sum += minMax[1] - minMax[0];
+		}
+		return sum;
+	}
+}
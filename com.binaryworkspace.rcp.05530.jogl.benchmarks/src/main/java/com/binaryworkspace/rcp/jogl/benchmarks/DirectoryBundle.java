@@ -0,0 +1,56 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * A stand-in {@link Bundle} serving entries from a directory, so the bundle
+ * based loaders of the util package can be benchmarked without an OSGi
+ * framework.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Only {@link Bundle#getEntry(String)} and
+ * {@link Bundle#getSymbolicName()} are implemented; every other method
+ * returns null (or 0/false).
+ * <li>The directory looks like an unpacked bundle, so resources are memory
+ * mapped by {@code BundleResources} as in a development workspace.
+ * </ul>
+ */
+public final class DirectoryBundle {
+
+	public static Bundle create(final String symbolicName, final File directory) {
+		return (Bundle) Proxy.newProxyInstance(DirectoryBundle.class.getClassLoader(), new Class<?>[] { Bundle.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if ("getEntry".equals(name)) {
+					File file = new File(directory, (String) args[0]);
+					return file.exists() ? file.toURI().toURL() : null;
+				} else if ("getSymbolicName".equals(name)) {
+					return symbolicName;
+				} else if ("hashCode".equals(name)) {
+					return System.identityHashCode(proxy);
+				} else if ("equals".equals(name)) {
+					return proxy == args[0];
+				} else if ("toString".equals(name)) {
+					return symbolicName + " [" + directory + "]";
+				}
+				Class<?> returnType = method.getReturnType();
+				if (returnType == boolean.class) {
+					return Boolean.FALSE;
+				} else if ((returnType == int.class) || (returnType == long.class)) {
+					return (returnType == int.class) ? (Object) 0 : (Object) 0L;
+				}
+				return null;
+			}
+		});
+	}
+
+	private DirectoryBundle() {
+		// Static factory
+	}
+}
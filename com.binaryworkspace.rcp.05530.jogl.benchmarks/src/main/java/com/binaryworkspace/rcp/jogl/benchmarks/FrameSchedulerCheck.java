@@ -0,0 +1,113 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.binaryworkspace.rcp.jogl.render.FrameScheduler;
+import com.binaryworkspace.rcp.jogl.render.IRenderTarget;
+import com.binaryworkspace.rcp.jogl.render.RenderMode;
+
+/**
+ * Checks the frame rates of a {@link FrameScheduler} driving one continuous
+ * target, across switches between {@link FrameScheduler#VSYNC} and fixed
+ * rates.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The target returns at once, like a swap not waiting for vsync, so in
+ * vsync mode only the scheduler's own bound keeps the frame thread from
+ * spinning: the rate must stay below
+ * {@value FrameScheduler#MAX_VSYNC_FRAMES_PER_SECOND} frames per second.
+ * <li>After switching from vsync to a fixed rate, frames must go on at that
+ * rate; after switching back, at the vsync rate again. Once unregistered,
+ * the target must not be drawn anymore.
+ * <li>Run with {@code java -cp target/benchmarks.jar
+ * com.binaryworkspace.rcp.jogl.benchmarks.FrameSchedulerCheck}. Exits with
+ * status 1 on the first violation.
+ * </ul>
+ */
+public final class FrameSchedulerCheck {
+
+	private static final long SETTLE_MILLIS = 200;
+
+	private static final long MEASURE_MILLIS = 1000;
+
+	public static void main(String[] args) throws InterruptedException {
+		ExecutorService frameThread = Executors.newSingleThreadExecutor();
+		final AtomicLong frames = new AtomicLong();
+		IRenderTarget target = new IRenderTarget() {
+			public void renderFrame() {
+				frames.incrementAndGet();
+			}
+
+			public boolean needsFrame() {
+				return true;
+			}
+
+			public boolean isVisible() {
+				return true;
+			}
+
+			public RenderMode getRenderMode() {
+				return RenderMode.CONTINUOUS;
+			}
+
+			public boolean isDisposed() {
+				return false;
+			}
+		};
+		FrameScheduler scheduler = new FrameScheduler(frameThread, FrameScheduler.VSYNC, new FrameScheduler.IFailureListener() {
+			public void targetFailed(IRenderTarget failedTarget, RuntimeException e) {
+				fail("Target failed: " + e);
+			}
+		});
+		try {
+			scheduler.register(target);
+			check("Vsync", measure(frames), 1, FrameScheduler.MAX_VSYNC_FRAMES_PER_SECOND * 1.1);
+
+			scheduler.setFramesPerSecond(30);
+			check("Vsync to 30 fps", measure(frames), 20, 40);
+
+			scheduler.setFramesPerSecond(60);
+			check("30 to 60 fps", measure(frames), 45, 75);
+
+			scheduler.setFramesPerSecond(FrameScheduler.VSYNC);
+			check("60 fps to vsync", measure(frames), 75, FrameScheduler.MAX_VSYNC_FRAMES_PER_SECOND * 1.1);
+
+			scheduler.unregister(target);
+			check("Unregistered", measure(frames), 0, 0);
+		} finally {
+			scheduler.dispose();
+			frameThread.shutdownNow();
+		}
+		System.out.println("OK: frames go on at the new rate after every switch");
+	}
+
+	// Frames per second after the scheduler settled
+	private static double measure(AtomicLong frames) throws InterruptedException {
+		Thread.sleep(SETTLE_MILLIS);
+		long start = frames.get();
+		long startNanos = System.nanoTime();
+		Thread.sleep(MEASURE_MILLIS);
+		long count = frames.get() - start;
+		return count / ((System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1));
+	}
+
+	private static void check(String step, double framesPerSecond, double min, double max) {
+		if ((framesPerSecond < min) || (framesPerSecond > max)) {
+			fail(String.format("%s: %.1f frames per second, expected %.0f to %.0f", step, framesPerSecond, min, max));
+		}
+		System.out.println(String.format("%s: %.1f frames per second", step, framesPerSecond));
+	}
+
+	private static void fail(String message) {
+		System.out.println("FAILED: " + message);
+		System.exit(1);
+	}
+
+	private FrameSchedulerCheck() {
+		// Main class
+	}
+}
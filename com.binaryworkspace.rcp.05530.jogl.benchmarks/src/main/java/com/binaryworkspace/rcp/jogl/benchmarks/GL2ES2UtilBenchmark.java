@@ -0,0 +1,130 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GLProfile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+
+import com.binaryworkspace.rcp.jogl.util.GL2ES2_Util;
+import com.binaryworkspace.rcp.jogl.util.VertexBatchRenderer;
+import com.jogamp.opengl.util.texture.Texture;
+
+/**
+ * Cost of the {@link GL2ES2_Util} operations on an offscreen context.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>{@link #loadShader()} and {@link #createProgram()} compile the
+ * {@link VertexBatchRenderer} shaders. Drivers may cache compiled shaders, so
+ * these scores are a lower bound for a first compile.
+ * <li>{@link #createTexture(TextureFile)} loads a generated PNG through a
+ * {@link DirectoryBundle}, decoding and uploading it each time.
+ * <li>{@link #checkGlError()} measures the error free path, paid on every
+ * check.
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GL2ES2UtilBenchmark {
+
+	@State(Scope.Thread)
+	public static class TextureFile {
+
+		@Param({ "256", "2048" })
+		public int textureSize;
+
+		private File directory;
+
+		private Bundle bundle;
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException {
+			directory = File.createTempFile("texture", "");
+			if (!directory.delete() || !directory.mkdir()) {
+				throw new IOException("Could not create the texture directory: " + directory);
+			}
+
+			// Noise, so the PNG does not compress trivially
+			Random random = new Random(5530);
+			BufferedImage bufferedImage = new BufferedImage(textureSize, textureSize, BufferedImage.TYPE_INT_ARGB);
+			for (int y = 0; y < textureSize; y++) {
+				for (int x = 0; x < textureSize; x++) {
+					bufferedImage.setRGB(x, y, 0xff000000 | random.nextInt(0x1000000));
+				}
+			}
+			ImageIO.write(bufferedImage, "png", new File(directory, "texture.png"));
+			bundle = DirectoryBundle.create("benchmark.textures", directory);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			new File(directory, "texture.png").delete();
+			directory.delete();
+		}
+	}
+
+	private OffscreenGL offscreenGL;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		offscreenGL = new OffscreenGL(GLProfile.GL2, 64, 64);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		offscreenGL.destroy();
+	}
+
+	@Benchmark
+	public int loadShader() {
+		GL2ES2 gl2es2 = offscreenGL.getGL2ES2();
+		int shaderId = GL2ES2_Util.loadShader(gl2es2, GL2ES2.GL_VERTEX_SHADER, VertexBatchRenderer.VERTEX_SHADER_SOURCE);
+		gl2es2.glDeleteShader(shaderId);
+		return shaderId;
+	}
+
+	@Benchmark
+	public int createProgram() {
+		GL2ES2 gl2es2 = offscreenGL.getGL2ES2();
+		int programId = GL2ES2_Util.createProgram(gl2es2, VertexBatchRenderer.VERTEX_SHADER_SOURCE, VertexBatchRenderer.FRAGMENT_SHADER_SOURCE);
+		gl2es2.glDeleteProgram(programId);
+		return programId;
+	}
+
+	@Benchmark
+	public Texture createTexture(TextureFile textureFile) {
+		GL2ES2 gl2es2 = offscreenGL.getGL2ES2();
+		Texture texture = GL2ES2_Util.createTexture(gl2es2, textureFile.bundle, "texture.png");
+		texture.destroy(gl2es2);
+		return texture;
+	}
+
+	@Benchmark
+	public void checkGlError() {
+		GL2ES2_Util.checkGlError(offscreenGL.getGL2ES2(), "checkGlError");
+	}
+}
@@ -0,0 +1,97 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GLContext;
+import javax.media.opengl.GLDebugMessage;
+import javax.media.opengl.GLProfile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.binaryworkspace.rcp.jogl.util.GLErrorCheckMode;
+import com.binaryworkspace.rcp.jogl.util.GLErrorChecker;
+import com.binaryworkspace.rcp.jogl.util.VertexBatchRenderer;
+
+/**
+ * Per-frame overhead of each {@link GLErrorCheckMode}.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>A frame is a small batch draw followed by one check, mirroring the
+ * check the GL views make after drawing. Compare each mode against
+ * {@code OFF}.
+ * <li>{@code DEBUG_OUTPUT} falls back to polling when the offscreen context
+ * offers no debug output; the effective mode is printed at setup.
+ * <li>Run with {@code -prof gc} to confirm that no mode allocates per frame.
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GLErrorCheckBenchmark {
+
+	@Param({ "OFF", "POLLING", "DEBUG_OUTPUT" })
+	public GLErrorCheckMode mode;
+
+	private OffscreenGL offscreenGL;
+
+	private GLErrorChecker errorChecker;
+
+	private VertexBatchRenderer batch;
+
+	private final List<GLDebugMessage> messages = new ArrayList<GLDebugMessage>();
+
+	@Setup(Level.Trial)
+	public void setup() {
+		int flags = (mode == GLErrorCheckMode.DEBUG_OUTPUT) ? GLContext.CTX_OPTION_DEBUG : 0;
+		offscreenGL = new OffscreenGL(GLProfile.GL2, 256, 256, flags);
+		GL2ES2 gl2es2 = offscreenGL.getGL2ES2();
+
+		errorChecker = new GLErrorChecker(mode, GLErrorChecker.DEFAULT_RING_CAPACITY);
+		errorChecker.install(gl2es2);
+		System.out.println("Effective error check mode: " + errorChecker.getMode());
+
+		batch = new VertexBatchRenderer(3);
+		batch.setAsyncBuild(false);
+		batch.init(gl2es2);
+		batch.addVertex(-1, -1, 1, 0, 0);
+		batch.addVertex(0, 1, 0, 1, 0);
+		batch.addVertex(1, -1, 0, 0, 1);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		GL2ES2 gl2es2 = offscreenGL.getGL2ES2();
+		batch.dispose(gl2es2);
+		errorChecker.uninstall(gl2es2);
+		offscreenGL.destroy();
+	}
+
+	@Benchmark
+	public void drawAndCheck() {
+		GL2ES2 gl2es2 = offscreenGL.getGL2ES2();
+		batch.draw(gl2es2, GL.GL_TRIANGLES);
+		errorChecker.check(gl2es2, "drawAndCheck");
+		messages.clear();
+		errorChecker.drainMessages(messages);
+	}
+}
@@ -0,0 +1,101 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+import javax.media.opengl.GLProfile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.binaryworkspace.rcp.jogl.util.DirectBufferPool;
+import com.binaryworkspace.rcp.jogl.util.NioImageDecoder;
+import com.jogamp.opengl.util.texture.TextureData;
+import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
+
+/**
+ * Decode time of {@link NioImageDecoder} against the former
+ * ImageIO/AWTTextureIO path for large PNG and JPEG images.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The images are generated in memory, so the score excludes file I/O.
+ * <li>Neither path needs a GL context; the texture data is flushed right away
+ * as the loaders do after the upload.
+ * <li>Run with {@code -prof gc} to compare the allocation rate, which is where
+ * the BufferedImage round-trip costs most.
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageDecodeBenchmark {
+
+	@Param({ "png", "jpg" })
+	public String format;
+
+	@Param({ "2048" })
+	public int size;
+
+	private byte[] image;
+
+	private GLProfile glProfile;
+
+	private NioImageDecoder imageDecoder;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		glProfile = GLProfile.getDefault();
+		imageDecoder = new NioImageDecoder(new DirectBufferPool(64L * 1024 * 1024));
+
+		// Smooth gradient plus noise, so neither format compresses trivially
+		Random random = new Random(5530);
+		BufferedImage bufferedImage = new BufferedImage(size, size, "png".equals(format) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				int r = (x * 255) / size;
+				int g = (y * 255) / size;
+				int b = random.nextInt(64);
+				bufferedImage.setRGB(x, y, 0xff000000 | (r << 16) | (g << 8) | b);
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (!ImageIO.write(bufferedImage, format, out)) {
+			throw new IllegalStateException("No ImageIO writer for: " + format);
+		}
+		image = out.toByteArray();
+	}
+
+	@Benchmark
+	public TextureData awtDecode() throws IOException {
+		BufferedImage bufferedImage = ImageIO.read(new ByteArrayInputStream(image));
+		TextureData textureData = AWTTextureIO.newTextureData(glProfile, bufferedImage, false);
+		textureData.flush();
+		return textureData;
+	}
+
+	@Benchmark
+	public TextureData nioDecode() throws IOException {
+		TextureData textureData = imageDecoder.decode(glProfile, new ByteArrayInputStream(image), format);
+		textureData.flush();
+		return textureData;
+	}
+}
@@ -0,0 +1,111 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GLProfile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.binaryworkspace.rcp.jogl.util.InstanceField;
+import com.binaryworkspace.rcp.jogl.util.InstancedRenderer;
+import com.jogamp.common.nio.Buffers;
+
+/**
+ * Frame cost of animating and drawing 1 to 1M instances.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>{@link #updateParallel()} and {@link #updateSequential()} measure the
+ * structure-of-arrays update alone, on the common fork/join pool and on the
+ * benchmark thread. Their ratio is the parallel speedup.
+ * <li>{@link #draw(Renderer)} is a whole frame of the instanced view: update into the
+ * mapped instance buffer, draw, glFinish(). Whether the context draws
+ * instanced and maps the buffer is printed at setup.
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstancedRenderBenchmark {
+
+	private static final float STEP_SECONDS = 1.0f / 60;
+
+	private static final float[] TEMPLATE = { -0.004f, -0.003f, 0.004f, -0.003f, 0.0f, 0.005f };
+
+	@Param({ "1", "1000", "100000", "1000000" })
+	public int instanceCount;
+
+	private InstanceField instances;
+
+	private FloatBuffer attributes;
+
+	/**
+	 * The offscreen context, only set up for {@link #draw(Renderer)} so the
+	 * update benchmarks run without GL.
+	 */
+	@State(Scope.Thread)
+	public static class Renderer {
+
+		private OffscreenGL offscreenGL;
+
+		private InstancedRenderer renderer;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			offscreenGL = new OffscreenGL(GLProfile.GL2, 512, 512);
+			renderer = new InstancedRenderer(TEMPLATE, null);
+			renderer.setAsyncBuild(false);
+			renderer.init(offscreenGL.getGL2ES2());
+			System.out.println("Instanced: " + renderer.isInstanced() + ", mapped: " + renderer.isMapped() + ", pool parallelism: " + ForkJoinPool.commonPool().getParallelism());
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			renderer.dispose(offscreenGL.getGL2ES2());
+			offscreenGL.destroy();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		instances = new InstanceField(instanceCount, 5530);
+		attributes = Buffers.newDirectFloatBuffer(instanceCount * InstanceField.FLOATS_PER_INSTANCE);
+	}
+
+	@Benchmark
+	public FloatBuffer updateParallel() {
+		instances.update(ForkJoinPool.commonPool(), STEP_SECONDS, attributes, 1);
+		return attributes;
+	}
+
+	@Benchmark
+	public FloatBuffer updateSequential() {
+		instances.update(null, STEP_SECONDS, attributes, 1);
+		return attributes;
+	}
+
+	@Benchmark
+	public void draw(Renderer renderer) {
+		GL2ES2 gl2es2 = renderer.offscreenGL.getGL2ES2();
+		renderer.renderer.draw(gl2es2, instances, ForkJoinPool.commonPool(), STEP_SECONDS);
+		gl2es2.glFinish();
+	}
+}
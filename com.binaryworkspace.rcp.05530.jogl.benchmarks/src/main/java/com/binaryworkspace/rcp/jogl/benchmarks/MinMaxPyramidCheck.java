@@ -0,0 +1,125 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+import com.binaryworkspace.rcp.jogl.util.MappedSampleFile;
+import com.binaryworkspace.rcp.jogl.util.MinMaxPyramid;
+
+/**
+ * Checks the buckets of {@link MinMaxPyramid#minMax(int, long, float[], int)}
+ * against a scan of the samples, and its empty ranges.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>An empty file and one of {@value #SAMPLES} synthetic samples are
+ * mapped and built. On both, buckets before the first sample and past the
+ * last one must return false rather than throw, for every bucket size.
+ * <li>Every other bucket of the second file, at sizes from one sample to the
+ * whole file, must hold the minimum and maximum of its samples.
+ * <li>Run with {@code java -cp target/benchmarks.jar
+ * com.binaryworkspace.rcp.jogl.benchmarks.MinMaxPyramidCheck}. Exits with
+ * status 1 on the first violation.
+ * </ul>
+ */
+public final class MinMaxPyramidCheck {
+
+	// Not a multiple of any bucket size, so the last buckets are partial
+	public static final int SAMPLES = 300001;
+
+	private static final int MAX_BUCKET_SHIFT = 24;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		ExecutorService executor = MinMaxPyramid.createBuildExecutor(2);
+		File emptyFile = File.createTempFile("empty", ".bin");
+		File seriesFile = File.createTempFile("series", ".bin");
+		try {
+			MappedSampleFile empty = new MappedSampleFile(emptyFile);
+			MinMaxPyramid emptyPyramid = build(empty, executor);
+			checkEmptyRanges("Empty file", emptyPyramid);
+			if (emptyPyramid.totalMinMax(new float[2], 0)) {
+				fail("Empty file: total min/max reported");
+			}
+			empty.close();
+
+			MappedSampleFile.writeSynthetic(seriesFile, SAMPLES, 5530);
+			MappedSampleFile series = new MappedSampleFile(seriesFile);
+			MinMaxPyramid pyramid = build(series, executor);
+			checkEmptyRanges("Series", pyramid);
+			int buckets = checkBuckets(series, pyramid);
+			series.close();
+			System.out.println("OK: empty ranges rejected, " + buckets + " buckets match the samples");
+		} finally {
+			executor.shutdownNow();
+			emptyFile.delete();
+			seriesFile.delete();
+		}
+	}
+
+	private static MinMaxPyramid build(MappedSampleFile file, ExecutorService executor) throws InterruptedException {
+		MinMaxPyramid pyramid = new MinMaxPyramid(file, null);
+		pyramid.build(executor, 2);
+		while (!pyramid.isComplete()) {
+			if (pyramid.getFailure() != null) {
+				fail("Build failed: " + pyramid.getFailure());
+			}
+			Thread.sleep(10);
+		}
+		return pyramid;
+	}
+
+	private static void checkEmptyRanges(String name, MinMaxPyramid pyramid) {
+		float[] result = new float[2];
+		for (int bucketShift = 0; bucketShift <= MAX_BUCKET_SHIFT; bucketShift++) {
+			long bucketCount = pyramid.getBucketCount(bucketShift);
+			for (long bucket : new long[] { -1, Long.MIN_VALUE, bucketCount, bucketCount + 1, Long.MAX_VALUE }) {
+				try {
+					if (pyramid.minMax(bucketShift, bucket, result, 0)) {
+						fail(name + ": bucket " + bucket + " at shift " + bucketShift + " reported samples");
+					}
+				} catch (RuntimeException e) {
+					fail(name + ": bucket " + bucket + " at shift " + bucketShift + " threw " + e);
+				}
+			}
+		}
+	}
+
+	private static int checkBuckets(MappedSampleFile file, MinMaxPyramid pyramid) {
+		float[] result = new float[2];
+		float[] expected = new float[2];
+		int checked = 0;
+		for (int bucketShift = 0; bucketShift <= MAX_BUCKET_SHIFT; bucketShift++) {
+			long bucketCount = pyramid.getBucketCount(bucketShift);
+			// Every bucket of the coarse sizes, a sample of the fine ones
+			long step = Math.max(1, bucketCount / 1000);
+			for (long bucket = 0; bucket < bucketCount; bucket += step) {
+				checkBucket(file, pyramid, bucketShift, bucket, result, expected);
+				checked++;
+			}
+			checkBucket(file, pyramid, bucketShift, bucketCount - 1, result, expected);
+			checked++;
+		}
+		return checked;
+	}
+
+	private static void checkBucket(MappedSampleFile file, MinMaxPyramid pyramid, int bucketShift, long bucket, float[] result, float[] expected) {
+		if (!pyramid.minMax(bucketShift, bucket, result, 0)) {
+			fail("Bucket " + bucket + " at shift " + bucketShift + " not reported");
+		}
+		long from = bucket << bucketShift;
+		file.minMax(from, Math.min(file.getCount(), from + (1L << bucketShift)), expected, 0);
+		if ((result[0] != expected[0]) || (result[1] != expected[1])) {
+			fail("Bucket " + bucket + " at shift " + bucketShift + ": " + result[0] + "/" + result[1] + ", expected " + expected[0] + "/" + expected[1]);
+		}
+	}
+
+	private static void fail(String message) {
+		System.out.println("FAILED: " + message);
+		System.exit(1);
+	}
+
+	private MinMaxPyramidCheck() {
+		// Main class
+	}
+}
@@ -0,0 +1,213 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Version;
+
+import com.binaryworkspace.rcp.jogl.util.NativeLibraryCache;
+import com.jogamp.common.os.Platform;
+
+/**
+ * Checks on Linux amd64 that a warm start of the {@link NativeLibraryCache}
+ * does no extraction I/O.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The fragment is a stand-in jarred bundle serving the GlueGen and JOGL
+ * linux-amd64 natives jars, by default those of the local Maven repository
+ * downloaded by the benchmarks build.
+ * <li>A cold install into an empty cache must extract every library. A
+ * second install, as on the next start, must extract nothing and leave every
+ * cached file untouched: same files, sizes and modification times. A
+ * truncated library must be extracted again, and only that one.
+ * <li>Finally GlueGen is loaded from the cache and initialized with its
+ * temporary jar cache off; no jogamp directory may appear in the temporary
+ * directory. On Java 9 and later this needs --add-opens
+ * java.base/java.lang=ALL-UNNAMED, see {@link NativeLibraryCache}.
+ * <li>Run with {@code java -cp target/benchmarks.jar
+ * com.binaryworkspace.rcp.jogl.benchmarks.NativeLibraryCacheCheck
+ * [nativesJar...]}. Exits with status 1 on the first violation.
+ * </ul>
+ */
+public final class NativeLibraryCacheCheck {
+
+	private static final String JOGL_VERSION = "2.1.5-01";
+
+	public static void main(String[] args) throws IOException {
+		if (!"linux".equalsIgnoreCase(System.getProperty("os.name")) || !"amd64".equals(System.getProperty("os.arch"))) {
+			System.out.println("Skipped: Linux amd64 only, running on " + System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+			return;
+		}
+		File[] jars;
+		if (args.length > 0) {
+			jars = new File[args.length];
+			for (int i = 0; i < args.length; i++) {
+				jars[i] = new File(args[i]);
+			}
+		} else {
+			File repository = new File(System.getProperty("user.home"), ".m2/repository/org/jogamp");
+			jars = new File[] { new File(repository, "gluegen/gluegen-rt/" + JOGL_VERSION + "/gluegen-rt-" + JOGL_VERSION + "-natives-linux-amd64.jar"),
+					new File(repository, "jogl/jogl-all/" + JOGL_VERSION + "/jogl-all-" + JOGL_VERSION + "-natives-linux-amd64.jar") };
+		}
+		for (File jar : jars) {
+			if (!jar.isFile()) {
+				fail("Natives jar not found: " + jar);
+			}
+		}
+		Bundle fragment = createFragment(jars);
+		File root = Files.createTempDirectory("natives").toFile();
+		try {
+			check(fragment, root);
+		} finally {
+			delete(root);
+		}
+	}
+
+	private static void check(Bundle fragment, File root) throws IOException {
+		String[] libraries = NativeLibraryCache.JOGL_LIBRARIES;
+
+		// Cold start
+		NativeLibraryCache cold = new NativeLibraryCache(root);
+		long startNanos = System.nanoTime();
+		File directory = cold.install(fragment, libraries);
+		long coldMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+		if ((cold.getExtractedCount() == 0) || (cold.getVerifiedCount() != 0)) {
+			fail("Cold start: " + cold);
+		}
+		System.out.println(String.format("Cold start: %d libraries, %,d bytes extracted in %,d us", cold.getExtractedCount(), cold.getExtractedBytes(), coldMicros));
+
+		// Warm start
+		Map<String, String> before = listFiles(directory);
+		NativeLibraryCache warm = new NativeLibraryCache(root);
+		startNanos = System.nanoTime();
+		if (!warm.install(fragment, libraries).equals(directory)) {
+			fail("Warm start: other cache directory");
+		}
+		long warmMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+		Map<String, String> after = listFiles(directory);
+		if ((warm.getExtractedCount() != 0) || (warm.getExtractedBytes() != 0) || (warm.getVerifiedCount() != cold.getExtractedCount())) {
+			fail("Warm start extracted: " + warm);
+		}
+		if (!before.equals(after)) {
+			fail("Warm start modified the cache: " + before + " -> " + after);
+		}
+		System.out.println(String.format("Warm start: %d libraries verified, 0 bytes extracted in %,d us", warm.getVerifiedCount(), warmMicros));
+
+		// Corrupt library
+		File newt = NativeLibraryCache.getFile(directory, "newt");
+		try (RandomAccessFile file = new RandomAccessFile(newt, "rw")) {
+			file.setLength(file.length() / 2);
+		}
+		NativeLibraryCache repaired = new NativeLibraryCache(root);
+		repaired.install(fragment, libraries);
+		if ((repaired.getExtractedCount() != 1) || (NativeLibraryCache.getFile(directory, "newt").length() != Long.parseLong(before.get(newt.getName()).split(" ")[0]))) {
+			fail("Truncated library not repaired: " + repaired);
+		}
+		System.out.println("Truncated " + newt.getName() + " extracted again: " + repaired);
+
+		// Load GlueGen from the cache, without JOGL's temporary jar cache
+		List<String> tempBefore = listJogampTempFiles();
+		List<String> loaded = NativeLibraryCache.load(directory, new String[] { "gluegen-rt" });
+		if (loaded.isEmpty()) {
+			fail("GlueGen not loaded from the cache (on Java 9+ run with --add-opens java.base/java.lang=ALL-UNNAMED)");
+		}
+		System.setProperty("jogamp.gluegen.UseTempJarCache", "false");
+		Platform.initSingleton();
+		List<String> tempAfter = listJogampTempFiles();
+		if (!tempBefore.equals(tempAfter)) {
+			fail("JOGL extracted to the temporary directory: " + tempAfter);
+		}
+		System.out.println("Loaded " + loaded + " from the cache, " + Platform.getOSAndArch() + " initialized");
+		System.out.println("OK: warm start did no extraction I/O");
+	}
+
+	// A jarred fragment serving the root entries of the natives jars
+	private static Bundle createFragment(final File[] jars) {
+		return (Bundle) Proxy.newProxyInstance(NativeLibraryCacheCheck.class.getClassLoader(), new Class<?>[] { Bundle.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if ("getEntry".equals(name)) {
+					for (File jar : jars) {
+						try (ZipFile zipFile = new ZipFile(jar)) {
+							if (zipFile.getEntry((String) args[0]) != null) {
+								return new URL("jar:" + jar.toURI() + "!/" + args[0]);
+							}
+						}
+					}
+					return null;
+				} else if ("getSymbolicName".equals(name)) {
+					return "org.jogamp.jogl.2.1.5.frag.linux-amd64";
+				} else if ("getVersion".equals(name)) {
+					return new Version(2, 1, 5);
+				} else if ("getLastModified".equals(name)) {
+					return jars[0].lastModified();
+				} else if ("hashCode".equals(name)) {
+					return System.identityHashCode(proxy);
+				} else if ("equals".equals(name)) {
+					return proxy == args[0];
+				} else if ("toString".equals(name)) {
+					return Arrays.toString(jars);
+				}
+				throw new UnsupportedOperationException(name);
+			}
+		});
+	}
+
+	// Name to "size modified"
+	private static Map<String, String> listFiles(File directory) {
+		Map<String, String> files = new TreeMap<String, String>();
+		for (File file : directory.listFiles()) {
+			files.put(file.getName(), file.length() + " " + file.lastModified());
+		}
+		return files;
+	}
+
+	private static List<String> listJogampTempFiles() {
+		String[] names = new File(System.getProperty("java.io.tmpdir")).list();
+		List<String> jogampNames = new ArrayList<String>();
+		if (names != null) {
+			for (String name : names) {
+				if (name.startsWith("jogamp")) {
+					jogampNames.add(name);
+				}
+			}
+		}
+		Collections.sort(jogampNames);
+		return jogampNames;
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private static void fail(String message) {
+		System.out.println("FAILED: " + message);
+		System.exit(1);
+	}
+
+	private NativeLibraryCacheCheck() {
+		// Main class
+	}
+}
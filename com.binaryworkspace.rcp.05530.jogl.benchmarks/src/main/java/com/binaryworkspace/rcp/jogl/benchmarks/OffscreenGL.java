@@ -0,0 +1,73 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GLCapabilities;
+import javax.media.opengl.GLContext;
+import javax.media.opengl.GLDrawableFactory;
+import javax.media.opengl.GLOffscreenAutoDrawable;
+import javax.media.opengl.GLProfile;
+
+/**
+ * An offscreen GL drawable whose context stays current on the benchmark
+ * thread for the lifetime of a benchmark trial.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>No window or GPU is required; on a headless Linux box the context is
+ * served by Mesa (e.g. llvmpipe).
+ * <li>Must be created and used on the same thread, which JMH guarantees for
+ * {@code Scope.Thread} states.
+ * </ul>
+ */
+public final class OffscreenGL {
+
+	private final GLOffscreenAutoDrawable drawable;
+
+	private final GLContext context;
+
+	/**
+	 * Creates the drawable and makes its context current on the calling
+	 * thread.
+	 */
+	public OffscreenGL(String profileName, int width, int height) {
+		this(profileName, width, height, 0);
+	}
+
+	/**
+	 * Creates the drawable with the given context creation flags (e.g.
+	 * {@link GLContext#CTX_OPTION_DEBUG}) and makes its context current on the
+	 * calling thread.
+	 */
+	public OffscreenGL(String profileName, int width, int height, int contextCreationFlags) {
+		GLProfile glProfile = GLProfile.get(profileName);
+		GLCapabilities glCapabilities = new GLCapabilities(glProfile);
+		glCapabilities.setOnscreen(false);
+		glCapabilities.setDoubleBuffered(false);
+		drawable = GLDrawableFactory.getFactory(glProfile).createOffscreenAutoDrawable(null, glCapabilities, null, width, height);
+
+		drawable.setContextCreationFlags(contextCreationFlags);
+
+		// Realize the drawable, then keep the context current
+		drawable.display();
+		context = drawable.getContext();
+		if (context.makeCurrent() == GLContext.CONTEXT_NOT_CURRENT) {
+			throw new IllegalStateException("Could not make the offscreen context current for profile: " + profileName);
+		}
+	}
+
+	public GL2ES2 getGL2ES2() {
+		return context.getGL().getGL2ES2();
+	}
+
+	public GLContext getContext() {
+		return context;
+	}
+
+	/**
+	 * Releases the context and destroys the drawable.
+	 */
+	public void destroy() {
+		context.release();
+		drawable.destroy();
+	}
+}
@@ -0,0 +1,113 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GLAutoDrawable;
+import javax.media.opengl.GLEventListener;
+import javax.media.opengl.GLProfile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.binaryworkspace.rcp.jogl.util.GL2ES2_Util;
+import com.binaryworkspace.rcp.jogl.util.OffscreenRenderer;
+import com.binaryworkspace.rcp.jogl.util.VertexBatchRenderer;
+
+/**
+ * Frames per second of the {@link OffscreenRenderer} with synchronous
+ * readback (one PBO) against a PBO ring.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Each frame draws 10000 random triangles and is delivered to a consumer
+ * touching every row, so the readback can't be skipped.
+ * <li>The gain of the ring depends on how much the driver overlaps the copy
+ * with rendering; llvmpipe overlaps far less than a GPU.
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OffscreenRenderBenchmark {
+
+	@Param({ "1", "3" })
+	public int pboCount;
+
+	@Param({ "1024" })
+	public int size;
+
+	private OffscreenRenderer renderer;
+
+	private long checksum;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		GLEventListener scene = new GLEventListener() {
+			private final VertexBatchRenderer batch = new VertexBatchRenderer(30000);
+
+			public void init(GLAutoDrawable glAutoDrawable) {
+				GL2ES2 gl2es2 = glAutoDrawable.getGL().getGL2ES2();
+				batch.setAsyncBuild(false);
+				batch.init(gl2es2);
+				batch.setProjection(GL2ES2_Util.ortho2D(new float[16], 0, 1, 0, 1));
+				Random random = new Random(5530);
+				for (int i = 0; i < 30000; i++) {
+					batch.addVertex(random.nextFloat(), random.nextFloat(), random.nextFloat(), random.nextFloat(), random.nextFloat());
+				}
+			}
+
+			public void reshape(GLAutoDrawable glAutoDrawable, int x, int y, int width, int height) {
+				glAutoDrawable.getGL().glViewport(0, 0, width, height);
+			}
+
+			public void display(GLAutoDrawable glAutoDrawable) {
+				GL2ES2 gl2es2 = glAutoDrawable.getGL().getGL2ES2();
+				gl2es2.glClear(GL.GL_COLOR_BUFFER_BIT);
+				batch.draw(gl2es2, GL.GL_TRIANGLES);
+			}
+
+			public void dispose(GLAutoDrawable glAutoDrawable) {
+				batch.dispose(glAutoDrawable.getGL().getGL2ES2());
+			}
+		};
+		OffscreenRenderer.IImageConsumer consumer = new OffscreenRenderer.IImageConsumer() {
+			public void imageAvailable(long frameNumber, int width, int height, ByteBuffer pixels) {
+				int stride = width * 4;
+				for (int row = 0; row < height; row++) {
+					checksum += pixels.get(row * stride);
+				}
+			}
+		};
+		renderer = new OffscreenRenderer(GLProfile.get(GLProfile.GL2), size, size, scene, consumer, pboCount);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		renderer.flush();
+		renderer.dispose();
+		System.out.println("Checksum: " + checksum);
+	}
+
+	@Benchmark
+	public void renderFrame() {
+		renderer.render();
+	}
+}
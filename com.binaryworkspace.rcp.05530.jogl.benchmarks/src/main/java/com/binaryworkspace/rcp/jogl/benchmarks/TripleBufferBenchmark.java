@@ -0,0 +1,105 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.binaryworkspace.rcp.jogl.util.SimulationLoop;
+import com.binaryworkspace.rcp.jogl.util.TripleBuffer;
+
+/**
+ * Snapshot handoff between a producer and a consumer thread running
+ * concurrently, {@link TripleBuffer} against a lock.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Each group runs one producer publishing snapshots of
+ * {@code snapshotLength} longs and one consumer reading the latest one, as the
+ * {@link SimulationLoop} and a view's frame thread do.
+ * <li>{@code locked} copies the snapshot in and out under a monitor, as the
+ * simulation handoff did before the triple buffer.
+ * <li>Both sides should report zero {@code gc.alloc.rate.norm}.
+ * </ul>
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TripleBufferBenchmark {
+
+	@Param({ "16", "1024" })
+	public int snapshotLength;
+
+	private TripleBuffer<long[]> tripleBuffer;
+
+	private final Object lock = new Object();
+
+	private long[] lockedSnapshot;
+
+	// Producer
+	private long[] producerSnapshot;
+	private long sequence;
+
+	// Consumer
+	private long[] consumerSnapshot;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		tripleBuffer = new TripleBuffer<long[]>(new long[snapshotLength], new long[snapshotLength], new long[snapshotLength]);
+		lockedSnapshot = new long[snapshotLength];
+		producerSnapshot = new long[snapshotLength];
+		consumerSnapshot = new long[snapshotLength];
+	}
+
+	@Benchmark
+	@Group("tripleBuffer")
+	public void publish() {
+		fill(tripleBuffer.getWriteBuffer(), ++sequence);
+		tripleBuffer.publish();
+	}
+
+	@Benchmark
+	@Group("tripleBuffer")
+	public long read() {
+		long[] snapshot = tripleBuffer.read();
+		return snapshot[0] + snapshot[snapshot.length - 1];
+	}
+
+	@Benchmark
+	@Group("locked")
+	public void publishLocked() {
+		fill(producerSnapshot, ++sequence);
+		synchronized (lock) {
+			System.arraycopy(producerSnapshot, 0, lockedSnapshot, 0, snapshotLength);
+		}
+	}
+
+	@Benchmark
+	@Group("locked")
+	public long readLocked() {
+		synchronized (lock) {
+			System.arraycopy(lockedSnapshot, 0, consumerSnapshot, 0, snapshotLength);
+		}
+		return consumerSnapshot[0] + consumerSnapshot[snapshotLength - 1];
+	}
+
+	private static void fill(long[] snapshot, long sequence) {
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = sequence + i;
+		}
+	}
+}
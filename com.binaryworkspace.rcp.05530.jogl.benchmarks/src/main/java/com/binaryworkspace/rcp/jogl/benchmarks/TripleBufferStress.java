@@ -0,0 +1,129 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.binaryworkspace.rcp.jogl.util.TripleBuffer;
+
+/**
+ * Stress check of the {@link TripleBuffer} under contention: one producer
+ * publishes numbered snapshots as fast as it can while one consumer reads
+ * them.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>A torn read is a snapshot whose fields belong to different publishes.
+ * Every field of snapshot n holds n + index, so the consumer checks each read
+ * completely.
+ * <li>The sequence numbers read must never decrease, and the last read after
+ * the producer stopped must be the last publish, so no update is lost.
+ * <li>Each round runs for a share of the given duration, alternating busy
+ * consumers with ones pausing between reads to vary the interleaving.
+ * <li>Run with {@code java -cp target/benchmarks.jar
+ * com.binaryworkspace.rcp.jogl.benchmarks.TripleBufferStress [seconds]
+ * [snapshotLength]}. Exits with status 1 on the first violation.
+ * </ul>
+ */
+public final class TripleBufferStress {
+
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) throws InterruptedException {
+		int seconds = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+		int snapshotLength = (args.length > 1) ? Integer.parseInt(args[1]) : 64;
+		long roundNanos = TimeUnit.SECONDS.toNanos(seconds) / ROUNDS;
+
+		long totalPublishes = 0;
+		long totalReads = 0;
+		long totalUpdates = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			boolean pausingConsumer = (round % 2) == 1;
+			Result result = runRound(snapshotLength, roundNanos, pausingConsumer);
+			if (result.failure != null) {
+				System.out.println("Round " + round + " FAILED: " + result.failure);
+				System.exit(1);
+			}
+			System.out.println(String.format("Round %d: %,d publishes, %,d reads, %,d updates seen%s", round, result.publishes, result.reads, result.updates, pausingConsumer ? " (pausing consumer)" : ""));
+			totalPublishes += result.publishes;
+			totalReads += result.reads;
+			totalUpdates += result.updates;
+		}
+		System.out.println(String.format("OK: %,d publishes, %,d reads, %,d updates seen, no torn or lost updates", totalPublishes, totalReads, totalUpdates));
+	}
+
+	private static final class Result {
+		long publishes;
+		long reads;
+		long updates;
+		String failure;
+	}
+
+	private static Result runRound(int snapshotLength, final long roundNanos, boolean pausingConsumer) throws InterruptedException {
+		// The initial snapshot is number 0
+		long[] initial = new long[snapshotLength];
+		for (int i = 0; i < initial.length; i++) {
+			initial[i] = i;
+		}
+		final TripleBuffer<long[]> tripleBuffer = new TripleBuffer<long[]>(initial, new long[snapshotLength], new long[snapshotLength]);
+		final long[] published = new long[1];
+		final Thread producer = new Thread(new Runnable() {
+			public void run() {
+				long endNanos = System.nanoTime() + roundNanos;
+				long sequence = 0;
+				while (System.nanoTime() < endNanos) {
+					long[] snapshot = tripleBuffer.getWriteBuffer();
+					sequence++;
+					for (int i = 0; i < snapshot.length; i++) {
+						snapshot[i] = sequence + i;
+					}
+					tripleBuffer.publish();
+				}
+				published[0] = sequence;
+			}
+		}, "TripleBuffer Producer");
+
+		Result result = new Result();
+		long lastSequence = 0;
+		producer.start();
+		while (true) {
+			boolean producerDone = !producer.isAlive();
+			long[] snapshot = tripleBuffer.read();
+			result.reads++;
+			long sequence = snapshot[0];
+			for (int i = 1; i < snapshot.length; i++) {
+				if (snapshot[i] != (sequence + i)) {
+					result.failure = "torn snapshot " + sequence + ", field " + i + " holds " + snapshot[i];
+					producer.join();
+					return result;
+				}
+			}
+			if (sequence < lastSequence) {
+				result.failure = "sequence went back from " + lastSequence + " to " + sequence;
+				producer.join();
+				return result;
+			}
+			if (sequence > lastSequence) {
+				result.updates++;
+				lastSequence = sequence;
+			}
+			if (producerDone) {
+				break;
+			}
+			if (pausingConsumer) {
+				Thread.yield();
+			}
+		}
+
+		// isAlive() returning false orders the producer's last publish before
+		// the final read
+		producer.join();
+		result.publishes = published[0];
+		if (lastSequence != published[0]) {
+			result.failure = "lost update, last read " + lastSequence + " but last published " + published[0];
+		}
+		return result;
+	}
+
+	private TripleBufferStress() {
+		// Entry point only
+	}
+}
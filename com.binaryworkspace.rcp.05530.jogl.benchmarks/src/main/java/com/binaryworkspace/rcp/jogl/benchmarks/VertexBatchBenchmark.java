@@ -0,0 +1,113 @@
+package com.binaryworkspace.rcp.jogl.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2;
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GLProfile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.binaryworkspace.rcp.jogl.util.GL2ES2_Util;
+import com.binaryworkspace.rcp.jogl.util.VertexBatchRenderer;
+
+/**
+ * Vertex throughput of {@link VertexBatchRenderer} against glBegin/glEnd
+ * immediate mode for 3 to 1M vertices.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Every invocation ends with glFinish() so the score covers the work done
+ * by the driver, not just the submission. Vertices per second are the score
+ * multiplied by {@code vertexCount}.
+ * <li>{@link #retainedDraw()} draws already uploaded data (static views),
+ * {@link #batchedSubmit()} refills and re-uploads the batch first (animated
+ * views) and {@link #immediateMode()} is the former view code path.
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VertexBatchBenchmark {
+
+	@Param({ "3", "1000", "100000", "1000000" })
+	public int vertexCount;
+
+	private OffscreenGL offscreenGL;
+
+	private VertexBatchRenderer batch;
+
+	private float[] vertices;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		offscreenGL = new OffscreenGL(GLProfile.GL2, 512, 512);
+		GL2ES2 gl2es2 = offscreenGL.getGL2ES2();
+
+		// Random triangles covering the viewport
+		Random random = new Random(5530);
+		vertices = new float[vertexCount * VertexBatchRenderer.FLOATS_PER_VERTEX];
+		for (int i = 0; i < vertices.length; i++) {
+			vertices[i] = random.nextFloat();
+		}
+
+		batch = new VertexBatchRenderer(vertexCount);
+		batch.setAsyncBuild(false);
+		batch.init(gl2es2);
+		batch.setProjection(GL2ES2_Util.ortho2D(new float[16], 0, 1, 0, 1));
+		batch.addVertices(vertices, 0, vertexCount);
+		batch.draw(gl2es2, GL.GL_TRIANGLES);
+		gl2es2.glFinish();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		batch.dispose(offscreenGL.getGL2ES2());
+		offscreenGL.destroy();
+	}
+
+	@Benchmark
+	public void retainedDraw() {
+		GL2ES2 gl2es2 = offscreenGL.getGL2ES2();
+		batch.draw(gl2es2, GL.GL_TRIANGLES);
+		gl2es2.glFinish();
+	}
+
+	@Benchmark
+	public void batchedSubmit() {
+		GL2ES2 gl2es2 = offscreenGL.getGL2ES2();
+		batch.clear();
+		batch.addVertices(vertices, 0, vertexCount);
+		batch.draw(gl2es2, GL.GL_TRIANGLES);
+		gl2es2.glFinish();
+	}
+
+	@Benchmark
+	public void immediateMode() {
+		GL2 gl2 = offscreenGL.getContext().getGL().getGL2();
+		gl2.glBegin(GL.GL_TRIANGLES);
+		for (int i = 0; i < vertices.length; i += VertexBatchRenderer.FLOATS_PER_VERTEX) {
+			gl2.glColor3f(vertices[i + 2], vertices[i + 3], vertices[i + 4]);
+			gl2.glVertex2f(vertices[i], vertices[i + 1]);
+		}
+		gl2.glEnd();
+		gl2.glFinish();
+	}
+}
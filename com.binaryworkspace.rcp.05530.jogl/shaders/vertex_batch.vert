@@ -0,0 +1,11 @@
+#ifdef GL_ES
+precision mediump float;
+#endif
+uniform mat4 uProjection;
+attribute vec2 aPosition;
+attribute vec3 aColor;
+varying vec3 vColor;
+void main() {
+  vColor = aColor;
+  gl_Position = uProjection * vec4(aPosition, 0.0, 1.0);
+}
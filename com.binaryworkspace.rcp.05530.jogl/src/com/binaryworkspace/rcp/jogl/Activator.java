@@ -1,9 +1,36 @@
 package com.binaryworkspace.rcp.jogl;
 
+import java.io.File;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.jface.resource.ImageDescriptor;
+import org.eclipse.osgi.service.datalocation.Location;
+import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 
+import com.binaryworkspace.rcp.jogl.preferences.PreferenceConstants;
+import com.binaryworkspace.rcp.jogl.render.AWTGLSurface;
+import com.binaryworkspace.rcp.jogl.render.DisplayExecutor;
+import com.binaryworkspace.rcp.jogl.render.FrameScheduler;
+import com.binaryworkspace.rcp.jogl.render.GLContextShareManager;
+import com.binaryworkspace.rcp.jogl.render.GLRenderThread;
+import com.binaryworkspace.rcp.jogl.render.GLStartup;
+import com.binaryworkspace.rcp.jogl.render.GLSurfaceType;
+import com.binaryworkspace.rcp.jogl.render.IRenderTarget;
+import com.binaryworkspace.rcp.jogl.render.UILatencyProbe;
+import com.binaryworkspace.rcp.jogl.util.AsyncTextureLoader;
+import com.binaryworkspace.rcp.jogl.util.DirectBufferPool;
+import com.binaryworkspace.rcp.jogl.util.MinMaxPyramid;
+import com.binaryworkspace.rcp.jogl.util.NativeLibraryCache;
+import com.binaryworkspace.rcp.jogl.util.NioImageDecoder;
+import com.binaryworkspace.rcp.jogl.util.ShaderProgramCache;
+import com.binaryworkspace.rcp.jogl.util.TextureManager;
+
 /**
  * The activator class controls the plug-in life cycle
  */
@@ -14,6 +41,46 @@ public class Activator extends AbstractUIPlugin {
 
 	// The shared instance
 	private static Activator plugin;
+
+	// Initializes NativeWindow and probes the GL profiles, created at start
+	private volatile GLStartup glStartup;
+
+	// The frame scheduler shared by all GL views, created on first use
+	private FrameScheduler frameScheduler;
+
+	// Logs the render targets the frame schedulers dropped
+	private final FrameScheduler.IFailureListener frameFailureListener = new FrameScheduler.IFailureListener() {
+		public void targetFailed(IRenderTarget target, RuntimeException e) {
+			getLog().log(new Status(IStatus.ERROR, PLUGIN_ID, "Render target failed and was removed from the frame loop: " + target, e));
+		}
+	};
+
+	// The render thread of GL views rendering off the UI thread, created on first use
+	private GLRenderThread renderThread;
+
+	// The frame scheduler driving the render thread, created on first use
+	private FrameScheduler renderThreadScheduler;
+
+	// The UI latency probe, created on first use
+	private UILatencyProbe uiLatencyProbe;
+
+	// The master GL context shared by all GL views, created on first use
+	private GLContextShareManager contextShareManager;
+
+	// The shader program cache shared by all GL views, created on first use
+	private ShaderProgramCache shaderProgramCache;
+
+	// The texture manager shared by all GL views, created on first use
+	private TextureManager textureManager;
+
+	// The pool decoding images for all GL views, created on first use
+	private ExecutorService textureDecodeExecutor;
+
+	// The pool building decimation pyramids for all GL views, created on first use
+	private ExecutorService pyramidBuildExecutor;
+
+	// The image decoder shared by all GL views, created on first use
+	private NioImageDecoder imageDecoder;
 	
 	/**
 	 * The constructor
@@ -26,8 +93,31 @@ public class Activator extends AbstractUIPlugin {
 	 * @see org.eclipse.ui.plugin.AbstractUIPlugin#start(org.osgi.framework.BundleContext)
 	 */
 	public void start(BundleContext context) throws Exception {
+		long startNanos = System.nanoTime();
 		super.start(context);
 		plugin = this;
+
+		// Read once by the AWT toolkit, which JOGL may load
+		System.setProperty(AWTGLSurface.NO_ERASE_BACKGROUND_PROPERTY, Boolean.TRUE.toString());
+
+		// Initialize NativeWindow before the application creates the display,
+		// then probe the GL profiles while the workbench starts
+		glStartup = new GLStartup(startNanos, createNativeLibraryCache());
+		glStartup.start();
+	}
+
+	// The native library cache in the configuration area, or null if disabled
+	private NativeLibraryCache createNativeLibraryCache() {
+		if (!Boolean.parseBoolean(System.getProperty(GLStartup.NATIVE_LIBRARY_CACHE_PROPERTY, Boolean.TRUE.toString()))) {
+			return null;
+		}
+		Location location = Platform.getConfigurationLocation();
+		URL url = (location != null) ? location.getURL() : null;
+		if ((url == null) || location.isReadOnly() || !"file".equals(url.getProtocol())) { //$NON-NLS-1$
+			// e.g. a shared install, cache per user instead
+			return new NativeLibraryCache(getStateLocation().append("natives").toFile()); //$NON-NLS-1$
+		}
+		return new NativeLibraryCache(new File(new File(url.getFile(), PLUGIN_ID), "natives")); //$NON-NLS-1$
 	}
 
 	/*
@@ -35,6 +125,36 @@ public class Activator extends AbstractUIPlugin {
 	 * @see org.eclipse.ui.plugin.AbstractUIPlugin#stop(org.osgi.framework.BundleContext)
 	 */
 	public void stop(BundleContext context) throws Exception {
+		synchronized (this) {
+			if (frameScheduler != null) {
+				frameScheduler.dispose();
+				frameScheduler = null;
+			}
+			if (renderThreadScheduler != null) {
+				renderThreadScheduler.dispose();
+				renderThreadScheduler = null;
+			}
+			if (renderThread != null) {
+				renderThread.dispose();
+				renderThread = null;
+			}
+			if (uiLatencyProbe != null) {
+				uiLatencyProbe.dispose();
+				uiLatencyProbe = null;
+			}
+			if (contextShareManager != null) {
+				contextShareManager.dispose();
+				contextShareManager = null;
+			}
+			if (textureDecodeExecutor != null) {
+				textureDecodeExecutor.shutdownNow();
+				textureDecodeExecutor = null;
+			}
+			if (pyramidBuildExecutor != null) {
+				pyramidBuildExecutor.shutdownNow();
+				pyramidBuildExecutor = null;
+			}
+		}
 		plugin = null;
 		super.stop(context);
 	}
@@ -48,6 +168,166 @@ public class Activator extends AbstractUIPlugin {
 		return plugin;
 	}
 
+	/**
+	 * Returns the GL startup querying the GL profiles since the plug-in
+	 * started; views get their profile from it
+	 *
+	 * @return the GL startup
+	 */
+	public GLStartup getGLStartup() {
+		return glStartup;
+	}
+
+	/**
+	 * Returns the surface type of GL views opened from now on, as chosen on
+	 * the preference page
+	 *
+	 * @return the preferred surface type
+	 */
+	public GLSurfaceType getSurfaceType() {
+		return GLSurfaceType.parse(getPreferenceStore().getString(PreferenceConstants.SURFACE), GLSurfaceType.SWT_GLCANVAS);
+	}
+
+	/**
+	 * Returns the frame scheduler driving all GL views of the workbench
+	 * display
+	 *
+	 * @return the shared frame scheduler
+	 */
+	public synchronized FrameScheduler getFrameScheduler() {
+		if (frameScheduler == null) {
+			frameScheduler = new FrameScheduler(new DisplayExecutor(PlatformUI.getWorkbench().getDisplay()), FrameScheduler.DEFAULT_FRAMES_PER_SECOND, frameFailureListener);
+		}
+		return frameScheduler;
+	}
+
+	/**
+	 * Returns the thread doing the GL work of views rendering off the UI
+	 * thread
+	 *
+	 * @return the shared render thread
+	 */
+	public synchronized GLRenderThread getRenderThread() {
+		if (renderThread == null) {
+			renderThread = new GLRenderThread();
+		}
+		return renderThread;
+	}
+
+	/**
+	 * Returns the frame scheduler driving all GL views rendering on the
+	 * {@link #getRenderThread() render thread}
+	 *
+	 * @return the shared render thread frame scheduler
+	 */
+	public synchronized FrameScheduler getRenderThreadScheduler() {
+		if (renderThreadScheduler == null) {
+			renderThreadScheduler = new FrameScheduler(getRenderThread(), FrameScheduler.DEFAULT_FRAMES_PER_SECOND, frameFailureListener);
+		}
+		return renderThreadScheduler;
+	}
+
+	/**
+	 * Returns the probe measuring the event latency of the workbench UI
+	 * thread; probing starts on first use
+	 *
+	 * @return the shared UI latency probe
+	 */
+	public synchronized UILatencyProbe getUILatencyProbe() {
+		if (uiLatencyProbe == null) {
+			uiLatencyProbe = new UILatencyProbe(PlatformUI.getWorkbench().getDisplay());
+		}
+		return uiLatencyProbe;
+	}
+
+	/**
+	 * Returns the manager creating the GL canvases and contexts of all GL
+	 * views of the workbench display as shares of one master context
+	 *
+	 * @return the shared context share manager
+	 */
+	public synchronized GLContextShareManager getContextShareManager() {
+		if (contextShareManager == null) {
+			contextShareManager = new GLContextShareManager(PlatformUI.getWorkbench().getDisplay());
+		}
+		return contextShareManager;
+	}
+
+	/**
+	 * Returns the shader program cache shared by all GL views. Program
+	 * binaries are persisted below the bundle state location.
+	 *
+	 * @return the shared shader program cache
+	 */
+	public synchronized ShaderProgramCache getShaderProgramCache() {
+		if (shaderProgramCache == null) {
+			shaderProgramCache = new ShaderProgramCache(getStateLocation().append("programs").toFile()); //$NON-NLS-1$
+		}
+		return shaderProgramCache;
+	}
+
+	/**
+	 * Returns the texture manager shared by all GL views
+	 *
+	 * @return the shared texture manager
+	 */
+	public synchronized TextureManager getTextureManager() {
+		if (textureManager == null) {
+			textureManager = new TextureManager(TextureManager.DEFAULT_BUDGET_BYTES, getImageDecoder());
+		}
+		return textureManager;
+	}
+
+	/**
+	 * Returns the bounded pool decoding images for the
+	 * {@link AsyncTextureLoader}s of all GL views
+	 *
+	 * @return the shared texture decode pool
+	 */
+	public synchronized ExecutorService getTextureDecodeExecutor() {
+		if (textureDecodeExecutor == null) {
+			int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+			textureDecodeExecutor = AsyncTextureLoader.createDecodeExecutor(threads);
+		}
+		return textureDecodeExecutor;
+	}
+
+	/**
+	 * Returns the pool building the {@link MinMaxPyramid}s of all GL views
+	 *
+	 * @return the shared pyramid build pool
+	 */
+	public synchronized ExecutorService getPyramidBuildExecutor() {
+		if (pyramidBuildExecutor == null) {
+			pyramidBuildExecutor = MinMaxPyramid.createBuildExecutor(getPyramidBuildThreads());
+		}
+		return pyramidBuildExecutor;
+	}
+
+	/**
+	 * Returns the number of threads of the pyramid build pool, leaving one
+	 * processor to the UI
+	 *
+	 * @return the number of pyramid build threads
+	 */
+	public int getPyramidBuildThreads() {
+		return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	}
+
+	/**
+	 * Returns the image decoder shared by the texture manager and the
+	 * {@link AsyncTextureLoader}s of all GL views. Its pixel buffers are pooled
+	 * up to 64 MB.
+	 *
+	 * @return the shared image decoder
+	 */
+	public synchronized NioImageDecoder getImageDecoder() {
+		if (imageDecoder == null) {
+			imageDecoder = new NioImageDecoder(new DirectBufferPool(64L * 1024 * 1024));
+		}
+		return imageDecoder;
+	}
+
 	/**
 	 * Returns an image descriptor for the image file at the given
 	 * plug-in relative path
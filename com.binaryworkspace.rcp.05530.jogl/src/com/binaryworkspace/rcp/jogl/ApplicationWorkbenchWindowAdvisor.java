@@ -6,6 +6,8 @@ import org.eclipse.ui.application.IActionBarConfigurer;
 import org.eclipse.ui.application.IWorkbenchWindowConfigurer;
 import org.eclipse.ui.application.WorkbenchWindowAdvisor;
 
+import com.binaryworkspace.rcp.jogl.views.SurfaceLatencyViewPart;
+
 public class ApplicationWorkbenchWindowAdvisor extends WorkbenchWindowAdvisor {
 
 	public ApplicationWorkbenchWindowAdvisor(IWorkbenchWindowConfigurer configurer) {
@@ -21,7 +23,13 @@ public class ApplicationWorkbenchWindowAdvisor extends WorkbenchWindowAdvisor {
 		IWorkbenchWindowConfigurer configurer = getWindowConfigurer();
 		configurer.setInitialSize(new Point(400, 300));
 		configurer.setShowCoolBar(false);
-		configurer.setShowStatusLine(false);
+		configurer.setShowStatusLine(true);
 		configurer.setTitle("Binary Workspace - 05530 Eclipse RCP 3.x (4.5.1) - JOGL (2.1.5)");
 	}
+
+	@Override
+	public void postWindowOpen() {
+		// Compare the GL surfaces if requested
+		SurfaceLatencyViewPart.openIfRequested(getWindowConfigurer().getWindow());
+	}
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import org.eclipse.ui.IPageLayout;
 import org.eclipse.ui.IPerspectiveFactory;
 
 import com.binaryworkspace.rcp.jogl.views.AnimatedOneTriangleViewPart;
+import com.binaryworkspace.rcp.jogl.views.InstancedTrianglesViewPart;
 import com.binaryworkspace.rcp.jogl.views.OneTriangleEmbeddedViewPart;
 import com.binaryworkspace.rcp.jogl.views.OneTriangleViewPart;
 
@@ -18,5 +19,6 @@ public class Perspective implements IPerspectiveFactory {
 		folderReport.addView(OneTriangleViewPart.ID);
 		folderReport.addView(OneTriangleEmbeddedViewPart.ID);
 		folderReport.addView(AnimatedOneTriangleViewPart.ID);
+		folderReport.addView(InstancedTrianglesViewPart.ID);
 	}
 }
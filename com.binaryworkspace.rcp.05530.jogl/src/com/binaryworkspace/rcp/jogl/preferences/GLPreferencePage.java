@@ -0,0 +1,36 @@
+package com.binaryworkspace.rcp.jogl.preferences;
+
+import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.RadioGroupFieldEditor;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPreferencePage;
+
+import com.binaryworkspace.rcp.jogl.Activator;
+import com.binaryworkspace.rcp.jogl.render.GLSurfaceType;
+
+/**
+ * Chooses the {@link GLSurfaceType} of the GL views. Views already open keep
+ * theirs until reopened.
+ */
+public class GLPreferencePage extends FieldEditorPreferencePage implements IWorkbenchPreferencePage {
+
+	public GLPreferencePage() {
+		super(GRID);
+		setPreferenceStore(Activator.getDefault().getPreferenceStore());
+		setDescription("GL surface of views opened from now on. Compare them with the Surface Latency view.");
+	}
+
+	public void init(IWorkbench workbench) {
+		// Do Nothing.
+	}
+
+	@Override
+	protected void createFieldEditors() {
+		addField(new RadioGroupFieldEditor(PreferenceConstants.SURFACE, "Surface", 1, new String[][] { //
+				{ "SWT GLCanvas (UI thread)", GLSurfaceType.SWT_GLCANVAS.name() }, //
+				{ "JOGL SWT GLCanvas (UI thread)", GLSurfaceType.JOGL_SWT_GLCANVAS.name() }, //
+				{ "NEWT in NewtCanvasSWT (render thread)", GLSurfaceType.NEWT.name() }, //
+				{ "AWT GLCanvas in SWT_AWT bridge (render thread)", GLSurfaceType.AWT_BRIDGE.name() } }, //
+				getFieldEditorParent(), true));
+	}
+}
@@ -0,0 +1,17 @@
+package com.binaryworkspace.rcp.jogl.preferences;
+
+/**
+ * Keys of the plug-in's preferences.
+ */
+public class PreferenceConstants {
+
+	/**
+	 * The {@link com.binaryworkspace.rcp.jogl.render.GLSurfaceType} name of
+	 * the GL views opened from now on.
+	 */
+	public static final String SURFACE = "surface"; //$NON-NLS-1$
+
+	private PreferenceConstants() {
+		// Constants
+	}
+}
@@ -0,0 +1,30 @@
+package com.binaryworkspace.rcp.jogl.preferences;
+
+import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import com.binaryworkspace.rcp.jogl.Activator;
+import com.binaryworkspace.rcp.jogl.render.GLSurfaceType;
+import com.binaryworkspace.rcp.jogl.views.AbstractGLCanvasViewPart;
+
+/**
+ * Sets the default preferences.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The default surface is named by the
+ * {@value GLSurfaceType#SURFACE_PROPERTY} system property, so a launch
+ * configuration can pick one without touching the workspace preferences.
+ * Without it, the {@value AbstractGLCanvasViewPart#RENDER_THREAD_PROPERTY}
+ * system property still selects {@link GLSurfaceType#NEWT}.
+ * </ul>
+ */
+public class PreferenceInitializer extends AbstractPreferenceInitializer {
+
+	@Override
+	public void initializeDefaultPreferences() {
+		IPreferenceStore store = Activator.getDefault().getPreferenceStore();
+		GLSurfaceType defaultType = Boolean.getBoolean(AbstractGLCanvasViewPart.RENDER_THREAD_PROPERTY) ? GLSurfaceType.NEWT : GLSurfaceType.SWT_GLCANVAS;
+		store.setDefault(PreferenceConstants.SURFACE, GLSurfaceType.parse(System.getProperty(GLSurfaceType.SURFACE_PROPERTY), defaultType).name());
+	}
+}
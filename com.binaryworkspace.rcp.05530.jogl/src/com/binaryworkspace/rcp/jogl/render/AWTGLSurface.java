@@ -0,0 +1,84 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import java.awt.Frame;
+
+import javax.media.opengl.GLAutoDrawable;
+import javax.media.opengl.GLProfile;
+import javax.media.opengl.awt.GLCanvas;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.awt.SWT_AWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+
+import com.binaryworkspace.rcp.jogl.Activator;
+import com.binaryworkspace.rcp.jogl.util.GLErrorChecker;
+
+/**
+ * {@link GLSurfaceType#AWT_BRIDGE}: an AWT GLCanvas in a SWT_AWT frame, drawn
+ * on the {@link GLRenderThread}.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>JOGL runs each frame on the AWT event thread while the render thread
+ * waits. Drawing from the UI thread instead could deadlock with the bridge,
+ * which calls into the UI thread from the AWT event thread.
+ * <li>AWT's background erase, which otherwise clears the canvas on every
+ * resize and makes it flicker, is turned off by the {@link Activator} setting
+ * {@value #NO_ERASE_BACKGROUND_PROPERTY} before JOGL's initialization may
+ * load the AWT toolkit, which reads it once.
+ * </ul>
+ */
+public class AWTGLSurface extends AbstractGLAutoDrawableSurface {
+
+	public static final String NO_ERASE_BACKGROUND_PROPERTY = "sun.awt.noerasebackground"; //$NON-NLS-1$
+
+	private Composite composite;
+
+	private Frame frame;
+
+	private GLCanvas glCanvas;
+
+	private volatile boolean disposed;
+
+	public AWTGLSurface(GLContextShareManager contextShareManager, GLErrorChecker errorChecker) {
+		super(contextShareManager, errorChecker);
+	}
+
+	public Control create(Composite parent, GLProfile glProfile, IGLSurfaceListener listener) {
+		// Its context and GL resources are created with the first frame
+		glCanvas = contextShareManager.createAWTCanvas(glProfile);
+		attach(glCanvas, listener);
+
+		// SWT to AWT bridge
+		composite = new Composite(parent, SWT.EMBEDDED | SWT.NO_BACKGROUND);
+		frame = SWT_AWT.new_Frame(composite);
+		frame.add(glCanvas);
+		return composite;
+	}
+
+	@Override
+	protected GLAutoDrawable getDrawable() {
+		return disposed ? null : glCanvas;
+	}
+
+	public boolean isOnRenderThread() {
+		return true;
+	}
+
+	public Object getInputSource() {
+		return glCanvas;
+	}
+
+	public GLSurfaceType getType() {
+		return GLSurfaceType.AWT_BRIDGE;
+	}
+
+	public void dispose() {
+		disposed = true;
+		// Releases the GL resources through the listener on the AWT event thread
+		glCanvas.destroy();
+		frame.dispose();
+		composite.dispose();
+	}
+}
@@ -0,0 +1,101 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import javax.media.opengl.GLAutoDrawable;
+import javax.media.opengl.GLEventListener;
+
+import com.binaryworkspace.rcp.jogl.util.GLErrorChecker;
+
+/**
+ * Base class of the surfaces drawing through a JOGL {@link GLAutoDrawable},
+ * which creates its own context.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The drawable calls back its {@link GLEventListener} on the thread JOGL
+ * picks, e.g. the AWT event thread. The context joins the share group in
+ * init() and leaves it in dispose().
+ * <li>Toolkits also display the drawable by themselves to repaint it. Only
+ * frames requested through {@link #display()} are drawn; the others are
+ * reported as {@link IGLSurfaceListener#exposed()}, so every frame is drawn
+ * by the frame thread and timed.
+ * <li>Buffers are swapped by the surface after drawing, never by JOGL, so an
+ * exposure without a frame doesn't swap in an undrawn buffer.
+ * </ul>
+ */
+public abstract class AbstractGLAutoDrawableSurface implements IGLSurface {
+
+	protected final GLContextShareManager contextShareManager;
+
+	protected final GLErrorChecker errorChecker;
+
+	private IGLSurfaceListener listener;
+
+	// Set by display() around a requested frame
+	private volatile boolean frameRequested;
+
+	private volatile boolean drawn;
+
+	private final GLEventListener eventListener = new GLEventListener() {
+		public void init(GLAutoDrawable drawable) {
+			contextShareManager.joinShareGroup(drawable.getContext());
+			listener.init(drawable.getGL().getGL2ES2());
+		}
+
+		public void reshape(GLAutoDrawable drawable, int x, int y, int width, int height) {
+			// Applied by the next frame
+			listener.resized(width, height);
+		}
+
+		public void display(GLAutoDrawable drawable) {
+			if (!frameRequested) {
+				// Repaint by the toolkit, draw on the frame thread instead
+				listener.exposed();
+				return;
+			}
+			frameRequested = false;
+			listener.display(drawable.getGL().getGL2ES2());
+			drawable.swapBuffers();
+			drawn = true;
+		}
+
+		public void dispose(GLAutoDrawable drawable) {
+			listener.dispose(drawable.getGL().getGL2ES2());
+			contextShareManager.destroyContext(drawable.getContext());
+		}
+	};
+
+	protected AbstractGLAutoDrawableSurface(GLContextShareManager contextShareManager, GLErrorChecker errorChecker) {
+		this.contextShareManager = contextShareManager;
+		this.errorChecker = errorChecker;
+	}
+
+	// Frame Thread
+	public boolean display() {
+		GLAutoDrawable drawable = getDrawable();
+		if (drawable == null) {
+			return false;
+		}
+		drawn = false;
+		frameRequested = true;
+		drawable.display();
+		frameRequested = false;
+		return drawn;
+	}
+
+	/**
+	 * @return the drawable, or null before it was created or after it was
+	 *         disposed.
+	 */
+	protected abstract GLAutoDrawable getDrawable();
+
+	/**
+	 * Prepares a new drawable to call back the listener. Must be called
+	 * before the drawable is realized.
+	 */
+	protected void attach(GLAutoDrawable drawable, IGLSurfaceListener listener) {
+		this.listener = listener;
+		errorChecker.prepareDrawable(drawable);
+		drawable.setAutoSwapBufferMode(false);
+		drawable.addGLEventListener(eventListener);
+	}
+}
@@ -0,0 +1,35 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Runs tasks on the UI thread of a display, e.g. as the frame executor of a
+ * {@link FrameScheduler}.
+ */
+public class DisplayExecutor implements Executor {
+
+	private final Display display;
+
+	public DisplayExecutor(Display display) {
+		this.display = display;
+	}
+
+	/**
+	 * Queues a task with {@link Display#asyncExec(Runnable)}. May be called
+	 * from any thread and never blocks.
+	 *
+	 * @throws RejectedExecutionException
+	 *             once the display has been disposed.
+	 */
+	public void execute(Runnable task) {
+		try {
+			display.asyncExec(task);
+		} catch (SWTException e) {
+			throw new RejectedExecutionException("Display disposed", e); //$NON-NLS-1$
+		}
+	}
+}
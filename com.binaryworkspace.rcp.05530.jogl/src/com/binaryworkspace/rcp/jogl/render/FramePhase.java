@@ -0,0 +1,38 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+/**
+ * The phases of a frame timed by {@link FrameStatistics}.
+ */
+public enum FramePhase {
+
+	/**
+	 * From the {@link FrameScheduler} posting the frame until the frame thread
+	 * runs it.
+	 */
+	DISPATCH,
+
+	/**
+	 * Making the canvas and GL context current.
+	 */
+	MAKE_CURRENT,
+
+	/**
+	 * Submitting the draw calls (CPU side).
+	 */
+	DRAW,
+
+	/**
+	 * Swapping the buffers and releasing the context.
+	 */
+	SWAP,
+
+	/**
+	 * GPU execution time of the draw calls, measured with timer queries.
+	 */
+	GPU,
+
+	/**
+	 * The whole frame on the frame thread, excluding {@link #DISPATCH}.
+	 */
+	TOTAL
+}
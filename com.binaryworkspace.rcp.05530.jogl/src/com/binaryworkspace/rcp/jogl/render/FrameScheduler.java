@@ -0,0 +1,300 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drives every registered {@link IRenderTarget} from a single timer thread.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The timer thread never touches GL or SWT widgets; it only posts a frame
+ * to the frame thread, so it never blocks on it. The frame thread is the UI
+ * thread (through a {@link DisplayExecutor}) or a {@link GLRenderThread}.
+ * <li>At most one frame is queued on the frame thread at any time. Frame requests
+ * arriving while a frame is still pending are merged into it.
+ * <li>The timer only runs while at least one visible
+ * {@link RenderMode#CONTINUOUS} target is registered. {@link RenderMode#ON_DEMAND} targets are drawn in
+ * frames requested through {@link #requestFrame()}, so the scheduler costs
+ * nothing while every view is idle, hidden or disposed.
+ * <li>With a rate of {@link #VSYNC} the next frame is posted as soon as the
+ * previous one completes, leaving the pacing to a swap interval of 1 in
+ * {@code swapBuffers()}, which targets set while the scheduler is in vsync
+ * mode. Drivers ignoring the swap interval, or frames drawing nothing, would
+ * otherwise spin the frame thread, so frames are never posted more often than
+ * {@value #MAX_VSYNC_FRAMES_PER_SECOND} times per second.
+ * </ul>
+ */
+public class FrameScheduler {
+
+	/**
+	 * Receives the targets dropped from the frame loop because they threw.
+	 */
+	public interface IFailureListener {
+
+		/**
+		 * Called on the frame thread after the target was removed.
+		 */
+		void targetFailed(IRenderTarget target, RuntimeException e);
+	}
+
+	public static final int DEFAULT_FRAMES_PER_SECOND = 60;
+
+	/**
+	 * Frame rate value selecting vsync pacing instead of a fixed timer.
+	 */
+	public static final int VSYNC = 0;
+
+	/**
+	 * Upper bound of the frame rate in {@link #VSYNC} mode.
+	 */
+	public static final int MAX_VSYNC_FRAMES_PER_SECOND = 240;
+
+	private static final long MIN_VSYNC_FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / MAX_VSYNC_FRAMES_PER_SECOND;
+
+	private final Executor frameExecutor;
+
+	private final IFailureListener failureListener;
+
+	private final CopyOnWriteArrayList<IRenderTarget> targets = new CopyOnWriteArrayList<IRenderTarget>();
+
+	private final AtomicBoolean framePending = new AtomicBoolean();
+
+	private final ScheduledExecutorService timer;
+
+	// Guarded by this
+	private ScheduledFuture<?> ticker;
+
+	private volatile int framesPerSecond;
+
+	private volatile boolean disposed;
+
+	// When the pending frame was posted, and how long it waited to run
+	private volatile long framePostedNanos;
+	private long dispatchLatencyNanos;
+
+	private final Runnable tickRunnable = new Runnable() {
+		public void run() {
+			requestFrame();
+		}
+	};
+
+	private final Runnable frameRunnable = new Runnable() {
+		public void run() {
+			runFrame();
+		}
+	};
+
+	/**
+	 * @param frameExecutor
+	 *            runs the frames, one at a time, e.g. a {@link GLRenderThread}
+	 *            or a {@link DisplayExecutor}. Throws
+	 *            {@link RejectedExecutionException} once shut down.
+	 * @param framesPerSecond
+	 *            target frame rate, or {@link #VSYNC}.
+	 * @param failureListener
+	 *            receives the targets removed because they threw, e.g. to log
+	 *            them.
+	 */
+	public FrameScheduler(Executor frameExecutor, int framesPerSecond, IFailureListener failureListener) {
+		if (framesPerSecond < 0) {
+			throw new IllegalArgumentException("Frames per second must not be negative: " + framesPerSecond);
+		}
+		this.frameExecutor = frameExecutor;
+		this.failureListener = failureListener;
+		this.framesPerSecond = framesPerSecond;
+		this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "GL Frame Scheduler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Adds a target to the frame loop. Registering an already registered
+	 * target has no effect.
+	 */
+	public void register(IRenderTarget target) {
+		if (disposed) {
+			return;
+		}
+		targets.addIfAbsent(target);
+		startTicker();
+	}
+
+	/**
+	 * Removes a target from the frame loop. The timer pauses once the last
+	 * continuous target has been removed.
+	 */
+	public void unregister(IRenderTarget target) {
+		targets.remove(target);
+		if (!hasContinuousTargets()) {
+			stopTicker();
+		}
+	}
+
+	/**
+	 * Re-evaluates whether the timer has to run. Called by targets after their
+	 * {@link RenderMode} changed.
+	 */
+	public void renderModeChanged() {
+		if (hasContinuousTargets()) {
+			startTicker();
+		} else {
+			stopTicker();
+		}
+	}
+
+	/**
+	 * Re-evaluates whether the timer has to run. Called by targets after they
+	 * were shown or hidden.
+	 */
+	public void visibilityChanged() {
+		renderModeChanged();
+	}
+
+	/**
+	 * Requests a frame on the frame thread. May be called from any thread; if
+	 * a frame is already pending the request is merged into it.
+	 */
+	public void requestFrame() {
+		if (disposed || !framePending.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			framePostedNanos = System.nanoTime();
+			frameExecutor.execute(frameRunnable);
+		} catch (RejectedExecutionException e) {
+			// Display or render thread disposed while shutting down
+			framePending.set(false);
+		}
+	}
+
+	/**
+	 * @param framesPerSecond
+	 *            new target frame rate, or {@link #VSYNC}.
+	 */
+	public synchronized void setFramesPerSecond(int framesPerSecond) {
+		if (framesPerSecond < 0) {
+			throw new IllegalArgumentException("Frames per second must not be negative: " + framesPerSecond);
+		}
+		this.framesPerSecond = framesPerSecond;
+		// Restarts the timer at the new rate, or starts it when leaving vsync
+		// mode, where frames chained themselves without one
+		stopTicker();
+		startTicker();
+	}
+
+	public int getFramesPerSecond() {
+		return framesPerSecond;
+	}
+
+	/**
+	 * @return how long the frame being rendered waited in the frame thread's
+	 *         queue after it was posted. Only meaningful on the frame thread
+	 *         while a frame is rendered.
+	 */
+	public long getDispatchLatencyNanos() {
+		return dispatchLatencyNanos;
+	}
+
+	/**
+	 * @return true while frames are paced by the swap interval rather than
+	 *         the timer; targets should then swap with an interval of 1.
+	 */
+	public boolean isVsync() {
+		return framesPerSecond == VSYNC;
+	}
+
+	/**
+	 * Stops the timer thread and drops all targets. Called by the
+	 * {@link com.binaryworkspace.rcp.jogl.Activator} when the bundle stops.
+	 */
+	public void dispose() {
+		disposed = true;
+		targets.clear();
+		stopTicker();
+		timer.shutdownNow();
+	}
+
+	private synchronized void startTicker() {
+		if (disposed || (ticker != null) || !hasContinuousTargets()) {
+			return;
+		}
+		if (framesPerSecond == VSYNC) {
+			// Frames chain themselves from runFrame()
+			requestFrame();
+			return;
+		}
+		long periodNanos = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+		ticker = timer.scheduleAtFixedRate(tickRunnable, 0, periodNanos, TimeUnit.NANOSECONDS);
+	}
+
+	private boolean hasContinuousTargets() {
+		for (IRenderTarget target : targets) {
+			if ((target.getRenderMode() == RenderMode.CONTINUOUS) && target.isVisible()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private synchronized void stopTicker() {
+		if (ticker != null) {
+			ticker.cancel(false);
+			ticker = null;
+		}
+	}
+
+	// Frame Thread
+	private void runFrame() {
+		long startNanos = System.nanoTime();
+		dispatchLatencyNanos = startNanos - framePostedNanos;
+		framePending.set(false);
+		if (disposed) {
+			return;
+		}
+
+		for (IRenderTarget target : targets) {
+			if (target.isDisposed()) {
+				targets.remove(target);
+				continue;
+			}
+			if (!target.isVisible() || !target.needsFrame()) {
+				continue;
+			}
+			try {
+				target.renderFrame();
+			} catch (RuntimeException e) {
+				// Drop the target rather than logging the same failure every frame
+				targets.remove(target);
+				failureListener.targetFailed(target, e);
+			}
+		}
+
+		if (!hasContinuousTargets()) {
+			stopTicker();
+		} else if (framesPerSecond == VSYNC) {
+			long remainingNanos = MIN_VSYNC_FRAME_NANOS - (System.nanoTime() - startNanos);
+			if (remainingNanos <= 0) {
+				requestFrame();
+				return;
+			}
+			// The swap didn't wait for vsync, hold the next frame back
+			try {
+				timer.schedule(tickRunnable, remainingNanos, TimeUnit.NANOSECONDS);
+			} catch (RejectedExecutionException e) {
+				// Disposed
+			}
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import com.binaryworkspace.rcp.jogl.Activator;
+import com.binaryworkspace.rcp.jogl.util.FrameHistogram;
+
+/**
+ * Frame timings of one GL view, one {@link FrameHistogram} per
+ * {@link FramePhase}.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Recording is allocation-free; only the JMX and summary getters
+ * allocate.
+ * <li>Once {@link #register()}ed the statistics are visible in any JMX
+ * console under the {@value #JMX_DOMAIN} domain.
+ * </ul>
+ */
+public class FrameStatistics implements FrameStatisticsMBean {
+
+	public static final String JMX_DOMAIN = "com.binaryworkspace.rcp.jogl"; //$NON-NLS-1$
+
+	private static final FramePhase[] PHASES = FramePhase.values();
+
+	private final String name;
+
+	private final FrameHistogram[] histograms = new FrameHistogram[PHASES.length];
+
+	private ObjectName objectName;
+
+	/**
+	 * @param name
+	 *            name of the view, unique among the registered statistics.
+	 */
+	public FrameStatistics(String name) {
+		this.name = name;
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new FrameHistogram();
+		}
+	}
+
+	public FrameHistogram getHistogram(FramePhase phase) {
+		return histograms[phase.ordinal()];
+	}
+
+	public void record(FramePhase phase, long nanos) {
+		histograms[phase.ordinal()].record(nanos);
+	}
+
+	/**
+	 * Registers the statistics with the platform MBean server. Failures are
+	 * logged, not thrown, as the statistics are optional.
+	 */
+	public synchronized void register() {
+		if (objectName != null) {
+			return;
+		}
+		try {
+			ObjectName candidate = new ObjectName(JMX_DOMAIN + ":type=FrameStatistics,name=" + ObjectName.quote(name)); //$NON-NLS-1$
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, candidate);
+			objectName = candidate;
+		} catch (JMException e) {
+			Activator.getDefault().getLog().log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Could not register the frame statistics of: " + name, e));
+		}
+	}
+
+	/**
+	 * Removes the statistics from the platform MBean server.
+	 */
+	public synchronized void unregister() {
+		if (objectName == null) {
+			return;
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.unregisterMBean(objectName);
+		} catch (JMException e) {
+			// Already gone
+		}
+		objectName = null;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getFrameCount() {
+		return getHistogram(FramePhase.TOTAL).getCount();
+	}
+
+	public String[] getPhases() {
+		String[] phases = new String[PHASES.length];
+		for (int i = 0; i < phases.length; i++) {
+			phases[i] = PHASES[i].name();
+		}
+		return phases;
+	}
+
+	public double[] getP50Millis() {
+		return getPercentileMillis(50);
+	}
+
+	public double[] getP99Millis() {
+		return getPercentileMillis(99);
+	}
+
+	public double[] getMaxMillis() {
+		double[] millis = new double[histograms.length];
+		for (int i = 0; i < millis.length; i++) {
+			millis[i] = toMillis(histograms[i].getMaxNanos());
+		}
+		return millis;
+	}
+
+	/**
+	 * @return a one line summary of the p50/p99/max times of each phase that
+	 *         recorded something, e.g. for a status line.
+	 */
+	public String getSummary() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < histograms.length; i++) {
+			FrameHistogram histogram = histograms[i];
+			if (histogram.getCount() == 0) {
+				continue;
+			}
+			if (sb.length() > 0) {
+				sb.append(" | "); //$NON-NLS-1$
+			}
+			sb.append(PHASES[i].name().toLowerCase());
+			sb.append(String.format(" %.2f/%.2f/%.2f ms", toMillis(histogram.getPercentileNanos(50)), toMillis(histogram.getPercentileNanos(99)), toMillis(histogram.getMaxNanos()))); //$NON-NLS-1$
+		}
+		return sb.toString();
+	}
+
+	public void reset() {
+		for (FrameHistogram histogram : histograms) {
+			histogram.reset();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "FrameStatistics [name=" + name + ", frames=" + getFrameCount() + ", " + getSummary() + "]";
+	}
+
+	private double[] getPercentileMillis(double percentile) {
+		double[] millis = new double[histograms.length];
+		for (int i = 0; i < millis.length; i++) {
+			millis[i] = toMillis(histograms[i].getPercentileNanos(percentile));
+		}
+		return millis;
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / 1000000.0;
+	}
+}
@@ -0,0 +1,24 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+/**
+ * JMX view of the {@link FrameStatistics} of a GL view. The array attributes
+ * are indexed like {@link #getPhases()}.
+ */
+public interface FrameStatisticsMBean {
+
+	String getName();
+
+	long getFrameCount();
+
+	String[] getPhases();
+
+	double[] getP50Millis();
+
+	double[] getP99Millis();
+
+	double[] getMaxMillis();
+
+	String getSummary();
+
+	void reset();
+}
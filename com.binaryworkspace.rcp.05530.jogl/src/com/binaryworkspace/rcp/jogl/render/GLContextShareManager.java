@@ -0,0 +1,196 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import javax.media.opengl.GLCapabilities;
+import javax.media.opengl.GLContext;
+import javax.media.opengl.GLDrawableFactory;
+import javax.media.opengl.GLProfile;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.opengl.GLCanvas;
+import org.eclipse.swt.opengl.GLData;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+
+import com.binaryworkspace.rcp.jogl.Activator;
+import com.binaryworkspace.rcp.jogl.util.GLShareGroup;
+import com.jogamp.newt.opengl.GLWindow;
+
+/**
+ * Creates the GL canvases and contexts of all views of a display so that they
+ * share one set of GL objects.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>A master context lives in a hidden 1x1 canvas for the lifetime of the
+ * display. Every canvas created here shares its objects with the master
+ * ({@link GLData#shareContext}), so programs, textures and buffers are
+ * uploaded once and usable by every view, and stay valid while views close
+ * and reopen.
+ * <li>The views' JOGL contexts join the master's {@link GLShareGroup}, which
+ * keys the {@link com.binaryworkspace.rcp.jogl.util.ShaderProgramCache} and
+ * {@link com.binaryworkspace.rcp.jogl.util.TextureManager}.
+ * <li>{@link GLWindow}s rendering on a {@link GLRenderThread}, JOGL's own SWT
+ * and AWT canvases share with the master as well, through a JOGL context
+ * wrapping the master context.
+ * <li>Vertex array objects and framebuffer objects are never shared between
+ * contexts; each view keeps its own.
+ * <li>Except for {@link #dispose()} and {@link #joinShareGroup(GLContext)},
+ * all methods must be called on the UI thread.
+ * </ul>
+ */
+public class GLContextShareManager {
+
+	private final Display display;
+
+	private final GLData glData;
+
+	private Shell masterShell;
+
+	private GLCanvas masterCanvas;
+
+	// JOGL view of the master context, shared by the GLWindows
+	private GLContext masterContext;
+
+	// Identifies the share group; replaced with each master canvas, whose
+	// objects the previous group's contexts don't share
+	private volatile Object shareGroup = new Object();
+
+	/**
+	 * @param display
+	 *            the display whose views share the master context.
+	 */
+	public GLContextShareManager(Display display) {
+		this.display = display;
+		this.glData = new GLData();
+		glData.doubleBuffer = true;
+	}
+
+	/**
+	 * Creates a canvas whose context shares the master context's objects.
+	 * The pixel format matches the master's, as sharing requires.
+	 */
+	public GLCanvas createCanvas(Composite parent, int style) {
+		GLData data = new GLData();
+		data.doubleBuffer = glData.doubleBuffer;
+		data.shareContext = getMasterCanvas();
+		return new GLCanvas(parent, style, data);
+	}
+
+	/**
+	 * Creates the JOGL context of a canvas from {@link #createCanvas} and
+	 * registers it with the share group.
+	 */
+	public GLContext createContext(GLCanvas canvas, GLProfile glProfile) {
+		canvas.setCurrent();
+		GLContext glContext = GLDrawableFactory.getFactory(glProfile).createExternalGLContext();
+		joinShareGroup(glContext);
+		return glContext;
+	}
+
+	/**
+	 * Creates a NEWT window whose context shares the master context's
+	 * objects, e.g. to be embedded with a
+	 * {@link com.jogamp.newt.swt.NewtCanvasSWT}. Its context is created when
+	 * the window is first drawn and must then be registered with
+	 * {@link #joinShareGroup(GLContext)}.
+	 */
+	public GLWindow createWindow(GLProfile glProfile) {
+		GLWindow glWindow = GLWindow.create(createCapabilities(glProfile));
+		glWindow.setSharedContext(getMasterContext(glProfile));
+		return glWindow;
+	}
+
+	/**
+	 * Creates JOGL's SWT canvas, whose context JOGL creates with the first
+	 * frame, sharing the master context's objects. Its context must then be
+	 * registered with {@link #joinShareGroup(GLContext)}.
+	 */
+	public com.jogamp.opengl.swt.GLCanvas createJoglCanvas(Composite parent, int style, GLProfile glProfile) {
+		com.jogamp.opengl.swt.GLCanvas glCanvas = com.jogamp.opengl.swt.GLCanvas.create(parent, style, createCapabilities(glProfile), null);
+		glCanvas.setSharedContext(getMasterContext(glProfile));
+		return glCanvas;
+	}
+
+	/**
+	 * Creates an AWT canvas sharing the master context's objects, e.g. to be
+	 * embedded with {@link org.eclipse.swt.awt.SWT_AWT}. Its context is
+	 * created when the canvas is first drawn and must then be registered with
+	 * {@link #joinShareGroup(GLContext)}.
+	 */
+	public javax.media.opengl.awt.GLCanvas createAWTCanvas(GLProfile glProfile) {
+		javax.media.opengl.awt.GLCanvas glCanvas = new javax.media.opengl.awt.GLCanvas(createCapabilities(glProfile));
+		glCanvas.setSharedContext(getMasterContext(glProfile));
+		return glCanvas;
+	}
+
+	/**
+	 * Registers a context created from this manager's canvases or windows
+	 * with the share group. May be called from any thread.
+	 */
+	public void joinShareGroup(GLContext glContext) {
+		GLShareGroup.join(glContext, shareGroup);
+	}
+
+	/**
+	 * Removes a context from the share group before its canvas is disposed.
+	 */
+	public void destroyContext(GLContext glContext) {
+		GLShareGroup.leave(glContext);
+	}
+
+	/**
+	 * Disposes the master context on the UI thread. GL objects not deleted by
+	 * then are released with it. Called by the {@link Activator} when the
+	 * bundle stops; may be called from any thread.
+	 */
+	public void dispose() {
+		try {
+			display.asyncExec(new Runnable() {
+				public void run() {
+					if ((masterShell != null) && !masterShell.isDisposed()) {
+						masterShell.dispose();
+					}
+					masterShell = null;
+					masterCanvas = null;
+					masterContext = null;
+				}
+			});
+		} catch (SWTException e) {
+			// Display already disposed, and the master context with it
+		}
+	}
+
+	// Pixel format of the drawables JOGL creates, matching the master's
+	private GLCapabilities createCapabilities(GLProfile glProfile) {
+		GLCapabilities glCapabilities = new GLCapabilities(glProfile);
+		glCapabilities.setDoubleBuffered(glData.doubleBuffer);
+		return glCapabilities;
+	}
+
+	private GLContext getMasterContext(GLProfile glProfile) {
+		if ((masterContext == null) || (masterCanvas == null) || masterCanvas.isDisposed()) {
+			getMasterCanvas().setCurrent();
+			masterContext = GLDrawableFactory.getFactory(glProfile).createExternalGLContext();
+
+			// Only wrapped to be shared, drawn through the views' contexts
+			if (masterContext.isCurrent()) {
+				masterContext.release();
+			}
+		}
+		return masterContext;
+	}
+
+	private GLCanvas getMasterCanvas() {
+		if ((masterCanvas == null) || masterCanvas.isDisposed()) {
+			// Never opened, the canvas only has to hold the context
+			masterShell = new Shell(display, SWT.NO_TRIM);
+			masterShell.setSize(1, 1);
+			masterCanvas = new GLCanvas(masterShell, SWT.NONE, glData);
+			masterCanvas.setSize(1, 1);
+			shareGroup = new Object();
+		}
+		return masterCanvas;
+	}
+}
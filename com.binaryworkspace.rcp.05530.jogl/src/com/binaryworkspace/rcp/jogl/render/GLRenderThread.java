@@ -0,0 +1,96 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import com.binaryworkspace.rcp.jogl.Activator;
+
+/**
+ * A dedicated thread doing the GL work of views which render off the UI
+ * thread.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Frames and UI events are handed over through a lock-free queue; the UI
+ * thread never waits for the render thread, so a slow frame can't stall input
+ * or layout.
+ * <li>GL contexts of views rendering here are only made current on this
+ * thread while they draw, see {@link #isRenderThread()}.
+ * <li>Used as the frame executor of a {@link FrameScheduler}.
+ * </ul>
+ */
+public class GLRenderThread implements Executor {
+
+	// Bounds a park, so a missed unpark only delays a task
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+	private final Thread thread;
+
+	private volatile boolean disposed;
+
+	public GLRenderThread() {
+		thread = new Thread(new Runnable() {
+			public void run() {
+				runTasks();
+			}
+		}, "GL Render Thread"); //$NON-NLS-1$
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues a task for the render thread. May be called from any thread and
+	 * never blocks.
+	 *
+	 * @throws RejectedExecutionException
+	 *             once the thread has been disposed.
+	 */
+	public void execute(Runnable task) {
+		if (disposed) {
+			throw new RejectedExecutionException("GL render thread disposed"); //$NON-NLS-1$
+		}
+		tasks.offer(task);
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * @return true if called on the render thread.
+	 */
+	public boolean isRenderThread() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * Stops the thread once the running task completes; queued tasks are
+	 * dropped. Called by the {@link Activator} when the bundle stops.
+	 */
+	public void dispose() {
+		disposed = true;
+		tasks.clear();
+		LockSupport.unpark(thread);
+	}
+
+	// Render Thread
+	private void runTasks() {
+		while (!disposed) {
+			Runnable task = tasks.poll();
+			if (task == null) {
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+				continue;
+			}
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				Activator.getDefault().getLog().log(new Status(IStatus.ERROR, Activator.PLUGIN_ID, "GL render thread task failed", e)); //$NON-NLS-1$
+			}
+		}
+	}
+}
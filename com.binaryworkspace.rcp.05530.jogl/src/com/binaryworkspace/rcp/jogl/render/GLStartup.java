@@ -0,0 +1,307 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.media.nativewindow.NativeWindowFactory;
+import javax.media.opengl.GLCapabilitiesImmutable;
+import javax.media.opengl.GLDrawableFactory;
+import javax.media.opengl.GLException;
+import javax.media.opengl.GLProfile;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.namespace.HostNamespace;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+import com.binaryworkspace.rcp.jogl.Activator;
+import com.binaryworkspace.rcp.jogl.util.NativeLibraryCache;
+import com.jogamp.common.jvm.JNILibLoaderBase;
+import com.jogamp.common.os.Platform;
+
+/**
+ * Loads the JOGL native libraries and initializes NativeWindow before the SWT
+ * display exists, then probes the GL profiles and queries the capabilities on
+ * a background thread while the workbench starts, and times the phases of the
+ * start.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Started by the {@link Activator}, which the application's class
+ * loading activates before PlatformUI.createDisplay(). The native loading and
+ * the GlueGen and NativeWindow initSingleton() calls run right there: on X11
+ * NativeWindowFactory calls XInitThreads(), which must happen before SWT opens
+ * its display connection.
+ * <li>GLProfile.initSingleton(), which loads the JOGL natives and probes the
+ * profiles of the default devices, and the queries of the profiles and the
+ * default device's capabilities run on the background thread, overlapping
+ * with the workbench start instead of the first view's createPartControl().
+ * Views call {@link #getProfile(String)}, which only waits if the probe or
+ * the queries haven't finished yet.
+ * <li>Each {@link StartupPhase} is timed. Once the first frame of any GL view
+ * was drawn, see {@link #frameDrawn()}, all phases are logged in one info
+ * entry to track the cold start time.
+ * <li>A failed initialization or query is logged when it happens and
+ * rethrown by every {@link #getProfile(String)}.
+ * <li>Given a {@link NativeLibraryCache}, the natives of the JOGL platform
+ * fragment are loaded from the cache, and JOGL's own extraction of native
+ * jars to a temporary directory is turned off. Should that fail, a warning is
+ * logged and JOGL loads its natives itself.
+ * </ul>
+ */
+public class GLStartup {
+
+	public static final String THREAD_NAME = "GL Startup"; //$NON-NLS-1$
+
+	public static final String NATIVE_LIBRARY_CACHE_PROPERTY = "com.binaryworkspace.rcp.jogl.nativeLibraryCache"; //$NON-NLS-1$
+
+	// Read by GlueGen's Platform class initialization
+	private static final String USE_TEMP_JAR_CACHE_PROPERTY = "jogamp.gluegen.UseTempJarCache"; //$NON-NLS-1$
+
+	// Queried in the background, in order of preference
+	private static final String[] PROFILES = { GLProfile.GL4, GLProfile.GL3, GLProfile.GL2, GLProfile.GL2ES2 };
+
+	private final NativeLibraryCache nativeLibraryCache;
+
+	private final long startNanos;
+
+	// Per StartupPhase, -1 until done
+	private final AtomicLongArray phaseNanos = new AtomicLongArray(StartupPhase.values().length);
+
+	private final AtomicBoolean firstFrame = new AtomicBoolean();
+
+	// Set by start() if JOGL could not be initialized
+	private volatile Throwable initFailure;
+
+	// Startup Thread
+	private volatile String availableProfiles = "";
+
+	private volatile int availableCapabilities = -1;
+
+	private final FutureTask<Void> queryTask = new FutureTask<Void>(new Callable<Void>() {
+		public Void call() {
+			query();
+			return null;
+		}
+	});
+
+	/**
+	 * @param startNanos
+	 *            {@link System#nanoTime()} when the activator started.
+	 * @param nativeLibraryCache
+	 *            the cache to load the JOGL natives from, or null to let JOGL
+	 *            load them.
+	 */
+	public GLStartup(long startNanos, NativeLibraryCache nativeLibraryCache) {
+		this.startNanos = startNanos;
+		this.nativeLibraryCache = nativeLibraryCache;
+		for (int i = 0; i < phaseNanos.length(); i++) {
+			phaseNanos.set(i, -1);
+		}
+	}
+
+	/**
+	 * Records the end of the {@link StartupPhase#ACTIVATION} phase, loads the
+	 * natives and initializes NativeWindow on the calling thread, then starts
+	 * probing and querying on the background thread. Called once by the activator, before the SWT
+	 * display is created.
+	 */
+	public void start() {
+		long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+		phaseNanos.set(StartupPhase.ACTIVATION.ordinal(), TimeUnit.MILLISECONDS.toNanos(uptimeMillis));
+		try {
+			long phaseStartNanos = System.nanoTime();
+			if (nativeLibraryCache != null) {
+				loadCachedLibraries();
+			}
+			Platform.initSingleton();
+			NativeWindowFactory.initSingleton();
+			phaseNanos.set(StartupPhase.NATIVE_LOAD.ordinal(), System.nanoTime() - phaseStartNanos);
+		} catch (RuntimeException | LinkageError e) {
+			// Let the workbench start, views fail on getProfile()
+			log(IStatus.ERROR, "JOGL could not be initialized", e);
+			initFailure = e;
+		}
+		Thread thread = new Thread(queryTask, THREAD_NAME);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Waits for the GL profiles to be queried, then returns the requested one.
+	 *
+	 * @param profile
+	 *            the profile name, e.g. {@link GLProfile#GL2}.
+	 * @throws GLException
+	 *             if initializing or querying failed or the profile isn't
+	 *             available.
+	 */
+	public GLProfile getProfile(String profile) {
+		await();
+		return GLProfile.get(profile);
+	}
+
+	/**
+	 * Waits for the GL profiles to be queried, e.g. before
+	 * GLProfile.getDefault().
+	 *
+	 * @throws GLException
+	 *             if initializing or querying failed.
+	 */
+	public void await() {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					queryTask.get();
+					return;
+				} catch (InterruptedException e) {
+					// Views can't do without a profile, wait on
+					interrupted = true;
+				} catch (ExecutionException e) {
+					throw new GLException("GL profiles could not be queried", e.getCause());
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return true once the GL profiles were queried, successfully or not.
+	 */
+	public boolean isDone() {
+		return queryTask.isDone();
+	}
+
+	/**
+	 * Records the {@link StartupPhase#FIRST_FRAME} phase and logs all phases
+	 * on the first call; later calls return right away. May be called from
+	 * any frame thread.
+	 */
+	public void frameDrawn() {
+		if (firstFrame.get() || !firstFrame.compareAndSet(false, true)) {
+			return;
+		}
+		phaseNanos.set(StartupPhase.FIRST_FRAME.ordinal(), System.nanoTime() - startNanos);
+		String natives = (nativeLibraryCache != null) ? ", " + nativeLibraryCache : "";
+		Activator.getDefault().getLog().log(new Status(IStatus.INFO, Activator.PLUGIN_ID, "GL startup " + getSummary() + natives));
+	}
+
+	/**
+	 * @return the duration of the phase in milliseconds, or -1 if not done.
+	 */
+	public long getPhaseMillis(StartupPhase phase) {
+		long nanos = phaseNanos.get(phase.ordinal());
+		return (nanos < 0) ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * @return the phases done so far and the query results, e.g.
+	 *         "activation=850ms native load=40ms ... profiles=GL3,GL2,GL2ES2
+	 *         capabilities=96".
+	 */
+	public String getSummary() {
+		StringBuilder sb = new StringBuilder();
+		for (StartupPhase phase : StartupPhase.values()) {
+			long millis = getPhaseMillis(phase);
+			if (millis >= 0) {
+				if (sb.length() > 0) {
+					sb.append(' ');
+				}
+				sb.append(phase.name().toLowerCase(Locale.ENGLISH).replace('_', ' ')).append('=').append(millis).append("ms");
+			}
+		}
+		if (availableCapabilities >= 0) {
+			sb.append(" profiles=").append(availableProfiles).append(" capabilities=").append(availableCapabilities);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "GLStartup [done=" + isDone() + ", " + getSummary() + "]";
+	}
+
+	// Startup Thread
+	private void query() {
+		Throwable failure = initFailure;
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure != null) {
+			throw (LinkageError) failure;
+		}
+		try {
+			long probeStartNanos = System.nanoTime();
+			GLProfile.initSingleton();
+			long phaseStartNanos = System.nanoTime();
+			phaseNanos.set(StartupPhase.PROFILE_PROBE.ordinal(), phaseStartNanos - probeStartNanos);
+
+			StringBuilder profiles = new StringBuilder();
+			for (String profile : PROFILES) {
+				if (GLProfile.isAvailable(profile)) {
+					if (profiles.length() > 0) {
+						profiles.append(',');
+					}
+					profiles.append(profile);
+				}
+			}
+			availableProfiles = profiles.toString();
+
+			// Pixel formats or FB configs of the default device
+			GLProfile glProfile = GLProfile.getDefault();
+			List<GLCapabilitiesImmutable> capabilities = GLDrawableFactory.getFactory(glProfile).getAvailableCapabilities(null);
+			availableCapabilities = capabilities.size();
+			phaseNanos.set(StartupPhase.CAPABILITY_QUERY.ordinal(), System.nanoTime() - phaseStartNanos);
+		} catch (RuntimeException | LinkageError e) {
+			log(IStatus.ERROR, "GL profiles could not be probed or queried", e);
+			throw e;
+		}
+	}
+
+	// Activator Thread, before any JOGL class initialization
+	private void loadCachedLibraries() {
+		Bundle joglBundle = FrameworkUtil.getBundle(JNILibLoaderBase.class);
+		BundleWiring wiring = (joglBundle != null) ? joglBundle.adapt(BundleWiring.class) : null;
+		if (wiring == null) {
+			return;
+		}
+		// The fragment resolved for this platform
+		for (BundleWire wire : wiring.getProvidedWires(HostNamespace.HOST_NAMESPACE)) {
+			Bundle fragment = wire.getRequirer().getBundle();
+			try {
+				File directory = nativeLibraryCache.install(fragment, NativeLibraryCache.JOGL_LIBRARIES);
+				List<String> loaded = NativeLibraryCache.load(directory, NativeLibraryCache.JOGL_LIBRARIES);
+				if (loaded.contains(NativeLibraryCache.JOGL_LIBRARIES[0])) {
+					System.setProperty(USE_TEMP_JAR_CACHE_PROPERTY, Boolean.FALSE.toString());
+				} else {
+					log(IStatus.WARNING, "Native libraries not loaded from the cache: " + directory, null);
+				}
+			} catch (IOException e) {
+				log(IStatus.WARNING, "Could not cache the native libraries of: " + fragment.getSymbolicName(), e);
+			}
+		}
+	}
+
+	private static void log(int severity, String message, Throwable e) {
+		// The plug-in may have stopped meanwhile
+		Activator activator = Activator.getDefault();
+		if (activator != null) {
+			activator.getLog().log(new Status(severity, Activator.PLUGIN_ID, message, e));
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import com.binaryworkspace.rcp.jogl.util.GLErrorChecker;
+
+/**
+ * The ways a view can embed a GL drawable into SWT, see {@link IGLSurface}.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Which one has the lowest input latency and steadiest frames depends on
+ * the platform and driver; compare them with the
+ * {@link com.binaryworkspace.rcp.jogl.views.SurfaceLatencyViewPart}.
+ * </ul>
+ */
+public enum GLSurfaceType {
+
+	/**
+	 * SWT's own GLCanvas, drawn through a JOGL context wrapping the one SWT
+	 * created. Frames and input on the UI thread. No debug output, which
+	 * needs a context JOGL creates.
+	 */
+	SWT_GLCANVAS,
+
+	/**
+	 * JOGL's SWT GLCanvas, a SWT widget whose context JOGL creates. Frames
+	 * and input on the UI thread.
+	 */
+	JOGL_SWT_GLCANVAS,
+
+	/**
+	 * A NEWT window embedded with a NewtCanvasSWT. Frames on the
+	 * {@link GLRenderThread}, input on NEWT's event thread.
+	 */
+	NEWT,
+
+	/**
+	 * An AWT GLCanvas in a SWT_AWT frame. Frames on the
+	 * {@link GLRenderThread}, each handed to the AWT event thread by JOGL;
+	 * input on the AWT event thread. A second toolkit with its own event
+	 * loop, kept for comparison.
+	 */
+	AWT_BRIDGE;
+
+	/**
+	 * System property naming the type views use unless chosen otherwise on
+	 * the preference page.
+	 */
+	public static final String SURFACE_PROPERTY = "com.binaryworkspace.rcp.jogl.surface"; //$NON-NLS-1$
+
+	/**
+	 * @return a new, not yet created surface of this type.
+	 */
+	public IGLSurface createSurface(GLContextShareManager contextShareManager, GLErrorChecker errorChecker) {
+		switch (this) {
+		case JOGL_SWT_GLCANVAS:
+			return new JoglSWTGLSurface(contextShareManager, errorChecker);
+		case NEWT:
+			return new NewtGLSurface(contextShareManager, errorChecker);
+		case AWT_BRIDGE:
+			return new AWTGLSurface(contextShareManager, errorChecker);
+		default:
+			return new SWTGLSurface(contextShareManager);
+		}
+	}
+
+	/**
+	 * @param value
+	 *            a type name, case insensitive, or null.
+	 * @return the named type, or the default if the name is null or unknown.
+	 */
+	public static GLSurfaceType parse(String value, GLSurfaceType defaultType) {
+		if ((value == null) || value.trim().isEmpty()) {
+			return defaultType;
+		}
+		try {
+			return valueOf(value.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return defaultType;
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import javax.media.opengl.GLProfile;
+
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+
+/**
+ * A GL drawable embedded in a SWT composite, as created for a
+ * {@link GLSurfaceType}.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The surface owns the GL context and shares its objects with all other
+ * views through the {@link GLContextShareManager}; its user only sees the
+ * {@link IGLSurfaceListener} callbacks.
+ * <li>{@link #create} and {@link #dispose()} are called on the UI thread,
+ * {@link #display()} on the frame thread: the {@link GLRenderThread} if
+ * {@link #isOnRenderThread()}, the UI thread otherwise.
+ * </ul>
+ */
+public interface IGLSurface {
+
+	/**
+	 * Creates the control showing the frames. The GL context is created right
+	 * away or with the first frame, followed by
+	 * {@link IGLSurfaceListener#init}.
+	 *
+	 * @return the control added to the parent.
+	 */
+	Control create(Composite parent, GLProfile glProfile, IGLSurfaceListener listener);
+
+	/**
+	 * Draws a frame: makes the context current, calls
+	 * {@link IGLSurfaceListener#display}, swaps the buffers and releases the
+	 * context.
+	 *
+	 * @return false if nothing was drawn, e.g. before the drawable is
+	 *         realized; the frame should be retried.
+	 */
+	boolean display();
+
+	/**
+	 * @return true if frames must be drawn on the {@link GLRenderThread}.
+	 */
+	boolean isOnRenderThread();
+
+	/**
+	 * @return the component receiving mouse and key events: the SWT
+	 *         {@link Control}, a NEWT window or an AWT component, depending
+	 *         on the {@link #getType() type}.
+	 */
+	Object getInputSource();
+
+	GLSurfaceType getType();
+
+	/**
+	 * Releases the GL resources through {@link IGLSurfaceListener#dispose},
+	 * then destroys the context and the control.
+	 */
+	void dispose();
+}
@@ -0,0 +1,45 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import javax.media.opengl.GL2ES2;
+
+/**
+ * Receives the GL lifecycle of an {@link IGLSurface}.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Except for {@link #resized(int, int)} and {@link #exposed()}, all
+ * methods are called with the surface's GL context current, on the thread
+ * the surface draws on.
+ * </ul>
+ */
+public interface IGLSurfaceListener {
+
+	/**
+	 * Creates the GL resources. Called once, before the first frame.
+	 */
+	void init(GL2ES2 gl2es2);
+
+	/**
+	 * The drawable changed size. May be called from any thread.
+	 */
+	void resized(int width, int height);
+
+	/**
+	 * Draws a frame requested by {@link IGLSurface#display()}; buffers are
+	 * swapped by the surface.
+	 */
+	void display(GL2ES2 gl2es2);
+
+	/**
+	 * The toolkit wants the surface repainted, e.g. after it was uncovered.
+	 * May be called from any thread; the frame is drawn later by
+	 * {@link IGLSurface#display()}.
+	 */
+	void exposed();
+
+	/**
+	 * Releases the GL resources. Called once, before the context is
+	 * destroyed.
+	 */
+	void dispose(GL2ES2 gl2es2);
+}
@@ -0,0 +1,47 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+/**
+ * A drawing surface driven by the {@link FrameScheduler}.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>All methods are invoked on the frame thread of the scheduler: the SWT
+ * UI thread, or a {@link GLRenderThread} for targets rendering off the UI
+ * thread.
+ * </ul>
+ */
+public interface IRenderTarget {
+
+	/**
+	 * Renders a single frame. The implementation is responsible for making its
+	 * GL context current, drawing, swapping buffers and releasing the context.
+	 */
+	void renderFrame();
+
+	/**
+	 * @return true if the target wants to be drawn in the upcoming frame. Only
+	 *         targets returning true have {@link #renderFrame()} called.
+	 */
+	boolean needsFrame();
+
+	/**
+	 * @return false while the target can't be seen (e.g. its tab is hidden or
+	 *         its window minimized). Hidden targets are not drawn and don't
+	 *         keep the scheduler's timer running; they should call
+	 *         {@link FrameScheduler#visibilityChanged()} when this changes.
+	 */
+	boolean isVisible();
+
+	/**
+	 * @return the render mode of the target. The scheduler only keeps its
+	 *         timer running while at least one target is
+	 *         {@link RenderMode#CONTINUOUS}.
+	 */
+	RenderMode getRenderMode();
+
+	/**
+	 * @return true once the target can no longer be rendered (e.g. its canvas
+	 *         was disposed). Disposed targets are dropped by the scheduler.
+	 */
+	boolean isDisposed();
+}
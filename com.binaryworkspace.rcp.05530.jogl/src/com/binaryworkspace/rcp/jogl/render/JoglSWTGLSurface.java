@@ -0,0 +1,53 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import javax.media.opengl.GLAutoDrawable;
+import javax.media.opengl.GLProfile;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+
+import com.binaryworkspace.rcp.jogl.util.GLErrorChecker;
+import com.jogamp.opengl.swt.GLCanvas;
+
+/**
+ * {@link GLSurfaceType#JOGL_SWT_GLCANVAS}: JOGL's SWT GLCanvas, drawn on the
+ * UI thread.
+ */
+public class JoglSWTGLSurface extends AbstractGLAutoDrawableSurface {
+
+	private GLCanvas glCanvas;
+
+	public JoglSWTGLSurface(GLContextShareManager contextShareManager, GLErrorChecker errorChecker) {
+		super(contextShareManager, errorChecker);
+	}
+
+	public Control create(Composite parent, GLProfile glProfile, IGLSurfaceListener listener) {
+		// Its context and GL resources are created with the first frame
+		glCanvas = contextShareManager.createJoglCanvas(parent, SWT.NO_BACKGROUND, glProfile);
+		attach(glCanvas, listener);
+		return glCanvas;
+	}
+
+	@Override
+	protected GLAutoDrawable getDrawable() {
+		return ((glCanvas != null) && !glCanvas.isDisposed()) ? glCanvas : null;
+	}
+
+	public boolean isOnRenderThread() {
+		return false;
+	}
+
+	public Object getInputSource() {
+		return glCanvas;
+	}
+
+	public GLSurfaceType getType() {
+		return GLSurfaceType.JOGL_SWT_GLCANVAS;
+	}
+
+	public void dispose() {
+		// Releases the GL resources through the listener
+		glCanvas.dispose();
+	}
+}
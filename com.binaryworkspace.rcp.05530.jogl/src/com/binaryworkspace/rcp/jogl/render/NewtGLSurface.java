@@ -0,0 +1,62 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import javax.media.opengl.GLAutoDrawable;
+import javax.media.opengl.GLProfile;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+
+import com.binaryworkspace.rcp.jogl.util.GLErrorChecker;
+import com.jogamp.newt.opengl.GLWindow;
+import com.jogamp.newt.swt.NewtCanvasSWT;
+
+/**
+ * {@link GLSurfaceType#NEWT}: a NEWT window embedded with a
+ * {@link NewtCanvasSWT}, drawn on the {@link GLRenderThread}.
+ */
+public class NewtGLSurface extends AbstractGLAutoDrawableSurface {
+
+	private GLWindow glWindow;
+
+	private NewtCanvasSWT canvas;
+
+	private volatile boolean disposed;
+
+	public NewtGLSurface(GLContextShareManager contextShareManager, GLErrorChecker errorChecker) {
+		super(contextShareManager, errorChecker);
+	}
+
+	public Control create(Composite parent, GLProfile glProfile, IGLSurfaceListener listener) {
+		// Its context and GL resources are created with the first frame
+		glWindow = contextShareManager.createWindow(glProfile);
+		attach(glWindow, listener);
+		canvas = new NewtCanvasSWT(parent, SWT.NO_BACKGROUND, glWindow);
+		return canvas;
+	}
+
+	@Override
+	protected GLAutoDrawable getDrawable() {
+		return disposed ? null : glWindow;
+	}
+
+	public boolean isOnRenderThread() {
+		return true;
+	}
+
+	public Object getInputSource() {
+		return glWindow;
+	}
+
+	public GLSurfaceType getType() {
+		return GLSurfaceType.NEWT;
+	}
+
+	public void dispose() {
+		disposed = true;
+		// Releases the GL resources through the listener, waiting for a frame
+		// still drawing on the render thread
+		canvas.dispose();
+		glWindow.destroy();
+	}
+}
@@ -0,0 +1,19 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+/**
+ * Selects when a {@link IRenderTarget} is drawn by the {@link FrameScheduler}.
+ */
+public enum RenderMode {
+
+	/**
+	 * Draw on every scheduler tick. Meant for animated content.
+	 */
+	CONTINUOUS,
+
+	/**
+	 * Draw only after the target was invalidated, e.g. by a resize, a paint
+	 * (expose) event or an explicit invalidate() call. An idle view then costs
+	 * no CPU or GPU time.
+	 */
+	ON_DEMAND
+}
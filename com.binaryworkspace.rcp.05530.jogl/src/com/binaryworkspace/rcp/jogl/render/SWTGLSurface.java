@@ -0,0 +1,113 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import javax.media.opengl.GLContext;
+import javax.media.opengl.GLProfile;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.opengl.GLCanvas;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+
+/**
+ * {@link GLSurfaceType#SWT_GLCANVAS}: SWT's GLCanvas with an external JOGL
+ * context, drawn on the UI thread.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>SWT creates the native context and its GLData has no debug attribute,
+ * so {@link com.binaryworkspace.rcp.jogl.util.GLErrorCheckMode#DEBUG_OUTPUT}
+ * falls back to polling on this surface. Debug output needs a surface whose
+ * drawable JOGL creates, e.g. {@link GLSurfaceType#NEWT}.
+ * </ul>
+ */
+public class SWTGLSurface implements IGLSurface {
+
+	private final GLContextShareManager contextShareManager;
+
+	private IGLSurfaceListener listener;
+
+	private GLCanvas glcanvas;
+
+	private GLContext glContext;
+
+	public SWTGLSurface(GLContextShareManager contextShareManager) {
+		this.contextShareManager = contextShareManager;
+	}
+
+	public Control create(Composite parent, GLProfile glProfile, final IGLSurfaceListener listener) {
+		this.listener = listener;
+
+		// GLCanvas, sharing GL objects with every other view
+		glcanvas = contextShareManager.createCanvas(parent, SWT.NO_BACKGROUND);
+		glContext = contextShareManager.createContext(glcanvas, glProfile);
+
+		// GL resources
+		glContext.makeCurrent();
+		try {
+			listener.init(glContext.getGL().getGL2ES2());
+		} finally {
+			glContext.release();
+		}
+
+		// Add listener to resize the drawing; the viewport applies the last
+		// size with the next frame
+		glcanvas.addListener(SWT.Resize, new Listener() {
+			public void handleEvent(Event event) {
+				Rectangle rectangle = glcanvas.getClientArea();
+				listener.resized(rectangle.width, rectangle.height);
+			}
+		});
+		Rectangle rectangle = glcanvas.getClientArea();
+		listener.resized(rectangle.width, rectangle.height);
+		return glcanvas;
+	}
+
+	// UI Thread
+	public boolean display() {
+		if (glcanvas.isDisposed()) {
+			return false;
+		}
+		// Make current
+		glcanvas.setCurrent();
+		glContext.makeCurrent();
+
+		try {
+			// Draw
+			listener.display(glContext.getGL().getGL2ES2());
+		} finally {
+			// Release Context, also on failure: the UI thread draws every SWT view
+			glcanvas.swapBuffers();
+			glContext.release();
+		}
+		return true;
+	}
+
+	public boolean isOnRenderThread() {
+		return false;
+	}
+
+	public Object getInputSource() {
+		return glcanvas;
+	}
+
+	public GLSurfaceType getType() {
+		return GLSurfaceType.SWT_GLCANVAS;
+	}
+
+	public void dispose() {
+		if (!glcanvas.isDisposed()) {
+			glcanvas.setCurrent();
+			glContext.makeCurrent();
+			try {
+				listener.dispose(glContext.getGL().getGL2ES2());
+			} finally {
+				glContext.release();
+			}
+			contextShareManager.destroyContext(glContext);
+		}
+		glcanvas.dispose();
+	}
+}
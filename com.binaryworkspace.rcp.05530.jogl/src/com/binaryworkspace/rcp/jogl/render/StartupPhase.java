@@ -0,0 +1,37 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+/**
+ * The phases of the application start timed by {@link GLStartup}.
+ */
+public enum StartupPhase {
+
+	/**
+	 * From the JVM start until the plug-in's activator has started, i.e. the
+	 * launcher and the OSGi framework.
+	 */
+	ACTIVATION,
+
+	/**
+	 * Verifying or extracting the cached native libraries, if cached, and
+	 * loading the GlueGen and NativeWindow ones.
+	 */
+	NATIVE_LOAD,
+
+	/**
+	 * Loading the JOGL native libraries and probing the GL profiles of the
+	 * default devices (GLProfile.initSingleton()), on the background thread.
+	 */
+	PROFILE_PROBE,
+
+	/**
+	 * Querying the available GL profiles and the capabilities of the default
+	 * device, on the background thread.
+	 */
+	CAPABILITY_QUERY,
+
+	/**
+	 * From the activator's start until the first frame of any GL view was
+	 * drawn.
+	 */
+	FIRST_FRAME
+}
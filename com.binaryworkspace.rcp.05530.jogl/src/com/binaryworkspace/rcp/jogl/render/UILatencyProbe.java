@@ -0,0 +1,169 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+
+import com.binaryworkspace.rcp.jogl.Activator;
+import com.binaryworkspace.rcp.jogl.util.FrameHistogram;
+
+/**
+ * Measures how quickly the UI thread picks up events, as a stand-in for the
+ * input latency of the workbench.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>A probe is posted with {@link Display#asyncExec(Runnable)} every
+ * {@value #PROBE_INTERVAL_MILLIS} ms, and the time until it runs is recorded.
+ * Input events queue behind the same work (GL frames on the UI thread, layout,
+ * painting), so the histogram shows how long input waits.
+ * <li>Enabled by setting the {@value #ENABLED_PROPERTY} system property to
+ * true. Comparing runs with a {@link GLSurfaceType} drawing on the UI thread
+ * and one drawing on the {@link GLRenderThread} gives the latency before and
+ * after moving GL work off the UI thread.
+ * <li>Published over JMX as {@code com.binaryworkspace.rcp.jogl:type=UILatency}.
+ * </ul>
+ */
+public class UILatencyProbe implements UILatencyProbeMBean {
+
+	public static final String ENABLED_PROPERTY = "com.binaryworkspace.rcp.jogl.uiLatencyProbe"; //$NON-NLS-1$
+
+	public static final int PROBE_INTERVAL_MILLIS = 50;
+
+	private final Display display;
+
+	private final FrameHistogram histogram = new FrameHistogram();
+
+	private final AtomicBoolean probePending = new AtomicBoolean();
+
+	private final ScheduledExecutorService timer;
+
+	private volatile long probePostedNanos;
+
+	private ObjectName objectName;
+
+	private final Runnable probeRunnable = new Runnable() {
+		public void run() {
+			histogram.record(System.nanoTime() - probePostedNanos);
+			probePending.set(false);
+		}
+	};
+
+	/**
+	 * Starts probing the UI thread of the display.
+	 */
+	public UILatencyProbe(Display display) {
+		this.display = display;
+		this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "UI Latency Probe"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		timer.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				postProbe();
+			}
+		}, PROBE_INTERVAL_MILLIS, PROBE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		register();
+	}
+
+	/**
+	 * @return true if the {@value #ENABLED_PROPERTY} system property is set to
+	 *         true.
+	 */
+	public static boolean isEnabled() {
+		return Boolean.getBoolean(ENABLED_PROPERTY);
+	}
+
+	public FrameHistogram getHistogram() {
+		return histogram;
+	}
+
+	public long getSampleCount() {
+		return histogram.getCount();
+	}
+
+	public double getP50Millis() {
+		return toMillis(histogram.getPercentileNanos(50));
+	}
+
+	public double getP99Millis() {
+		return toMillis(histogram.getPercentileNanos(99));
+	}
+
+	public double getMaxMillis() {
+		return toMillis(histogram.getMaxNanos());
+	}
+
+	public void reset() {
+		histogram.reset();
+	}
+
+	/**
+	 * Stops probing and unregisters from JMX. Called by the {@link Activator}
+	 * when the bundle stops.
+	 */
+	public void dispose() {
+		timer.shutdownNow();
+		unregister();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("UILatencyProbe [samples=%d, p50=%.2f ms, p99=%.2f ms, max=%.2f ms]", getSampleCount(), getP50Millis(), getP99Millis(), getMaxMillis()); //$NON-NLS-1$
+	}
+
+	// Probe Thread
+	private void postProbe() {
+		// A probe still waiting is already measuring the stall
+		if (!probePending.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			probePostedNanos = System.nanoTime();
+			display.asyncExec(probeRunnable);
+		} catch (SWTException e) {
+			// Display disposed while shutting down
+			timer.shutdown();
+		}
+	}
+
+	private synchronized void register() {
+		try {
+			ObjectName candidate = new ObjectName(FrameStatistics.JMX_DOMAIN + ":type=UILatency"); //$NON-NLS-1$
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, candidate);
+			objectName = candidate;
+		} catch (JMException e) {
+			Activator.getDefault().getLog().log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Could not register the UI latency probe", e));
+		}
+	}
+
+	private synchronized void unregister() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			// Already gone
+		}
+		objectName = null;
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / 1000000.0;
+	}
+}
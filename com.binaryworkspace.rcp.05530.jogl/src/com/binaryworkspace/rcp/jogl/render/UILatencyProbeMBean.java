@@ -0,0 +1,17 @@
+package com.binaryworkspace.rcp.jogl.render;
+
+/**
+ * JMX view of the {@link UILatencyProbe}.
+ */
+public interface UILatencyProbeMBean {
+
+	long getSampleCount();
+
+	double getP50Millis();
+
+	double getP99Millis();
+
+	double getMaxMillis();
+
+	void reset();
+}
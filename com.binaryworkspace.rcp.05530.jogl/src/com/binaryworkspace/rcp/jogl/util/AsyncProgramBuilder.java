@@ -0,0 +1,296 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.media.opengl.GL2ES2;
+
+/**
+ * Builds a shader program over several frames, so that compiling never
+ * stalls a frame waiting for the driver.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>{@link #update(GL2ES2)} is called once per frame. It issues the compile
+ * and link of the last requested sources without querying their status;
+ * later calls poll for completion. Querying GL_COMPILE_STATUS or
+ * GL_LINK_STATUS right away, as {@link GL2ES2_Util#linkProgram} does, makes
+ * the driver finish the compile on the spot.
+ * <li>With KHR_parallel_shader_compile (or the ARB variant) completion is
+ * polled with GL_COMPLETION_STATUS_KHR, which never blocks. Without it the
+ * link status is queried {@value #FRAMES_WITHOUT_COMPLETION_STATUS} frames
+ * after the link, giving drivers compiling on their own threads time to
+ * finish. JOGL 2.1.5 has no binding for glMaxShaderCompilerThreadsKHR, so the
+ * driver's default number of compiler threads is used.
+ * <li>Until a new program is linked, {@link #getProgram()} keeps returning
+ * the previous one, and a program failing to compile or link never replaces
+ * it. {@link #getVersion()} changes with every new program, so users know to
+ * look up attribute and uniform locations again.
+ * <li>{@link #dispose(GL2ES2)} requests the sources of the program or of the
+ * build in flight again, so a builder outliving its context, e.g. one
+ * re-created by a GLAutoDrawable, builds them anew in the next context.
+ * <li>Given a {@link ShaderProgramCache}, a program the share group already
+ * linked, or a stored binary, is taken from the cache at once, and a newly
+ * linked program is added to it, so it is shared and persisted like one from
+ * {@link ShaderProgramCache#acquire}.
+ * <li>{@link #request(String, String)} may be called from any thread, e.g. by
+ * a {@link ShaderFileWatcher}; all other methods with the owning context
+ * current.
+ * </ul>
+ */
+public class AsyncProgramBuilder {
+
+	// GL_COMPLETION_STATUS_KHR of KHR_parallel_shader_compile
+	public static final int GL_COMPLETION_STATUS = 0x91B1;
+
+	public static final int FRAMES_WITHOUT_COMPLETION_STATUS = 2;
+
+	private final ShaderProgramCache programCache;
+
+	private final AtomicReference<String[]> requestedSources = new AtomicReference<String[]>();
+
+	private volatile RuntimeException failure;
+
+	private final int[] status = new int[1];
+
+	// GL state
+	private int programId;
+	private int version;
+	private boolean initialized;
+	private boolean completionStatus;
+
+	// Sources of the last finished build, successful or not
+	private String[] builtSources;
+
+	// Sources of programId
+	private String[] programSources;
+
+	// Build in flight
+	private int pendingProgramId;
+	private int pendingVertexShaderId;
+	private int pendingFragmentShaderId;
+	private String[] pendingSources;
+	private int pendingFrames;
+
+	public AsyncProgramBuilder() {
+		this(null);
+	}
+
+	/**
+	 * @param programCache
+	 *            cache programs are taken from and added to, or null to build
+	 *            private programs.
+	 */
+	public AsyncProgramBuilder(ShaderProgramCache programCache) {
+		this.programCache = programCache;
+	}
+
+	/**
+	 * Requests a program built from the given sources. Only the last request
+	 * before a build starts is built; sources equal to the last build are
+	 * ignored. May be called from any thread.
+	 */
+	public void request(String vertexSource, String fragmentSource) {
+		requestedSources.set(new String[] { vertexSource, fragmentSource });
+	}
+
+	/**
+	 * Starts building requested sources, or polls the build in flight and
+	 * swaps in the new program once it linked. Never waits for the driver
+	 * when KHR_parallel_shader_compile is available.
+	 *
+	 * @return true while a build is requested or in flight, i.e. another
+	 *         frame is needed to complete it.
+	 */
+	public boolean update(GL2ES2 gl2es2) {
+		if (!initialized) {
+			completionStatus = gl2es2.isExtensionAvailable("GL_KHR_parallel_shader_compile") || gl2es2.isExtensionAvailable("GL_ARB_parallel_shader_compile"); //$NON-NLS-1$ //$NON-NLS-2$
+			initialized = true;
+		}
+		if (pendingProgramId == 0) {
+			String[] sources = requestedSources.getAndSet(null);
+			if ((sources != null) && !Arrays.equals(sources, builtSources)) {
+				start(gl2es2, sources);
+			}
+		}
+		if (pendingProgramId != 0) {
+			poll(gl2es2);
+		}
+		return (pendingProgramId != 0) || (requestedSources.get() != null);
+	}
+
+	/**
+	 * @return the last successfully linked program, or 0 before the first.
+	 */
+	public int getProgram() {
+		return programId;
+	}
+
+	/**
+	 * @return a number changing whenever {@link #getProgram()} changes.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return true if completion is polled with KHR_parallel_shader_compile.
+	 *         Valid after the first {@link #update(GL2ES2)}.
+	 */
+	public boolean isCompletionStatusSupported() {
+		return completionStatus;
+	}
+
+	/**
+	 * @return the compile or link error of the last failed build, or null.
+	 *         Cleared by the call, so each failure is reported once.
+	 */
+	public RuntimeException takeFailure() {
+		RuntimeException result = failure;
+		failure = null;
+		return result;
+	}
+
+	/**
+	 * Deletes the program and any build in flight, and requests their
+	 * sources again unless newer ones are requested.
+	 */
+	public void dispose(GL2ES2 gl2es2) {
+		String[] lastSources = (pendingSources != null) ? pendingSources : programSources;
+		if (lastSources != null) {
+			requestedSources.compareAndSet(null, lastSources);
+		}
+		if (pendingProgramId != 0) {
+			deletePending(gl2es2);
+		}
+		if (programId != 0) {
+			releaseProgram(gl2es2);
+			programId = 0;
+		}
+		builtSources = null;
+		programSources = null;
+		initialized = false;
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncProgramBuilder [program=" + programId + ", version=" + version + ", pending=" + (pendingProgramId != 0) + ", completionStatus=" + completionStatus + "]";
+	}
+
+	// Issues the compile and link without querying any status
+	private void start(GL2ES2 gl2es2, String[] sources) {
+		if (programCache != null) {
+			int cachedProgramId = programCache.acquireCached(gl2es2, sources[0], sources[1]);
+			if (cachedProgramId != 0) {
+				builtSources = sources;
+				swapIn(gl2es2, cachedProgramId, sources);
+				return;
+			}
+		}
+		pendingVertexShaderId = createShader(gl2es2, GL2ES2.GL_VERTEX_SHADER, sources[0]);
+		pendingFragmentShaderId = createShader(gl2es2, GL2ES2.GL_FRAGMENT_SHADER, sources[1]);
+		pendingProgramId = (programCache != null) ? programCache.createProgram(gl2es2) : gl2es2.glCreateProgram();
+		gl2es2.glAttachShader(pendingProgramId, pendingVertexShaderId);
+		gl2es2.glAttachShader(pendingProgramId, pendingFragmentShaderId);
+		gl2es2.glLinkProgram(pendingProgramId);
+		pendingSources = sources;
+		pendingFrames = 0;
+	}
+
+	private void poll(GL2ES2 gl2es2) {
+		if (completionStatus) {
+			gl2es2.glGetProgramiv(pendingProgramId, GL_COMPLETION_STATUS, status, 0);
+			if (status[0] == 0) {
+				return;
+			}
+		} else if (++pendingFrames < FRAMES_WITHOUT_COMPLETION_STATUS) {
+			return;
+		}
+
+		builtSources = pendingSources;
+		gl2es2.glGetProgramiv(pendingProgramId, GL2ES2.GL_LINK_STATUS, status, 0);
+		if (status[0] != GL2ES2.GL_TRUE) {
+			failure = new RuntimeException(getBuildLog(gl2es2));
+			deletePending(gl2es2);
+			return;
+		}
+
+		// Swap in the new program
+		gl2es2.glDetachShader(pendingProgramId, pendingVertexShaderId);
+		gl2es2.glDetachShader(pendingProgramId, pendingFragmentShaderId);
+		gl2es2.glDeleteShader(pendingVertexShaderId);
+		gl2es2.glDeleteShader(pendingFragmentShaderId);
+		int linkedProgramId = pendingProgramId;
+		if (programCache != null) {
+			linkedProgramId = programCache.acquireLinked(gl2es2, pendingSources[0], pendingSources[1], pendingProgramId);
+		}
+		String[] linkedSources = pendingSources;
+		pendingProgramId = 0;
+		pendingSources = null;
+		swapIn(gl2es2, linkedProgramId, linkedSources);
+	}
+
+	private void swapIn(GL2ES2 gl2es2, int newProgramId, String[] newSources) {
+		if (programId != 0) {
+			releaseProgram(gl2es2);
+		}
+		programId = newProgramId;
+		programSources = newSources;
+		version++;
+	}
+
+	private void releaseProgram(GL2ES2 gl2es2) {
+		if (programCache != null) {
+			programCache.release(gl2es2, programId);
+		} else {
+			gl2es2.glDeleteProgram(programId);
+		}
+	}
+
+	private void deletePending(GL2ES2 gl2es2) {
+		gl2es2.glDeleteShader(pendingVertexShaderId);
+		gl2es2.glDeleteShader(pendingFragmentShaderId);
+		gl2es2.glDeleteProgram(pendingProgramId);
+		pendingProgramId = 0;
+		pendingSources = null;
+	}
+
+	private static int createShader(GL2ES2 gl2es2, int shaderType, String source) {
+		int shaderId = gl2es2.glCreateShader(shaderType);
+		gl2es2.glShaderSource(shaderId, 1, new String[] { source }, new int[] { source.length() }, 0);
+		gl2es2.glCompileShader(shaderId);
+		return shaderId;
+	}
+
+	// The shader and program logs of a failed build
+	private String getBuildLog(GL2ES2 gl2es2) {
+		StringBuilder sb = new StringBuilder("Shader program not built:");
+		gl2es2.glGetShaderiv(pendingVertexShaderId, GL2ES2.GL_COMPILE_STATUS, status, 0);
+		if (status[0] == 0) {
+			sb.append("\nVertex shader: ").append(getShaderLog(gl2es2, pendingVertexShaderId));
+		}
+		gl2es2.glGetShaderiv(pendingFragmentShaderId, GL2ES2.GL_COMPILE_STATUS, status, 0);
+		if (status[0] == 0) {
+			sb.append("\nFragment shader: ").append(getShaderLog(gl2es2, pendingFragmentShaderId));
+		}
+		int[] logLength = new int[1];
+		gl2es2.glGetProgramiv(pendingProgramId, GL2ES2.GL_INFO_LOG_LENGTH, logLength, 0);
+		if (logLength[0] > 0) {
+			byte[] log = new byte[logLength[0]];
+			gl2es2.glGetProgramInfoLog(pendingProgramId, logLength[0], logLength, 0, log, 0);
+			sb.append("\nProgram: ").append(new String(log, 0, logLength[0]));
+		}
+		return sb.toString();
+	}
+
+	private static String getShaderLog(GL2ES2 gl2es2, int shaderId) {
+		int[] logLength = new int[1];
+		gl2es2.glGetShaderiv(shaderId, GL2ES2.GL_INFO_LOG_LENGTH, logLength, 0);
+		if (logLength[0] == 0) {
+			return "";
+		}
+		byte[] log = new byte[logLength[0]];
+		gl2es2.glGetShaderInfoLog(shaderId, logLength[0], logLength, 0, log, 0);
+		return new String(log, 0, logLength[0]);
+	}
+}
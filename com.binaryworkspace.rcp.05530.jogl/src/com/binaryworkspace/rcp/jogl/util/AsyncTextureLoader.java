@@ -0,0 +1,281 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GLProfile;
+
+import org.osgi.framework.Bundle;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.util.texture.Texture;
+import com.jogamp.opengl.util.texture.TextureData;
+import com.jogamp.opengl.util.texture.TextureIO;
+
+/**
+ * Loads bundle textures without stalling the thread owning the GL context.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Images are read and decoded on a bounded worker pool into pooled direct
+ * buffers by the {@link NioImageDecoder}; formats it does not handle fall back
+ * to TextureIO. No GL context is needed for this step.
+ * <li>Decoded images are uploaded by {@link #uploadPending(GL2ES2, long)},
+ * called once per frame with the GL context current. Each call stops once its
+ * time budget is used up, so a large set of images is spread over several
+ * frames instead of stalling one.
+ * <li>Until its upload lands, {@link #getTexture(GL2ES2, Future)} returns a 1x1
+ * placeholder texture.
+ * <li>One loader serves one GL context; the decode pool can be shared by any
+ * number of loaders.
+ * </ul>
+ */
+public class AsyncTextureLoader {
+
+	private static final class PendingUpload {
+		final CompletableFuture<Texture> future;
+		final TextureData textureData;
+
+		PendingUpload(CompletableFuture<Texture> future, TextureData textureData) {
+			this.future = future;
+			this.textureData = textureData;
+		}
+	}
+
+	private final ExecutorService decodeExecutor;
+
+	private final NioImageDecoder imageDecoder;
+
+	private final GLProfile glProfile;
+
+	private final Runnable uploadRequest;
+
+	private final ConcurrentLinkedQueue<PendingUpload> pendingUploads = new ConcurrentLinkedQueue<PendingUpload>();
+
+	// Futures not completed yet, cancelled by dispose()
+	private final Set<CompletableFuture<Texture>> loadingFutures = Collections.newSetFromMap(new ConcurrentHashMap<CompletableFuture<Texture>, Boolean>());
+
+	private volatile boolean disposed;
+
+	// GL thread only
+	private Texture placeholder;
+
+	/**
+	 * @param decodeExecutor
+	 *            pool the images are decoded on, see
+	 *            {@link #createDecodeExecutor(int)}.
+	 * @param imageDecoder
+	 *            decoder for PNG and JPEG images.
+	 * @param glProfile
+	 *            profile of the context the textures are uploaded to.
+	 * @param uploadRequest
+	 *            run on a worker thread after an image was decoded (e.g. to
+	 *            invalidate an on-demand view so the next frame uploads it), or
+	 *            null.
+	 */
+	public AsyncTextureLoader(ExecutorService decodeExecutor, NioImageDecoder imageDecoder, GLProfile glProfile, Runnable uploadRequest) {
+		this.decodeExecutor = decodeExecutor;
+		this.imageDecoder = imageDecoder;
+		this.glProfile = glProfile;
+		this.uploadRequest = uploadRequest;
+	}
+
+	/**
+	 * Creates a pool of daemon threads suited to decoding images.
+	 *
+	 * @param threads
+	 *            maximum number of images decoded concurrently.
+	 */
+	public static ExecutorService createDecodeExecutor(int threads) {
+		final AtomicInteger threadCount = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Texture Decoder " + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.NORM_PRIORITY - 1);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Starts loading a texture. May be called from any thread.
+	 *
+	 * @param bundle
+	 *            bundle holding the image resource.
+	 * @param filePath
+	 *            bundle relative path of a PNG or JPEG image.
+	 * @return a future completed on the GL thread once the texture has been
+	 *         uploaded, or completed exceptionally if loading failed. Already
+	 *         cancelled once the loader was disposed.
+	 */
+	public Future<Texture> load(final Bundle bundle, final String filePath) {
+		final CompletableFuture<Texture> future = new CompletableFuture<Texture>();
+		loadingFutures.add(future);
+		future.whenComplete(new BiConsumer<Texture, Throwable>() {
+			public void accept(Texture texture, Throwable e) {
+				loadingFutures.remove(future);
+			}
+		});
+		if (disposed) {
+			future.cancel(false);
+			return future;
+		}
+		decodeExecutor.execute(new Runnable() {
+			public void run() {
+				if (future.isCancelled()) {
+					return;
+				}
+				try {
+					pendingUploads.add(new PendingUpload(future, decode(bundle, filePath)));
+				} catch (IOException | RuntimeException e) {
+					future.completeExceptionally(new RuntimeException("Could not create a texture data for: " + filePath, e));
+					return;
+				}
+				if (disposed) {
+					// Disposed while decoding, after dispose() dropped the
+					// pending uploads
+					dropPendingUploads();
+					return;
+				}
+				if (uploadRequest != null) {
+					uploadRequest.run();
+				}
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Uploads decoded images until the time budget is used up. At least one
+	 * image is uploaded per call so progress is guaranteed.
+	 *
+	 * @param gl2es2
+	 *            GL2ES2 pipeline object for the calling GLContext. Note, the
+	 *            provided gl2es2 instance must come for the current glcontext
+	 *            (e.g. glcanvas.setCurrent(), then glcontext.makeCurrent()).
+	 * @param budgetNanos
+	 *            time this call may spend uploading.
+	 * @return the number of textures uploaded.
+	 */
+	public int uploadPending(GL2ES2 gl2es2, long budgetNanos) {
+		long start = System.nanoTime();
+		int uploaded = 0;
+		PendingUpload pendingUpload;
+		while ((pendingUpload = pendingUploads.poll()) != null) {
+			if (pendingUpload.future.isCancelled()) {
+				pendingUpload.textureData.flush();
+				continue;
+			}
+			try {
+				Texture texture = TextureIO.newTexture(gl2es2, pendingUpload.textureData);
+				if (!pendingUpload.future.complete(texture)) {
+					// Cancelled meanwhile
+					texture.destroy(gl2es2);
+				}
+			} catch (RuntimeException e) {
+				pendingUpload.future.completeExceptionally(e);
+			} finally {
+				pendingUpload.textureData.flush();
+			}
+			uploaded++;
+			if ((System.nanoTime() - start) >= budgetNanos) {
+				break;
+			}
+		}
+		return uploaded;
+	}
+
+	/**
+	 * @return true if decoded images are waiting for
+	 *         {@link #uploadPending(GL2ES2, long)}.
+	 */
+	public boolean hasPendingUploads() {
+		return !pendingUploads.isEmpty();
+	}
+
+	/**
+	 * Returns the loaded texture, or the placeholder while it is still
+	 * loading or if it failed to load. Must be called on the GL thread.
+	 */
+	public Texture getTexture(GL2ES2 gl2es2, Future<Texture> future) {
+		if (future.isDone() && !future.isCancelled()) {
+			try {
+				return future.get();
+			} catch (Exception e) {
+				// Failed to load, keep showing the placeholder
+			}
+		}
+		return getPlaceholder(gl2es2);
+	}
+
+	/**
+	 * Returns a 1x1 mid grey texture shown until uploads land. Must be called
+	 * on the GL thread.
+	 */
+	public Texture getPlaceholder(GL2ES2 gl2es2) {
+		if (placeholder == null) {
+			ByteBuffer pixel = Buffers.newDirectByteBuffer(new byte[] { (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0xff });
+			TextureData textureData = new TextureData(glProfile, GL.GL_RGBA, 1, 1, 0, GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, false, false, false, pixel, null);
+			placeholder = TextureIO.newTexture(gl2es2, textureData);
+		}
+		return placeholder;
+	}
+
+	/**
+	 * Destroys the placeholder, cancels the textures still loading and drops
+	 * decoded images not uploaded yet; images decoding meanwhile are dropped
+	 * once decoded. Textures already handed out are owned by the caller. Must
+	 * be called on the GL thread.
+	 */
+	public void dispose(GL2ES2 gl2es2) {
+		disposed = true;
+		for (CompletableFuture<Texture> future : loadingFutures) {
+			future.cancel(false);
+		}
+		dropPendingUploads();
+		if (placeholder != null) {
+			placeholder.destroy(gl2es2);
+			placeholder = null;
+		}
+	}
+
+	// Returns the pooled buffers of the pending uploads, from any thread
+	private void dropPendingUploads() {
+		PendingUpload pendingUpload;
+		while ((pendingUpload = pendingUploads.poll()) != null) {
+			pendingUpload.future.cancel(false);
+			pendingUpload.textureData.flush();
+		}
+	}
+
+	// Worker thread
+	private TextureData decode(Bundle bundle, String filePath) throws IOException {
+		String suffix = NioImageDecoder.getSuffix(filePath);
+		if (NioImageDecoder.isSupported(suffix)) {
+			return imageDecoder.decode(glProfile, bundle, filePath);
+		}
+
+		try (InputStream in = BundleResources.openStream(bundle, filePath)) {
+			TextureData textureData = TextureIO.newTextureData(glProfile, in, false, suffix);
+			if (textureData == null) {
+				throw new IOException("No texture reader for: " + filePath);
+			}
+			return textureData;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.osgi.framework.Bundle;
+
+/**
+ * Reads bundle resources without extracting them to the OSGi cache.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Unlike {@link FileLocator#toFileURL(URL)}, nothing is copied to disk: a
+ * jarred bundle is streamed straight from its entry
+ * ({@link Bundle#getEntry(String)}, then fragments through
+ * {@link FileLocator#find(Bundle, org.eclipse.core.runtime.IPath, java.util.Map)}).
+ * <li>When the bundle is unpacked on disk, files of at least
+ * {@link #MAP_THRESHOLD_BYTES} are memory mapped read only. Callers taking a
+ * {@link ByteBuffer} read the mapping from {@link #map(Bundle, String)}
+ * without a copy into the heap. The stream of
+ * {@link #openStream(Bundle, String)} still copies into the reader's arrays,
+ * but straight from the page cache, without a read call per buffer. Smaller
+ * files are cheaper to stream.
+ * <li>Mapped buffers are unmapped by the garbage collector; the mapping does
+ * not keep the file open.
+ * </ul>
+ */
+public final class BundleResources {
+
+	public static final int MAP_THRESHOLD_BYTES = 64 * 1024;
+
+	/**
+	 * Opens a bundle resource, backed by a memory mapping where possible. The
+	 * stream copies the bytes read into the caller's arrays; use
+	 * {@link #map(Bundle, String)} to read without a copy.
+	 *
+	 * @param bundle
+	 *            bundle holding the resource.
+	 * @param filePath
+	 *            bundle relative path (e.g. "res/earth_night.png").
+	 * @return the resource stream, to be closed by the caller.
+	 *
+	 * @throws IOException
+	 *             if the resource can't be found or opened.
+	 */
+	public static InputStream openStream(Bundle bundle, String filePath) throws IOException {
+		ByteBuffer mapped = map(bundle, filePath);
+		if (mapped != null) {
+			return new ByteBufferInputStream(mapped);
+		}
+		URL url = bundle.getEntry(filePath);
+		if (url == null) {
+			// The resource may be contributed by a fragment
+			url = FileLocator.find(bundle, new Path(filePath), null);
+		}
+		if (url == null) {
+			throw new FileNotFoundException("Could not find the bundle resource: " + filePath);
+		}
+		return url.openStream();
+	}
+
+	/**
+	 * Memory maps a bundle resource read only.
+	 *
+	 * @return the mapped file contents, or null if the bundle is not unpacked
+	 *         on disk, the resource does not exist there or it is smaller than
+	 *         {@link #MAP_THRESHOLD_BYTES}.
+	 *
+	 * @throws IOException
+	 *             if the file exists but can't be mapped.
+	 */
+	public static ByteBuffer map(Bundle bundle, String filePath) throws IOException {
+		File file = getFile(bundle, filePath);
+		if ((file == null) || (file.length() < MAP_THRESHOLD_BYTES)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**
+	 * @return the file of a bundle resource if the bundle is unpacked on disk,
+	 *         otherwise null. Never extracts anything.
+	 */
+	public static File getFile(Bundle bundle, String filePath) {
+		File bundleFile;
+		try {
+			bundleFile = FileLocator.getBundleFile(bundle);
+		} catch (IOException e) {
+			return null;
+		}
+		if ((bundleFile == null) || !bundleFile.isDirectory()) {
+			return null;
+		}
+		File file = new File(bundleFile, filePath);
+		return file.isFile() ? file : null;
+	}
+
+	private static final class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public long skip(long count) {
+			int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+			buffer.position(buffer.position() + skipped);
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
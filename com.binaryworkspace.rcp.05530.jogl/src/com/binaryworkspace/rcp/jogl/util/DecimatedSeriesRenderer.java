@@ -0,0 +1,386 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.nio.FloatBuffer;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
+
+import com.jogamp.common.nio.Buffers;
+
+/**
+ * Draws a visible range of a {@link MinMaxPyramid} as a min/max envelope at
+ * the resolution of the screen.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The range is cut into buckets of the smallest power of two samples
+ * covering a pixel, so about one minimum and maximum is drawn per pixel
+ * whatever the number of samples. Both are drawn as one line strip zigzagging
+ * between them, which fills the envelope and turns into a plain line once
+ * buckets hold a single sample.
+ * <li>Buckets are streamed in tiles of {@value #TILE_BUCKETS} into a fixed
+ * cache of {@value #TILE_CACHE_SIZE} VBOs, so panning only uploads the tiles
+ * scrolling into view, and at most {@value #MAX_TILE_UPLOADS_PER_FRAME} tiles
+ * are uploaded per frame. Until its upload, a tile is stood in for by a
+ * cached coarser tile covering it.
+ * <li>Vertices are relative to their tile, and each tile is placed by a
+ * transform uniform computed in double precision, so positions stay exact in
+ * files of billions of samples.
+ * <li>The shader program is built over the first frames by an
+ * {@link AsyncProgramBuilder}, drawing nothing until it linked.
+ * {@link #setAsyncBuild(boolean)} builds it in init instead.
+ * <li>All GL methods must be called with the owning context current.
+ * </ul>
+ */
+public class DecimatedSeriesRenderer {
+
+	public static final String VERTEX_SHADER_SOURCE = "" //
+			+ "#ifdef GL_ES\n" //
+			+ "precision highp float;\n" //
+			+ "#endif\n" //
+			+ "uniform vec4 uTransform;\n" // x scale, x offset, y scale, y offset
+			+ "attribute vec2 aVertex;\n" // bucket in tile, value
+			+ "void main() {\n" //
+			+ "  gl_Position = vec4(aVertex * uTransform.xz + uTransform.yw, 0.0, 1.0);\n" //
+			+ "}\n";
+
+	public static final String FRAGMENT_SHADER_SOURCE = "" //
+			+ "#ifdef GL_ES\n" //
+			+ "precision mediump float;\n" //
+			+ "#endif\n" //
+			+ "uniform vec3 uColor;\n" //
+			+ "void main() {\n" //
+			+ "  gl_FragColor = vec4(uColor, 1.0);\n" //
+			+ "}\n";
+
+	public static final int TILE_BUCKETS = 512;
+
+	public static final int TILE_CACHE_SIZE = 64;
+
+	public static final int MAX_TILE_UPLOADS_PER_FRAME = 4;
+
+	private static final int TILE_SHIFT = Integer.numberOfTrailingZeros(TILE_BUCKETS);
+
+	// Coarser levels searched for a stand-in tile
+	private static final int MAX_STAND_IN_LEVELS = 4;
+
+	// Each tile repeats the first bucket of the next, so tiles connect
+	private static final int FLOATS_PER_TILE = (TILE_BUCKETS + 1) * 2 * 2;
+
+	private static final class Tile {
+		int vboId;
+		int bucketShift = -1;
+		long index;
+		int vertexCount;
+		boolean complete;
+		long usedFrame = -1;
+		long drawnFrame = -1;
+	}
+
+	private final MinMaxPyramid pyramid;
+
+	private final ShaderProgramCache programCache;
+
+	private final Tile[] tiles = new Tile[TILE_CACHE_SIZE];
+
+	private final float[] color = { 0.2f, 0.6f, 1.0f };
+
+	private final float[] vertices = new float[FLOATS_PER_TILE];
+
+	private final FloatBuffer vertexData = Buffers.newDirectFloatBuffer(FLOATS_PER_TILE);
+
+	private long frame;
+
+	private long uploadCount;
+
+	private boolean asyncBuild = true;
+
+	// Null if built synchronously
+	private AsyncProgramBuilder programBuilder;
+
+	private int programVersion;
+
+	// GL state
+	private int programId;
+	private int vertexLocation;
+	private int transformLocation;
+	private int colorLocation;
+
+	/**
+	 * @param programCache
+	 *            cache the shader program is acquired from, or null to compile
+	 *            a private program.
+	 */
+	public DecimatedSeriesRenderer(MinMaxPyramid pyramid, ShaderProgramCache programCache) {
+		this.pyramid = pyramid;
+		this.programCache = programCache;
+		for (int i = 0; i < tiles.length; i++) {
+			tiles[i] = new Tile();
+		}
+	}
+
+	/**
+	 * Starts building the shader program and creates the tile buffers.
+	 *
+	 * @throws RuntimeException
+	 *             if the shader program fails to compile or link when built
+	 *             synchronously.
+	 */
+	public void init(GL2ES2 gl2es2) {
+		if (asyncBuild) {
+			// Set by the first draw after the builder linked the program
+			programBuilder = new AsyncProgramBuilder(programCache);
+			programBuilder.request(VERTEX_SHADER_SOURCE, FRAGMENT_SHADER_SOURCE);
+			programId = 0;
+			programVersion = -1;
+		} else {
+			if (programCache != null) {
+				programId = programCache.acquire(gl2es2, VERTEX_SHADER_SOURCE, FRAGMENT_SHADER_SOURCE);
+			} else {
+				programId = GL2ES2_Util.createProgram(gl2es2, VERTEX_SHADER_SOURCE, FRAGMENT_SHADER_SOURCE);
+			}
+			lookupLocations(gl2es2);
+		}
+
+		int[] ids = new int[TILE_CACHE_SIZE];
+		gl2es2.glGenBuffers(ids.length, ids, 0);
+		for (int i = 0; i < tiles.length; i++) {
+			tiles[i].vboId = ids[i];
+			tiles[i].bucketShift = -1;
+		}
+	}
+
+	/**
+	 * @param asyncBuild
+	 *            false to build the program in {@link #init(GL2ES2)}, waiting
+	 *            for the driver. Must be set before {@link #init(GL2ES2)}.
+	 */
+	public void setAsyncBuild(boolean asyncBuild) {
+		this.asyncBuild = asyncBuild;
+	}
+
+	public void setColor(float red, float green, float blue) {
+		color[0] = red;
+		color[1] = green;
+		color[2] = blue;
+	}
+
+	/**
+	 * @return the number of tiles uploaded so far.
+	 */
+	public long getUploadCount() {
+		return uploadCount;
+	}
+
+	/**
+	 * @return the bucket size drawn for a range, as the power of two of the
+	 *         samples per bucket: the smallest one covering a pixel.
+	 */
+	public static int getBucketShift(double from, double to, int width) {
+		double samplesPerPixel = (to - from) / Math.max(1, width);
+		if (samplesPerPixel <= 1) {
+			return 0;
+		}
+		return Math.min(62 - TILE_SHIFT, 64 - Long.numberOfLeadingZeros((long) Math.ceil(samplesPerPixel) - 1));
+	}
+
+	/**
+	 * Draws the samples from, to across the viewport.
+	 *
+	 * @param from
+	 *            sample at the left edge of the viewport, may be fractional
+	 *            and outside the samples.
+	 * @param to
+	 *            sample at the right edge of the viewport, greater than from.
+	 * @param minValue
+	 *            value at the bottom edge of the viewport.
+	 * @param maxValue
+	 *            value at the top edge of the viewport, greater than minValue.
+	 * @param width
+	 *            width of the viewport in pixels.
+	 * @return false if parts were not drawn at full resolution yet because of
+	 *         the upload budget, the pyramid or the shader program still
+	 *         building; draw another frame to complete them.
+	 * @throws RuntimeException
+	 *             if the shader program failed to compile or link.
+	 */
+	public boolean draw(GL2ES2 gl2es2, double from, double to, float minValue, float maxValue, int width) {
+		if (programBuilder != null) {
+			updateProgram(gl2es2);
+			if (programId == 0) {
+				return false;
+			}
+		}
+		frame++;
+		long count = pyramid.getCount();
+		if ((count == 0) || (to <= Math.max(0, from)) || (from >= count)) {
+			return true;
+		}
+		int bucketShift = getBucketShift(from, to, width);
+		int tileShift = bucketShift + TILE_SHIFT;
+		long firstTile = (long) Math.max(0, from) >>> tileShift;
+		long lastTile = ((long) Math.min(count, Math.ceil(to)) - 1) >>> tileShift;
+
+		gl2es2.glUseProgram(programId);
+		gl2es2.glUniform3fv(colorLocation, 1, color, 0);
+		gl2es2.glEnableVertexAttribArray(vertexLocation);
+
+		double xScale = 2.0 / (to - from);
+		float yScale = 2.0f / (maxValue - minValue);
+		float yOffset = -1.0f - (minValue * yScale);
+		int uploads = 0;
+		boolean complete = true;
+		for (long index = firstTile; index <= lastTile; index++) {
+			Tile tile = findTile(bucketShift, index);
+			if (((tile == null) || !tile.complete) && (uploads < MAX_TILE_UPLOADS_PER_FRAME)) {
+				// Upload the tile, or the part of it built so far
+				if (tile == null) {
+					tile = evictTile();
+				}
+				upload(gl2es2, tile, bucketShift, index);
+				uploads++;
+			}
+			if ((tile == null) || !tile.complete) {
+				complete = false;
+				Tile standIn = findStandIn(bucketShift, index);
+				if (standIn != null) {
+					tile = standIn;
+				}
+			}
+			if ((tile == null) || (tile.vertexCount == 0) || (tile.drawnFrame == frame)) {
+				continue;
+			}
+			tile.usedFrame = frame;
+			tile.drawnFrame = frame;
+
+			// Place the tile, relative to the viewport in double precision
+			double tileFrom = (double) (tile.index << (tile.bucketShift + TILE_SHIFT));
+			gl2es2.glUniform4f(transformLocation, (float) ((1L << tile.bucketShift) * xScale), (float) (((tileFrom - from) * xScale) - 1.0), yScale, yOffset);
+			gl2es2.glBindBuffer(GL.GL_ARRAY_BUFFER, tile.vboId);
+			gl2es2.glVertexAttribPointer(vertexLocation, 2, GL.GL_FLOAT, false, 0, 0L);
+			gl2es2.glDrawArrays(GL.GL_LINE_STRIP, 0, tile.vertexCount);
+		}
+
+		gl2es2.glDisableVertexAttribArray(vertexLocation);
+		gl2es2.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+		gl2es2.glUseProgram(0);
+		return complete;
+	}
+
+	/**
+	 * Releases the tile buffers and the shader program.
+	 */
+	public void dispose(GL2ES2 gl2es2) {
+		if (tiles[0].vboId != 0) {
+			int[] ids = new int[TILE_CACHE_SIZE];
+			for (int i = 0; i < tiles.length; i++) {
+				ids[i] = tiles[i].vboId;
+				tiles[i].vboId = 0;
+				tiles[i].bucketShift = -1;
+			}
+			gl2es2.glDeleteBuffers(ids.length, ids, 0);
+		}
+		if (programBuilder != null) {
+			programBuilder.dispose(gl2es2);
+			programBuilder = null;
+			programId = 0;
+		} else if (programId != 0) {
+			if (programCache != null) {
+				programCache.release(gl2es2, programId);
+			} else {
+				gl2es2.glDeleteProgram(programId);
+			}
+			programId = 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "DecimatedSeriesRenderer [pyramid=" + pyramid + ", uploads=" + uploadCount + "]";
+	}
+
+	private void updateProgram(GL2ES2 gl2es2) {
+		programBuilder.update(gl2es2);
+		RuntimeException failure = programBuilder.takeFailure();
+		if (failure != null) {
+			throw failure;
+		}
+		if (programBuilder.getVersion() != programVersion) {
+			programId = programBuilder.getProgram();
+			programVersion = programBuilder.getVersion();
+			lookupLocations(gl2es2);
+		}
+	}
+
+	private void lookupLocations(GL2ES2 gl2es2) {
+		vertexLocation = gl2es2.glGetAttribLocation(programId, "aVertex");
+		transformLocation = gl2es2.glGetUniformLocation(programId, "uTransform");
+		colorLocation = gl2es2.glGetUniformLocation(programId, "uColor");
+	}
+
+	private Tile findTile(int bucketShift, long index) {
+		for (Tile tile : tiles) {
+			if ((tile.bucketShift == bucketShift) && (tile.index == index)) {
+				return tile;
+			}
+		}
+		return null;
+	}
+
+	// A complete coarser tile covering the given one
+	private Tile findStandIn(int bucketShift, long index) {
+		for (int level = 1; level <= MAX_STAND_IN_LEVELS; level++) {
+			Tile tile = findTile(bucketShift + level, index >>> level);
+			if ((tile != null) && tile.complete) {
+				return tile;
+			}
+		}
+		return null;
+	}
+
+	// The least recently used tile not drawn in this frame
+	private Tile evictTile() {
+		Tile oldest = null;
+		for (Tile tile : tiles) {
+			if ((tile.usedFrame != frame) && ((oldest == null) || (tile.usedFrame < oldest.usedFrame))) {
+				oldest = tile;
+			}
+		}
+		return oldest;
+	}
+
+	private void upload(GL2ES2 gl2es2, Tile tile, int bucketShift, long index) {
+		if (tile == null) {
+			return;
+		}
+		long first = index << TILE_SHIFT;
+		long last = Math.min(pyramid.getBucketCount(bucketShift), first + TILE_BUCKETS + 1);
+		tile.bucketShift = bucketShift;
+		tile.index = index;
+		tile.complete = true;
+		tile.usedFrame = frame;
+
+		// Zigzag between minimum and maximum, up to the first bucket not built
+		int floats = 0;
+		for (long bucket = first; bucket < last; bucket++) {
+			if (!pyramid.minMax(bucketShift, bucket, vertices, floats + 1)) {
+				tile.complete = false;
+				break;
+			}
+			float local = bucket - first;
+			vertices[floats + 3] = vertices[floats + 2];
+			vertices[floats + 2] = local;
+			vertices[floats] = local;
+			floats += 4;
+		}
+		tile.vertexCount = floats / 2;
+		if (floats > 0) {
+			vertexData.clear();
+			vertexData.put(vertices, 0, floats);
+			vertexData.flip();
+			gl2es2.glBindBuffer(GL.GL_ARRAY_BUFFER, tile.vboId);
+			gl2es2.glBufferData(GL.GL_ARRAY_BUFFER, floats * Buffers.SIZEOF_FLOAT, vertexData, GL.GL_STATIC_DRAW);
+		}
+		uploadCount++;
+	}
+}
@@ -0,0 +1,111 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jogamp.common.nio.Buffers;
+
+/**
+ * A thread-safe pool of direct {@link ByteBuffer}s, so decoding a stream of
+ * images does not allocate (and later free) a direct buffer per image.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Buffers are pooled in power of two size classes. A request is served by
+ * the smallest class holding it, with the limit set to the requested size.
+ * <li>Released buffers beyond the pool's byte limit, and buffers larger than
+ * 1 GB, are dropped and left to the garbage collector.
+ * </ul>
+ */
+public class DirectBufferPool {
+
+	// Size classes 2^0 .. 2^30
+	private static final int SIZE_CLASSES = 31;
+
+	private final ConcurrentLinkedQueue<ByteBuffer>[] freeBuffers;
+
+	private final long maxPooledBytes;
+
+	private final AtomicLong pooledBytes = new AtomicLong();
+	private final AtomicLong allocationCount = new AtomicLong();
+	private final AtomicLong reuseCount = new AtomicLong();
+
+	/**
+	 * @param maxPooledBytes
+	 *            upper bound for the bytes held by free buffers.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public DirectBufferPool(long maxPooledBytes) {
+		this.maxPooledBytes = maxPooledBytes;
+		this.freeBuffers = new ConcurrentLinkedQueue[SIZE_CLASSES];
+		for (int i = 0; i < SIZE_CLASSES; i++) {
+			freeBuffers[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+		}
+	}
+
+	/**
+	 * @return a cleared direct buffer in native byte order with at least the
+	 *         given capacity and its limit set to the given size.
+	 */
+	public ByteBuffer acquire(int sizeBytes) {
+		if (sizeBytes < 0) {
+			throw new IllegalArgumentException("Size must not be negative: " + sizeBytes);
+		}
+		int sizeClass = sizeClass(sizeBytes);
+		if (sizeClass >= SIZE_CLASSES) {
+			// Too large to pool
+			allocationCount.incrementAndGet();
+			return Buffers.newDirectByteBuffer(sizeBytes);
+		}
+		ByteBuffer buffer = freeBuffers[sizeClass].poll();
+		if (buffer != null) {
+			pooledBytes.addAndGet(-buffer.capacity());
+			reuseCount.incrementAndGet();
+		} else {
+			buffer = Buffers.newDirectByteBuffer(1 << sizeClass);
+			allocationCount.incrementAndGet();
+		}
+		buffer.clear();
+		buffer.limit(sizeBytes);
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer obtained from {@link #acquire(int)}. The caller must
+	 * not use it afterwards.
+	 */
+	public void release(ByteBuffer buffer) {
+		int capacity = buffer.capacity();
+		if (!buffer.isDirect() || (Integer.bitCount(capacity) != 1)) {
+			return;
+		}
+		if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+			pooledBytes.addAndGet(-capacity);
+			return;
+		}
+		freeBuffers[Integer.numberOfTrailingZeros(capacity)].add(buffer);
+	}
+
+	/**
+	 * @return the bytes currently held by free buffers.
+	 */
+	public long getPooledBytes() {
+		return pooledBytes.get();
+	}
+
+	public long getAllocationCount() {
+		return allocationCount.get();
+	}
+
+	public long getReuseCount() {
+		return reuseCount.get();
+	}
+
+	private static int sizeClass(int sizeBytes) {
+		if (sizeBytes <= 1) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(sizeBytes - 1);
+	}
+}
@@ -0,0 +1,126 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, allocation-free histogram of durations.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Durations are bucketed in microseconds: exactly below 64 us, then 32
+ * buckets per power of two (about 3% relative error) up to about 17 minutes.
+ * Longer durations land in the last bucket; {@link #getMaxNanos()} stays
+ * exact.
+ * <li>{@link #record(long)} only increments counters, so it is cheap enough
+ * to call several times per frame. It may be called from any thread, and
+ * reads are consistent enough for monitoring while recording goes on.
+ * </ul>
+ */
+public class FrameHistogram {
+
+	private static final int LINEAR_BUCKETS = 64;
+
+	private static final int SUB_BUCKET_BITS = 5;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// 2^6 .. 2^30 microseconds
+	private static final int MIN_EXPONENT = 6;
+	private static final int MAX_EXPONENT = 30;
+
+	private static final int BUCKETS = LINEAR_BUCKETS + (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * Records a duration.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(bucketIndex(TimeUnit.NANOSECONDS.toMicros(nanos)));
+		count.incrementAndGet();
+		long max;
+		while (nanos > (max = maxNanos.get())) {
+			if (maxNanos.compareAndSet(max, nanos)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100 (e.g. 50 or 99).
+	 * @return the smallest recorded duration the given percentage of
+	 *         recordings do not exceed, at bucket precision; 0 if nothing was
+	 *         recorded.
+	 */
+	public long getPercentileNanos(double percentile) {
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil((percentile / 100.0) * total));
+		long cumulative = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			cumulative += counts.get(i);
+			if (cumulative >= target) {
+				return Math.min(TimeUnit.MICROSECONDS.toNanos(bucketUpperBoundMicros(i)), maxNanos.get());
+			}
+		}
+		return maxNanos.get();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Clears all recordings.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		maxNanos.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "FrameHistogram [count=" + count + ", p50=" + getPercentileNanos(50) + "ns, p99=" + getPercentileNanos(99) + "ns, max=" + maxNanos + "ns]";
+	}
+
+	private static int bucketIndex(long micros) {
+		if (micros < LINEAR_BUCKETS) {
+			return (int) micros;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR_BUCKETS + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+	}
+
+	private static long bucketUpperBoundMicros(int index) {
+		if (index < LINEAR_BUCKETS) {
+			return index;
+		}
+		int exponent = MIN_EXPONENT + (index - LINEAR_BUCKETS) / SUB_BUCKETS;
+		int subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return (1L << exponent) + (subBucket + 1) * width - 1;
+	}
+}
@@ -1,18 +1,12 @@
 package com.binaryworkspace.rcp.jogl.util;
 
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.io.InputStream;
 
 import javax.imageio.ImageIO;
 import javax.media.opengl.GL2ES2;
 
-import org.eclipse.core.runtime.FileLocator;
-import org.eclipse.core.runtime.Path;
 import org.osgi.framework.Bundle;
 
 import com.jogamp.opengl.util.texture.Texture;
@@ -47,22 +41,13 @@ public final class GL2ES2_Util {
 	 * 
 	 * @throws RuntimeException
 	 *             if the texture fails to load in any way.
+	 * @see TextureManager to load each texture once and share it between
+	 *      views.
 	 */
 	public static Texture createTexture(GL2ES2 gl2es2, Bundle bundle, String filePath) {
-		// Load the texture
-		Path path = new Path(filePath); //$NON-NLS-1$
-		URL url = FileLocator.find(bundle, path, Collections.emptyMap());
-		URL fileUrl = null;
-		try {
-			fileUrl = FileLocator.toFileURL(url);
-		} catch (IOException e) {
-			throw new RuntimeException("Could not load the texture file: " + filePath, e);
-		}
-		File file = new File(fileUrl.getPath());
-
 		// Create texture data
 		TextureData textureData = null;
-		try {
+		try (InputStream in = BundleResources.openStream(bundle, filePath)) {
 
 			/**
 			 * Best practice for loading images for jogl 2.0-rc11
@@ -71,7 +56,10 @@ public final class GL2ES2_Util {
 			 * @see http://forum.jogamp.org/PNG-interlace-td4027479.html
 			 * </pre>
 			 */
-			BufferedImage bufferedImage = ImageIO.read(file);
+			BufferedImage bufferedImage = ImageIO.read(in);
+			if (bufferedImage == null) {
+				throw new IOException("No image reader for: " + filePath);
+			}
 			textureData = AWTTextureIO.newTextureData(gl2es2.getGLProfile(), bufferedImage, true);
 		} catch (IOException e) {
 			throw new RuntimeException("Could not create a texture data for: " + filePath, e);
@@ -129,6 +117,81 @@ public final class GL2ES2_Util {
 		throw new RuntimeException("Error compiling the shader: " + new String(log));
 	}
 
+	/**
+	 * Compiles the vertex and fragment shader sources and links them into a
+	 * shader program. The shader objects are released once linked.
+	 * 
+	 * @param gl2es2
+	 *            GL2ES2 pipeline object for the calling GLContext. Note, the
+	 *            provided gl2es2 instance must come for the current glcontext
+	 *            (e.g. glcanvas.setCurrent(), then glcontext.makeCurrent()).
+	 * @param vertexSource
+	 *            Vertex shader C Source Code presented as a single string
+	 * @param fragmentSource
+	 *            Fragment shader C Source Code presented as a single string
+	 * @return int which is the linked program's id.
+	 * 
+	 * @throws RuntimeException
+	 *             if a shader fails to compile or the program fails to link.
+	 */
+	public static int createProgram(GL2ES2 gl2es2, String vertexSource, String fragmentSource) {
+		int programId = gl2es2.glCreateProgram();
+		linkProgram(gl2es2, programId, vertexSource, fragmentSource);
+		return programId;
+	}
+
+	/**
+	 * Compiles the vertex and fragment shader sources and links them into the
+	 * given program. Allows program parameters (e.g. a binary retrievable
+	 * hint) to be set between glCreateProgram() and the link.
+	 * 
+	 * @param gl2es2
+	 *            GL2ES2 pipeline object for the calling GLContext. Note, the
+	 *            provided gl2es2 instance must come for the current glcontext
+	 *            (e.g. glcanvas.setCurrent(), then glcontext.makeCurrent()).
+	 * @param programId
+	 *            obtained from the pipeline when creating the shader program
+	 *            (return value from glCreateProgram()).
+	 * @param vertexSource
+	 *            Vertex shader C Source Code presented as a single string
+	 * @param fragmentSource
+	 *            Fragment shader C Source Code presented as a single string
+	 * 
+	 * @throws RuntimeException
+	 *             if a shader fails to compile or the program fails to link.
+	 *             The program is deleted in either case.
+	 */
+	public static void linkProgram(GL2ES2 gl2es2, int programId, String vertexSource, String fragmentSource) {
+		int vertexShaderId;
+		int fragmentShaderId;
+		try {
+			vertexShaderId = loadShader(gl2es2, GL2ES2.GL_VERTEX_SHADER, vertexSource);
+		} catch (RuntimeException e) {
+			gl2es2.glDeleteProgram(programId);
+			throw e;
+		}
+		try {
+			fragmentShaderId = loadShader(gl2es2, GL2ES2.GL_FRAGMENT_SHADER, fragmentSource);
+		} catch (RuntimeException e) {
+			gl2es2.glDeleteShader(vertexShaderId);
+			gl2es2.glDeleteProgram(programId);
+			throw e;
+		}
+
+		// Link the program
+		gl2es2.glAttachShader(programId, vertexShaderId);
+		gl2es2.glAttachShader(programId, fragmentShaderId);
+		gl2es2.glLinkProgram(programId);
+
+		// Shaders are no longer needed once linked (or failed to link)
+		gl2es2.glDetachShader(programId, vertexShaderId);
+		gl2es2.glDetachShader(programId, fragmentShaderId);
+		gl2es2.glDeleteShader(vertexShaderId);
+		gl2es2.glDeleteShader(fragmentShaderId);
+
+		validateProgramLinkage(gl2es2, programId);
+	}
+
 	/**
 	 * Performs a check as to if a given shader program is linked to the
 	 * provided pipeline for the calling context.
@@ -175,7 +238,8 @@ public final class GL2ES2_Util {
 
 	/**
 	 * Pulls errors off the OpenGL pipeline stack in the order of occurrence and
-	 * throws a runtime exception with error codes if any existed.
+	 * throws a runtime exception with the error names if any existed. Nothing
+	 * is allocated unless an error is found.
 	 * 
 	 * @param gl2es2
 	 *            GL2ES2 pipeline object for the calling GLContext. Note, the
@@ -184,35 +248,34 @@ public final class GL2ES2_Util {
 	 * @param description
 	 *            of the type of OpenGL calls that were made before this check
 	 *            was performed (e.g. glUseProgram, glUniforms, glDrawArrays).
+	 * @see GLErrorChecker for configurable and debug output based checking.
 	 */
 	public static void checkGlError(GL2ES2 gl2es2, String description) {
-		List<Integer> errorCodes = null;
-
-		// Collect all glError codes
-		while (true) {
-			int error = gl2es2.glGetError();
-			if (error == GL2ES2.GL_NO_ERROR) {
-				break;
-			} else {
-				if (errorCodes == null) {
-					errorCodes = new ArrayList<Integer>();
-				}
-				errorCodes.add(error);
-			}
-		}
+		GLErrorChecker.pollErrors(gl2es2, description);
+	}
 
-		// Throw an exception and list all found glError codes if errors found
-		if (errorCodes != null) {
-			Collections.reverse(errorCodes);
-			StringBuilder sb = new StringBuilder();
-			for (Integer errorCode : errorCodes) {
-				if (sb.length() > 0) {
-					sb.append("\n");
-				}
-				sb.append("glError: ");
-				sb.append(errorCode);
-			}
-			throw new RuntimeException("The GLError check for " + description + " pulled errors from the OpenGL pipeline stack./n" + sb.toString());
+	/**
+	 * Writes a two dimensional orthographic projection into the given column
+	 * major 4x4 matrix, matching the projection of gluOrtho2D. Intended for
+	 * uniforms of shader programs replacing the fixed function projection.
+	 * 
+	 * @param matrix
+	 *            destination array holding at least 16 floats. Reusing the
+	 *            same array avoids an allocation per resize.
+	 * @return the given matrix.
+	 */
+	public static float[] ortho2D(float[] matrix, float left, float right, float bottom, float top) {
+		float width = right - left;
+		float height = top - bottom;
+		for (int i = 0; i < 16; i++) {
+			matrix[i] = 0;
 		}
+		matrix[0] = 2.0f / width;
+		matrix[5] = 2.0f / height;
+		matrix[10] = -1.0f;
+		matrix[12] = -(right + left) / width;
+		matrix[13] = -(top + bottom) / height;
+		matrix[15] = 1.0f;
+		return matrix;
 	}
 }
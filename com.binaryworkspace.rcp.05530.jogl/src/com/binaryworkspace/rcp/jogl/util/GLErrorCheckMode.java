@@ -0,0 +1,27 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+/**
+ * How a {@link GLErrorChecker} detects OpenGL errors.
+ */
+public enum GLErrorCheckMode {
+
+	/**
+	 * No checking at all; checks are no-ops. The production default.
+	 */
+	OFF,
+
+	/**
+	 * Drains glGetError() at each check without allocating unless an error is
+	 * found. Forces a pipeline sync on some drivers.
+	 */
+	POLLING,
+
+	/**
+	 * Asynchronous KHR_debug / ARB_debug_output / AMD_debug_output callback
+	 * recording into a lock-free ring buffer. Checks only read a counter.
+	 * Falls back to {@link #POLLING} if the context offers no debug output,
+	 * e.g. any context JOGL did not create itself as a debug context, such as
+	 * the external context of SWT's GLCanvas.
+	 */
+	DEBUG_OUTPUT;
+}
@@ -0,0 +1,323 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GLAutoDrawable;
+import javax.media.opengl.GLContext;
+import javax.media.opengl.GLDebugListener;
+import javax.media.opengl.GLDebugMessage;
+import javax.media.opengl.GLException;
+
+/**
+ * Configurable OpenGL error checking for one GL context.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>See {@link GLErrorCheckMode} for the modes. The mode defaults to the
+ * {@value #MODE_PROPERTY} system property (off, polling or debug_output) and
+ * to {@link GLErrorCheckMode#OFF} when it is not set.
+ * <li>Nothing is allocated per check unless an error is reported.
+ * <li>In {@link GLErrorCheckMode#DEBUG_OUTPUT} mode the driver callback may
+ * run on any thread. Messages are kept in a ring buffer overwriting the
+ * oldest entries; {@link #drainMessages(List)} is meant for a single reader
+ * and is best effort while messages keep arriving.
+ * <li>{@link #getCheckCount()} and {@link #getErrorCount()} together with a
+ * benchmark run per mode give the per-frame overhead.
+ * </ul>
+ */
+public class GLErrorChecker {
+
+	public static final String MODE_PROPERTY = "com.binaryworkspace.rcp.jogl.glErrorCheck"; //$NON-NLS-1$
+
+	public static final int DEFAULT_RING_CAPACITY = 256;
+
+	// Bounds the glGetError() loop, which never ends once the context is lost
+	private static final int MAX_POLLED_ERRORS = 32;
+
+	// Not defined by the JOGL 2.1.5 GL interfaces
+	private static final int GL_STACK_UNDERFLOW = 0x0504;
+	private static final int GL_CONTEXT_LOST = 0x0507;
+
+	private final GLErrorCheckMode requestedMode;
+
+	private volatile GLErrorCheckMode mode;
+
+	private final AtomicReferenceArray<GLDebugMessage> ring;
+
+	private final int ringMask;
+
+	private final AtomicLong writeSequence = new AtomicLong();
+
+	private final AtomicLong errorCount = new AtomicLong();
+
+	private final AtomicLong checkCount = new AtomicLong();
+
+	private final AtomicLong droppedMessageCount = new AtomicLong();
+
+	// Reader side
+	private long readSequence;
+	private long reportedErrorCount;
+	private long checkedSequence;
+
+	private final GLDebugListener debugListener = new GLDebugListener() {
+		public void messageSent(GLDebugMessage message) {
+			long sequence = writeSequence.getAndIncrement();
+			ring.set((int) (sequence & ringMask), message);
+			if (message.getDbgType() == GL2ES2.GL_DEBUG_TYPE_ERROR) {
+				errorCount.incrementAndGet();
+			}
+		}
+	};
+
+	/**
+	 * Creates a checker using the mode configured by {@value #MODE_PROPERTY}.
+	 */
+	public GLErrorChecker() {
+		this(getConfiguredMode(), DEFAULT_RING_CAPACITY);
+	}
+
+	/**
+	 * @param mode
+	 *            the requested error check mode.
+	 * @param ringCapacity
+	 *            number of debug messages kept, rounded up to a power of two.
+	 */
+	public GLErrorChecker(GLErrorCheckMode mode, int ringCapacity) {
+		this.requestedMode = mode;
+		this.mode = mode;
+		int capacity = Integer.highestOneBit(Math.max(1, ringCapacity - 1)) << 1;
+		this.ring = new AtomicReferenceArray<GLDebugMessage>(capacity);
+		this.ringMask = capacity - 1;
+	}
+
+	/**
+	 * @return the mode named by the {@value #MODE_PROPERTY} system property,
+	 *         or {@link GLErrorCheckMode#OFF}.
+	 */
+	public static GLErrorCheckMode getConfiguredMode() {
+		String value = System.getProperty(MODE_PROPERTY);
+		if (value == null) {
+			return GLErrorCheckMode.OFF;
+		}
+		try {
+			return GLErrorCheckMode.valueOf(value.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return GLErrorCheckMode.OFF;
+		}
+	}
+
+	/**
+	 * Requests a debug context from a drawable creating its own context, e.g.
+	 * a NEWT window. Must be called before the drawable is realized. External
+	 * contexts, like the one wrapping SWT's GLCanvas, are created before JOGL
+	 * sees them and can't be made debug contexts.
+	 */
+	public void prepareDrawable(GLAutoDrawable drawable) {
+		if (requestedMode == GLErrorCheckMode.DEBUG_OUTPUT) {
+			drawable.setContextCreationFlags(drawable.getContextCreationFlags() | GLContext.CTX_OPTION_DEBUG);
+		}
+	}
+
+	/**
+	 * Starts checking. For debug output the listener is registered with the
+	 * context; if the context offers no debug output extension the checker
+	 * falls back to {@link GLErrorCheckMode#POLLING}, see {@link #getMode()}.
+	 * Must be called with the context current.
+	 */
+	public void install(GL2ES2 gl2es2) {
+		if (requestedMode != GLErrorCheckMode.DEBUG_OUTPUT) {
+			return;
+		}
+		GLContext context = gl2es2.getContext();
+		context.addGLDebugListener(debugListener);
+		try {
+			context.setGLDebugSynchronous(false);
+			context.enableGLDebugMessage(true);
+		} catch (GLException e) {
+			// No debug output extension
+		}
+		if (!context.isGLDebugMessageEnabled()) {
+			context.removeGLDebugListener(debugListener);
+			mode = GLErrorCheckMode.POLLING;
+		}
+	}
+
+	/**
+	 * Stops checking. Must be called with the context current.
+	 */
+	public void uninstall(GL2ES2 gl2es2) {
+		if (mode == GLErrorCheckMode.DEBUG_OUTPUT) {
+			GLContext context = gl2es2.getContext();
+			context.removeGLDebugListener(debugListener);
+			try {
+				context.enableGLDebugMessage(false);
+			} catch (GLException e) {
+				// Already gone with the context
+			}
+		}
+	}
+
+	/**
+	 * @return the effective mode, which may differ from the requested one
+	 *         after {@link #install(GL2ES2)}.
+	 */
+	public GLErrorCheckMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Checks for errors since the previous check. Must be called with the
+	 * context current.
+	 *
+	 * @param description
+	 *            of the type of OpenGL calls that were made before this check
+	 *            was performed (e.g. glUseProgram, glUniforms, glDrawArrays).
+	 *
+	 * @throws RuntimeException
+	 *             listing the errors, if any were reported.
+	 */
+	public void check(GL2ES2 gl2es2, String description) {
+		switch (mode) {
+		case POLLING:
+			checkCount.incrementAndGet();
+			pollErrors(gl2es2, description);
+			break;
+		case DEBUG_OUTPUT:
+			checkCount.incrementAndGet();
+			// Counted before the sequence is read, so counted errors are in range
+			long errors = errorCount.get();
+			long start = checkedSequence;
+			long end = writeSequence.get();
+			checkedSequence = end;
+			if (errors != reportedErrorCount) {
+				long newErrors = errors - reportedErrorCount;
+				reportedErrorCount = errors;
+				throw new RuntimeException("The GL debug output for " + description + " reported " + newErrors + " error(s)." + describeErrors(start, end));
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Moves the debug messages recorded since the previous call into the
+	 * given list, oldest first.
+	 *
+	 * @return the number of messages added.
+	 */
+	public int drainMessages(List<GLDebugMessage> messages) {
+		long end = writeSequence.get();
+		long start = Math.max(readSequence, end - ring.length());
+		droppedMessageCount.addAndGet(start - readSequence);
+		int count = 0;
+		for (long sequence = start; sequence < end; sequence++) {
+			GLDebugMessage message = ring.get((int) (sequence & ringMask));
+			if (message != null) {
+				messages.add(message);
+				count++;
+			}
+		}
+		readSequence = end;
+		return count;
+	}
+
+	public long getCheckCount() {
+		return checkCount.get();
+	}
+
+	/**
+	 * @return the errors reported by debug output so far.
+	 */
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	/**
+	 * @return the debug messages overwritten before they were drained.
+	 */
+	public long getDroppedMessageCount() {
+		return droppedMessageCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "GLErrorChecker [mode=" + mode + ", checks=" + checkCount + ", errors=" + errorCount + ", dropped=" + droppedMessageCount + "]";
+	}
+
+	/**
+	 * Pulls errors off the OpenGL pipeline in the order they are returned and
+	 * throws a runtime exception naming them if any existed. Allocates only
+	 * when an error is found.
+	 *
+	 * @param gl2es2
+	 *            GL2ES2 pipeline object for the calling GLContext. Note, the
+	 *            provided gl2es2 instance must come for the current glcontext
+	 *            (e.g. glcanvas.setCurrent(), then glcontext.makeCurrent()).
+	 * @param description
+	 *            of the type of OpenGL calls that were made before this check
+	 *            was performed (e.g. glUseProgram, glUniforms, glDrawArrays).
+	 */
+	public static void pollErrors(GL2ES2 gl2es2, String description) {
+		int error = gl2es2.glGetError();
+		if (error == GL.GL_NO_ERROR) {
+			return;
+		}
+
+		// Error path, allocation is fine
+		StringBuilder sb = new StringBuilder();
+		int count = 0;
+		do {
+			sb.append("\nglError: ");
+			sb.append(getErrorName(error));
+			count++;
+		} while ((count < MAX_POLLED_ERRORS) && ((error = gl2es2.glGetError()) != GL.GL_NO_ERROR));
+		throw new RuntimeException("The GLError check for " + description + " pulled errors from the OpenGL pipeline stack." + sb.toString());
+	}
+
+	/**
+	 * @return the symbolic name of a glGetError() code (e.g.
+	 *         "GL_INVALID_ENUM"), or its hex value if unknown.
+	 */
+	public static String getErrorName(int error) {
+		switch (error) {
+		case GL.GL_NO_ERROR:
+			return "GL_NO_ERROR"; //$NON-NLS-1$
+		case GL.GL_INVALID_ENUM:
+			return "GL_INVALID_ENUM"; //$NON-NLS-1$
+		case GL.GL_INVALID_VALUE:
+			return "GL_INVALID_VALUE"; //$NON-NLS-1$
+		case GL.GL_INVALID_OPERATION:
+			return "GL_INVALID_OPERATION"; //$NON-NLS-1$
+		case GL2ES2.GL_STACK_OVERFLOW:
+			return "GL_STACK_OVERFLOW"; //$NON-NLS-1$
+		case GL_STACK_UNDERFLOW:
+			return "GL_STACK_UNDERFLOW"; //$NON-NLS-1$
+		case GL.GL_OUT_OF_MEMORY:
+			return "GL_OUT_OF_MEMORY"; //$NON-NLS-1$
+		case GL.GL_INVALID_FRAMEBUFFER_OPERATION:
+			return "GL_INVALID_FRAMEBUFFER_OPERATION"; //$NON-NLS-1$
+		case GL_CONTEXT_LOST:
+			return "GL_CONTEXT_LOST"; //$NON-NLS-1$
+		default:
+			return "0x" + Integer.toHexString(error); //$NON-NLS-1$
+		}
+	}
+
+	// The error messages still in the ring between the given sequences
+	private String describeErrors(long start, long end) {
+		StringBuilder sb = new StringBuilder();
+		for (long sequence = Math.max(start, end - ring.length()); sequence < end; sequence++) {
+			GLDebugMessage message = ring.get((int) (sequence & ringMask));
+			if ((message != null) && (message.getDbgType() == GL2ES2.GL_DEBUG_TYPE_ERROR)) {
+				sb.append("\n");
+				sb.append(message.getDbgMsg());
+			}
+		}
+		return sb.toString();
+	}
+}
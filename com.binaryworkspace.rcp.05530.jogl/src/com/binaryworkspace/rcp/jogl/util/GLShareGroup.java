@@ -0,0 +1,65 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.media.opengl.GLContext;
+
+/**
+ * Tells the resource caches which GL contexts share their objects.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Contexts created through SWT or as external contexts don't tell JOGL
+ * that they share objects, so the creator registers them with
+ * {@link #join(GLContext, Object)}.
+ * <li>{@link ShaderProgramCache} and {@link TextureManager} key their
+ * resources by {@link #of(GLContext)}, so a program or texture is created
+ * once per share group instead of once per context.
+ * <li>A context that never joined forms a group of its own.
+ * </ul>
+ */
+public final class GLShareGroup {
+
+	// Context -> group, guarded by the class
+	private static final Map<GLContext, Object> groups = new WeakHashMap<GLContext, Object>();
+
+	/**
+	 * Registers a context as sharing the objects of the given group.
+	 *
+	 * @param group
+	 *            identifies the share group, e.g. the master context. Must
+	 *            stay reachable while contexts of the group are in use.
+	 */
+	public static synchronized void join(GLContext context, Object group) {
+		groups.put(context, group);
+	}
+
+	/**
+	 * Removes a context from its group, e.g. before it is destroyed.
+	 */
+	public static synchronized void leave(GLContext context) {
+		groups.remove(context);
+	}
+
+	/**
+	 * @return the share group of the context, or the context itself if it
+	 *         never joined one.
+	 */
+	public static synchronized Object of(GLContext context) {
+		Object group = groups.get(context);
+		return (group != null) ? group : context;
+	}
+
+	/**
+	 * @return true if objects created in one context can be used in the
+	 *         other.
+	 */
+	public static boolean isShared(GLContext context, GLContext other) {
+		return of(context) == of(other);
+	}
+
+	private GLShareGroup() {
+		// Static registry
+	}
+}
@@ -0,0 +1,137 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GL2GL3;
+
+/**
+ * Measures the GPU time of frames with GL_TIME_ELAPSED queries without ever
+ * stalling the pipeline.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>A small ring of query objects is cycled; each result is read back only
+ * once the driver reports it available, typically a few frames later. If the
+ * query of the next slot is still in flight the frame goes unmeasured rather
+ * than waiting for it.
+ * <li>Requires desktop GL with ARB_timer_query or EXT_timer_query; elsewhere
+ * every method is a no-op, see {@link #isSupported()}.
+ * <li>Queries must not nest, so only one timer may be active per context at
+ * a time. All methods must be called with the owning context current.
+ * </ul>
+ */
+public class GpuFrameTimer {
+
+	public static final int DEFAULT_QUERY_COUNT = 4;
+
+	// GL3.GL_TIME_ELAPSED, identical for the timer query extensions
+	private static final int GL_TIME_ELAPSED = 0x88BF;
+
+	private final FrameHistogram histogram;
+
+	private final int[] queryIds;
+
+	private final boolean[] inFlight;
+
+	// Index of the oldest query in flight and of the next query to begin
+	private int readSlot;
+	private int writeSlot;
+
+	private boolean supported;
+
+	private boolean active;
+
+	private final int[] result = new int[1];
+
+	/**
+	 * @param histogram
+	 *            receives the measured GPU frame times.
+	 * @param queryCount
+	 *            number of frames a result may lag behind before frames go
+	 *            unmeasured.
+	 */
+	public GpuFrameTimer(FrameHistogram histogram, int queryCount) {
+		this.histogram = histogram;
+		this.queryIds = new int[Math.max(2, queryCount)];
+		this.inFlight = new boolean[queryIds.length];
+	}
+
+	/**
+	 * Creates the query objects if timer queries are supported.
+	 */
+	public void init(GL2ES2 gl2es2) {
+		supported = gl2es2.isGL2GL3() && (gl2es2.isExtensionAvailable("GL_ARB_timer_query") || gl2es2.isExtensionAvailable("GL_EXT_timer_query")); //$NON-NLS-1$ //$NON-NLS-2$
+		if (supported) {
+			gl2es2.glGenQueries(queryIds.length, queryIds, 0);
+		}
+	}
+
+	public boolean isSupported() {
+		return supported;
+	}
+
+	/**
+	 * Starts timing the GL commands of a frame, unless the query slot is
+	 * still waiting for its result.
+	 */
+	public void begin(GL2ES2 gl2es2) {
+		if (!supported) {
+			return;
+		}
+		collect(gl2es2);
+		if (inFlight[writeSlot]) {
+			return;
+		}
+		gl2es2.glBeginQuery(GL_TIME_ELAPSED, queryIds[writeSlot]);
+		active = true;
+	}
+
+	/**
+	 * Ends the timing started by {@link #begin(GL2ES2)}.
+	 */
+	public void end(GL2ES2 gl2es2) {
+		if (!active) {
+			return;
+		}
+		gl2es2.glEndQuery(GL_TIME_ELAPSED);
+		inFlight[writeSlot] = true;
+		writeSlot = (writeSlot + 1) % queryIds.length;
+		active = false;
+	}
+
+	/**
+	 * Records every result that became available, oldest first. Called by
+	 * {@link #begin(GL2ES2)}; never waits.
+	 */
+	public void collect(GL2ES2 gl2es2) {
+		if (!supported) {
+			return;
+		}
+		GL2GL3 gl2gl3 = gl2es2.getGL2GL3();
+		while (inFlight[readSlot]) {
+			int queryId = queryIds[readSlot];
+			gl2gl3.glGetQueryObjectiv(queryId, GL2ES2.GL_QUERY_RESULT_AVAILABLE, result, 0);
+			if (result[0] == 0) {
+				return;
+			}
+			// 32 bit result, unsigned nanoseconds
+			gl2gl3.glGetQueryObjectiv(queryId, GL2ES2.GL_QUERY_RESULT, result, 0);
+			histogram.record(result[0] & 0xffffffffL);
+			inFlight[readSlot] = false;
+			readSlot = (readSlot + 1) % queryIds.length;
+		}
+	}
+
+	/**
+	 * Deletes the query objects.
+	 */
+	public void dispose(GL2ES2 gl2es2) {
+		if (supported) {
+			if (active) {
+				gl2es2.glEndQuery(GL_TIME_ELAPSED);
+				active = false;
+			}
+			gl2es2.glDeleteQueries(queryIds.length, queryIds, 0);
+			supported = false;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The animated state of many small primitives (e.g. glyphs), kept as
+ * structure-of-arrays and updated in parallel.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Each instance drifts with a constant velocity, bouncing off the bounds,
+ * and spins around its center. Every property is one primitive
+ * {@code float[]}, so an update streams through memory linearly.
+ * <li>{@link #update} splits the instances into ranges of at least
+ * {@value #SPLIT_THRESHOLD} on a {@link ForkJoinPool}, and each range writes
+ * its per-instance attributes straight into the output buffer, e.g. a mapped
+ * GL buffer. Without a pool the update runs on the calling thread.
+ * <li>The attributes of an instance are {@value #FLOATS_PER_INSTANCE} floats:
+ * x, y, angle, scale, red, green, blue.
+ * </ul>
+ */
+public class InstanceField {
+
+	public static final int FLOATS_PER_INSTANCE = 7;
+
+	public static final int SPLIT_THRESHOLD = 16384;
+
+	private final int count;
+
+	private final float[] x;
+	private final float[] y;
+	private final float[] vx;
+	private final float[] vy;
+	private final float[] angle;
+	private final float[] spin;
+	private final float[] scale;
+	private final float[] red;
+	private final float[] green;
+	private final float[] blue;
+
+	/**
+	 * Places the instances at random within the unit square.
+	 *
+	 * @param seed
+	 *            seed of the random placement, velocities and colors.
+	 */
+	public InstanceField(int count, long seed) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Count must not be negative: " + count);
+		}
+		this.count = count;
+		x = new float[count];
+		y = new float[count];
+		vx = new float[count];
+		vy = new float[count];
+		angle = new float[count];
+		spin = new float[count];
+		scale = new float[count];
+		red = new float[count];
+		green = new float[count];
+		blue = new float[count];
+
+		Random random = new Random(seed);
+		for (int i = 0; i < count; i++) {
+			x[i] = random.nextFloat();
+			y[i] = random.nextFloat();
+			vx[i] = (random.nextFloat() - 0.5f) * 0.2f;
+			vy[i] = (random.nextFloat() - 0.5f) * 0.2f;
+			angle[i] = random.nextFloat() * (float) (2 * Math.PI);
+			spin[i] = (random.nextFloat() - 0.5f) * 4.0f;
+			scale[i] = 0.5f + random.nextFloat();
+			red[i] = random.nextFloat();
+			green[i] = random.nextFloat();
+			blue[i] = random.nextFloat();
+		}
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Advances every instance and writes its attributes to out.
+	 *
+	 * @param pool
+	 *            pool running the update in parallel, or null to update on
+	 *            the calling thread.
+	 * @param seconds
+	 *            time to advance by.
+	 * @param out
+	 *            receives {@link #FLOATS_PER_INSTANCE} floats per instance and
+	 *            copy, starting at index 0. Written with absolute puts; its
+	 *            position is not changed.
+	 * @param copies
+	 *            how many times the attributes of each instance are written in
+	 *            a row, 1 for instanced drawing or once per template vertex
+	 *            otherwise.
+	 */
+	public void update(ForkJoinPool pool, float seconds, FloatBuffer out, int copies) {
+		if (pool == null) {
+			update(0, count, seconds, out, copies);
+		} else {
+			pool.invoke(new UpdateAction(0, count, seconds, out, copies));
+		}
+	}
+
+	private void update(int from, int to, float seconds, FloatBuffer out, int copies) {
+		int index = from * FLOATS_PER_INSTANCE * copies;
+		for (int i = from; i < to; i++) {
+			// Drift, bouncing off the unit square
+			float px = x[i] + (vx[i] * seconds);
+			float py = y[i] + (vy[i] * seconds);
+			if ((px < 0) || (px > 1)) {
+				vx[i] = -vx[i];
+				px = Math.max(0, Math.min(1, px));
+			}
+			if ((py < 0) || (py > 1)) {
+				vy[i] = -vy[i];
+				py = Math.max(0, Math.min(1, py));
+			}
+			x[i] = px;
+			y[i] = py;
+			float a = angle[i] + (spin[i] * seconds);
+			angle[i] = a;
+
+			for (int c = 0; c < copies; c++) {
+				out.put(index++, px);
+				out.put(index++, py);
+				out.put(index++, a);
+				out.put(index++, scale[i]);
+				out.put(index++, red[i]);
+				out.put(index++, green[i]);
+				out.put(index++, blue[i]);
+			}
+		}
+	}
+
+	private final class UpdateAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final float seconds;
+		private final FloatBuffer out;
+		private final int copies;
+
+		UpdateAction(int from, int to, float seconds, FloatBuffer out, int copies) {
+			this.from = from;
+			this.to = to;
+			this.seconds = seconds;
+			this.out = out;
+			this.copies = copies;
+		}
+
+		@Override
+		protected void compute() {
+			if ((to - from) <= SPLIT_THRESHOLD) {
+				update(from, to, seconds, out, copies);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new UpdateAction(from, middle, seconds, out, copies), new UpdateAction(middle, to, seconds, out, copies));
+		}
+	}
+}
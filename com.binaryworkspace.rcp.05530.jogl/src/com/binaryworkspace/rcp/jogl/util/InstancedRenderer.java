@@ -0,0 +1,339 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
+
+import com.jogamp.common.nio.Buffers;
+
+/**
+ * Draws the instances of an {@link InstanceField} as copies of one template
+ * mesh, refreshing the per-instance attributes every frame.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The template mesh is uploaded once. The per-instance attributes are
+ * written by {@link InstanceField#update} straight into the instance buffer:
+ * the buffer is orphaned, then mapped with glMapBufferRange
+ * (GL_MAP_INVALIDATE_BUFFER_BIT), so the driver never waits for the previous
+ * frame to finish reading it. Without glMapBufferRange the attributes are
+ * written to a client buffer and uploaded with glBufferSubData.
+ * <li>With GL 3.3 / ES 3.0 (glVertexAttribDivisor and glDrawArraysInstanced)
+ * every frame is a single instanced draw call. Otherwise each instance's
+ * attributes are written once per template vertex and drawn with
+ * glDrawArrays, which costs more bandwidth but runs on any GL2ES2 context.
+ * <li>The shader program is built over the first frames by an
+ * {@link AsyncProgramBuilder}; until it linked nothing is drawn and the
+ * instances don't advance. {@link #setAsyncBuild(boolean)} builds it in init
+ * instead.
+ * <li>All GL methods must be called with the owning context current.
+ * </ul>
+ */
+public class InstancedRenderer {
+
+	public static final String VERTEX_SHADER_SOURCE = "" //
+			+ "#ifdef GL_ES\n" //
+			+ "precision mediump float;\n" //
+			+ "#endif\n" //
+			+ "uniform mat4 uProjection;\n" //
+			+ "attribute vec2 aVertex;\n" //
+			+ "attribute vec4 aInstance;\n" // x, y, angle, scale
+			+ "attribute vec3 aColor;\n" //
+			+ "varying vec3 vColor;\n" //
+			+ "void main() {\n" //
+			+ "  float s = sin(aInstance.z);\n" //
+			+ "  float c = cos(aInstance.z);\n" //
+			+ "  vec2 position = aInstance.xy + (mat2(c, s, -s, c) * aVertex) * aInstance.w;\n" //
+			+ "  vColor = aColor;\n" //
+			+ "  gl_Position = uProjection * vec4(position, 0.0, 1.0);\n" //
+			+ "}\n";
+
+	private static final int INSTANCE_STRIDE_BYTES = InstanceField.FLOATS_PER_INSTANCE * Buffers.SIZEOF_FLOAT;
+
+	private static final int INSTANCE_COMPONENTS = 4;
+
+	private static final int COLOR_COMPONENTS = 3;
+
+	private final float[] template;
+
+	private final int templateVertexCount;
+
+	private final ShaderProgramCache programCache;
+
+	private final float[] projection = new float[16];
+
+	private boolean projectionModified = true;
+
+	private boolean asyncBuild = true;
+
+	// Null if built synchronously
+	private AsyncProgramBuilder programBuilder;
+
+	private int programVersion;
+
+	// GL state
+	private int programId;
+	private int templateVboId;
+	private int instanceVboId;
+	private int vertexLocation;
+	private int instanceLocation;
+	private int colorLocation;
+	private int projectionLocation;
+	private boolean instanced;
+	private boolean mapped;
+
+	// Vertices of the template repeated for the non instanced path
+	private int repeatedTemplateCount;
+
+	// Client side attributes when the buffer can't be mapped
+	private FloatBuffer clientAttributes;
+
+	/**
+	 * @param template
+	 *            x, y pairs of the template mesh, drawn as GL_TRIANGLES around
+	 *            each instance's position.
+	 * @param programCache
+	 *            cache the shader program is acquired from, or null to compile
+	 *            a private program.
+	 */
+	public InstancedRenderer(float[] template, ShaderProgramCache programCache) {
+		if ((template.length == 0) || ((template.length % 6) != 0)) {
+			throw new IllegalArgumentException("The template must hold whole triangles of x, y pairs");
+		}
+		this.template = template.clone();
+		this.templateVertexCount = template.length / 2;
+		this.programCache = programCache;
+		GL2ES2_Util.ortho2D(projection, 0, 1, 0, 1);
+	}
+
+	/**
+	 * Starts building the shader program, creates the buffers, and picks the
+	 * instanced or the fallback path.
+	 *
+	 * @throws RuntimeException
+	 *             if the shader program fails to compile or link when built
+	 *             synchronously.
+	 */
+	public void init(GL2ES2 gl2es2) {
+		if (asyncBuild) {
+			// Set by the first draw after the builder linked the program
+			programBuilder = new AsyncProgramBuilder(programCache);
+			programBuilder.request(VERTEX_SHADER_SOURCE, VertexBatchRenderer.FRAGMENT_SHADER_SOURCE);
+			programId = 0;
+			programVersion = -1;
+		} else {
+			if (programCache != null) {
+				programId = programCache.acquire(gl2es2, VERTEX_SHADER_SOURCE, VertexBatchRenderer.FRAGMENT_SHADER_SOURCE);
+			} else {
+				programId = GL2ES2_Util.createProgram(gl2es2, VERTEX_SHADER_SOURCE, VertexBatchRenderer.FRAGMENT_SHADER_SOURCE);
+			}
+			lookupLocations(gl2es2);
+		}
+
+		instanced = gl2es2.isGL3ES3();
+		mapped = gl2es2.isFunctionAvailable("glMapBufferRange");
+
+		int[] ids = new int[2];
+		gl2es2.glGenBuffers(2, ids, 0);
+		templateVboId = ids[0];
+		instanceVboId = ids[1];
+		repeatedTemplateCount = 0;
+		if (instanced) {
+			gl2es2.glBindBuffer(GL.GL_ARRAY_BUFFER, templateVboId);
+			gl2es2.glBufferData(GL.GL_ARRAY_BUFFER, template.length * Buffers.SIZEOF_FLOAT, Buffers.newDirectFloatBuffer(template), GL.GL_STATIC_DRAW);
+			gl2es2.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+		}
+		projectionModified = true;
+	}
+
+	/**
+	 * @param asyncBuild
+	 *            false to build the program in {@link #init(GL2ES2)}, waiting
+	 *            for the driver. Must be set before {@link #init(GL2ES2)}.
+	 */
+	public void setAsyncBuild(boolean asyncBuild) {
+		this.asyncBuild = asyncBuild;
+	}
+
+	/**
+	 * @return true until the program built over several frames linked.
+	 */
+	public boolean isProgramPending() {
+		return programId == 0;
+	}
+
+	/**
+	 * @return true if instances are drawn with a single instanced draw call.
+	 */
+	public boolean isInstanced() {
+		return instanced;
+	}
+
+	/**
+	 * @return true if the instance buffer is written through glMapBufferRange.
+	 */
+	public boolean isMapped() {
+		return mapped;
+	}
+
+	/**
+	 * @param matrix
+	 *            column major 4x4 projection matrix. Defaults to the unit
+	 *            square, where {@link InstanceField} places its instances.
+	 */
+	public void setProjection(float[] matrix) {
+		System.arraycopy(matrix, 0, projection, 0, 16);
+		projectionModified = true;
+	}
+
+	/**
+	 * Advances the instances by the given time and draws them.
+	 *
+	 * @param pool
+	 *            pool updating the instances in parallel, or null to update
+	 *            on the calling thread.
+	 * @throws RuntimeException
+	 *             if the shader program failed to compile or link.
+	 */
+	public void draw(GL2ES2 gl2es2, InstanceField field, ForkJoinPool pool, float seconds) {
+		if (programBuilder != null) {
+			updateProgram(gl2es2);
+			if (programId == 0) {
+				return;
+			}
+		}
+		int count = field.getCount();
+		if (count == 0) {
+			return;
+		}
+		int copies = instanced ? 1 : templateVertexCount;
+		if (!instanced) {
+			ensureRepeatedTemplate(gl2es2, count);
+		}
+
+		// Orphan the instance buffer, then fill it
+		long sizeBytes = (long) count * copies * INSTANCE_STRIDE_BYTES;
+		gl2es2.glBindBuffer(GL.GL_ARRAY_BUFFER, instanceVboId);
+		gl2es2.glBufferData(GL.GL_ARRAY_BUFFER, sizeBytes, null, GL2ES2.GL_STREAM_DRAW);
+		ByteBuffer mappedAttributes = mapped ? gl2es2.glMapBufferRange(GL.GL_ARRAY_BUFFER, 0, sizeBytes, GL.GL_MAP_WRITE_BIT | GL.GL_MAP_INVALIDATE_BUFFER_BIT) : null;
+		if (mappedAttributes != null) {
+			try {
+				field.update(pool, seconds, mappedAttributes.order(ByteOrder.nativeOrder()).asFloatBuffer(), copies);
+			} finally {
+				gl2es2.glUnmapBuffer(GL.GL_ARRAY_BUFFER);
+			}
+		} else {
+			FloatBuffer attributes = getClientAttributes((int) (sizeBytes / Buffers.SIZEOF_FLOAT));
+			field.update(pool, seconds, attributes, copies);
+			gl2es2.glBufferSubData(GL.GL_ARRAY_BUFFER, 0, sizeBytes, attributes);
+		}
+
+		gl2es2.glUseProgram(programId);
+		boolean ownsUniforms = (programCache == null) || programCache.claimUniforms(gl2es2, programId, this);
+		if (projectionModified || !ownsUniforms) {
+			gl2es2.glUniformMatrix4fv(projectionLocation, 1, false, projection, 0);
+			projectionModified = false;
+		}
+
+		// Per-instance attributes, from the bound instance buffer
+		gl2es2.glEnableVertexAttribArray(instanceLocation);
+		gl2es2.glEnableVertexAttribArray(colorLocation);
+		gl2es2.glVertexAttribPointer(instanceLocation, INSTANCE_COMPONENTS, GL.GL_FLOAT, false, INSTANCE_STRIDE_BYTES, 0L);
+		gl2es2.glVertexAttribPointer(colorLocation, COLOR_COMPONENTS, GL.GL_FLOAT, false, INSTANCE_STRIDE_BYTES, INSTANCE_COMPONENTS * Buffers.SIZEOF_FLOAT);
+
+		// Template vertices
+		gl2es2.glBindBuffer(GL.GL_ARRAY_BUFFER, templateVboId);
+		gl2es2.glEnableVertexAttribArray(vertexLocation);
+		gl2es2.glVertexAttribPointer(vertexLocation, 2, GL.GL_FLOAT, false, 0, 0L);
+
+		if (instanced) {
+			gl2es2.getGL3ES3().glVertexAttribDivisor(instanceLocation, 1);
+			gl2es2.getGL3ES3().glVertexAttribDivisor(colorLocation, 1);
+			gl2es2.getGL2ES3().glDrawArraysInstanced(GL.GL_TRIANGLES, 0, templateVertexCount, count);
+			gl2es2.getGL3ES3().glVertexAttribDivisor(instanceLocation, 0);
+			gl2es2.getGL3ES3().glVertexAttribDivisor(colorLocation, 0);
+		} else {
+			gl2es2.glDrawArrays(GL.GL_TRIANGLES, 0, count * templateVertexCount);
+		}
+
+		gl2es2.glDisableVertexAttribArray(vertexLocation);
+		gl2es2.glDisableVertexAttribArray(instanceLocation);
+		gl2es2.glDisableVertexAttribArray(colorLocation);
+		gl2es2.glUseProgram(0);
+		gl2es2.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Releases the buffers and the shader program.
+	 */
+	public void dispose(GL2ES2 gl2es2) {
+		if (templateVboId != 0) {
+			gl2es2.glDeleteBuffers(2, new int[] { templateVboId, instanceVboId }, 0);
+			templateVboId = 0;
+			instanceVboId = 0;
+		}
+		if (programBuilder != null) {
+			programBuilder.dispose(gl2es2);
+			programBuilder = null;
+			programId = 0;
+		} else if (programId != 0) {
+			if (programCache != null) {
+				programCache.release(gl2es2, programId);
+			} else {
+				gl2es2.glDeleteProgram(programId);
+			}
+			programId = 0;
+		}
+		clientAttributes = null;
+	}
+
+	private void updateProgram(GL2ES2 gl2es2) {
+		programBuilder.update(gl2es2);
+		RuntimeException failure = programBuilder.takeFailure();
+		if (failure != null) {
+			throw failure;
+		}
+		if (programBuilder.getVersion() != programVersion) {
+			programId = programBuilder.getProgram();
+			programVersion = programBuilder.getVersion();
+			lookupLocations(gl2es2);
+			projectionModified = true;
+		}
+	}
+
+	private void lookupLocations(GL2ES2 gl2es2) {
+		vertexLocation = gl2es2.glGetAttribLocation(programId, "aVertex");
+		instanceLocation = gl2es2.glGetAttribLocation(programId, "aInstance");
+		colorLocation = gl2es2.glGetAttribLocation(programId, "aColor");
+		projectionLocation = gl2es2.glGetUniformLocation(programId, "uProjection");
+	}
+
+	// Fallback path: the template repeated once per instance
+	private void ensureRepeatedTemplate(GL2ES2 gl2es2, int count) {
+		if (count <= repeatedTemplateCount) {
+			return;
+		}
+		FloatBuffer repeated = Buffers.newDirectFloatBuffer(count * template.length);
+		for (int i = 0; i < count; i++) {
+			repeated.put(template);
+		}
+		repeated.flip();
+		gl2es2.glBindBuffer(GL.GL_ARRAY_BUFFER, templateVboId);
+		gl2es2.glBufferData(GL.GL_ARRAY_BUFFER, repeated.remaining() * Buffers.SIZEOF_FLOAT, repeated, GL.GL_STATIC_DRAW);
+		gl2es2.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+		repeatedTemplateCount = count;
+	}
+
+	private FloatBuffer getClientAttributes(int floats) {
+		if ((clientAttributes == null) || (clientAttributes.capacity() < floats)) {
+			clientAttributes = Buffers.newDirectFloatBuffer(floats);
+		}
+		clientAttributes.clear();
+		clientAttributes.limit(floats);
+		return clientAttributes;
+	}
+}
@@ -0,0 +1,173 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * Read-only view of a binary file of samples, memory-mapped so that any
+ * sample can be read without loading the file.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The file holds little endian 32 bit floats, one per sample at a
+ * constant sample interval, e.g. a time series. Trailing bytes that don't
+ * form a whole sample are ignored.
+ * <li>Files of any size are mapped in segments of {@value #SEGMENT_SAMPLES}
+ * samples, since a single mapping is limited to 2 GB. Pages are loaded by the
+ * OS on first access and evicted under memory pressure, so the heap cost is
+ * independent of the file size.
+ * <li>Reads are thread safe. The mapping is released by the garbage
+ * collector once the file is no longer referenced; {@link #close()} only
+ * closes the channel.
+ * </ul>
+ */
+public class MappedSampleFile {
+
+	public static final int BYTES_PER_SAMPLE = 4;
+
+	// Samples per mapped segment, a power of two
+	public static final int SEGMENT_SAMPLES = 1 << 28;
+
+	private static final int SEGMENT_SHIFT = Integer.numberOfTrailingZeros(SEGMENT_SAMPLES);
+
+	private static final int SEGMENT_MASK = SEGMENT_SAMPLES - 1;
+
+	private final File file;
+
+	private final RandomAccessFile randomAccessFile;
+
+	private final long count;
+
+	private final FloatBuffer[] segments;
+
+	/**
+	 * Maps the file.
+	 *
+	 * @throws IOException
+	 *             if the file can't be opened or mapped.
+	 */
+	public MappedSampleFile(File file) throws IOException {
+		this.file = file;
+		randomAccessFile = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			count = channel.size() / BYTES_PER_SAMPLE;
+			segments = new FloatBuffer[(int) ((count + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+			for (int i = 0; i < segments.length; i++) {
+				long first = (long) i << SEGMENT_SHIFT;
+				long samples = Math.min(SEGMENT_SAMPLES, count - first);
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, first * BYTES_PER_SAMPLE, samples * BYTES_PER_SAMPLE).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+			}
+		} catch (IOException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the number of samples in the file.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @param index
+	 *            index of the sample, from 0 to {@link #getCount()} - 1.
+	 */
+	public float get(long index) {
+		return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+	}
+
+	/**
+	 * Writes the minimum and maximum of a range of samples to result.
+	 *
+	 * @param from
+	 *            first sample, inclusive.
+	 * @param to
+	 *            last sample, exclusive. Must be greater than from.
+	 * @param result
+	 *            receives the minimum at offset and the maximum at offset + 1.
+	 */
+	public void minMax(long from, long to, float[] result, int offset) {
+		float min = Float.POSITIVE_INFINITY;
+		float max = Float.NEGATIVE_INFINITY;
+		long index = from;
+		while (index < to) {
+			// Scan one segment at a time with int indices
+			FloatBuffer segment = segments[(int) (index >>> SEGMENT_SHIFT)];
+			int start = (int) (index & SEGMENT_MASK);
+			int end = (int) Math.min(SEGMENT_SAMPLES, start + (to - index));
+			for (int i = start; i < end; i++) {
+				float value = segment.get(i);
+				if (value < min) {
+					min = value;
+				}
+				if (value > max) {
+					max = value;
+				}
+			}
+			index += end - start;
+		}
+		result[offset] = min;
+		result[offset + 1] = max;
+	}
+
+	/**
+	 * Writes a file of synthetic samples: a few overlaid waves with noise and
+	 * rare spikes, so each decimation level looks different.
+	 *
+	 * @throws IOException
+	 *             if the file can't be written.
+	 */
+	public static void writeSynthetic(File file, long count, long seed) throws IOException {
+		Random random = new Random(seed);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+		try (RandomAccessFile output = new RandomAccessFile(file, "rw")) { //$NON-NLS-1$
+			FileChannel channel = output.getChannel();
+			channel.truncate(0);
+			for (long i = 0; i < count; i++) {
+				double t = (double) i / count;
+				double value = (0.5 * Math.sin(t * 2 * Math.PI * 3)) + (0.2 * Math.sin(t * 2 * Math.PI * 1000)) + (0.05 * random.nextGaussian());
+				if (random.nextInt(100000) == 0) {
+					value += random.nextGaussian();
+				}
+				buffer.putFloat((float) value);
+				if (!buffer.hasRemaining()) {
+					buffer.flip();
+					while (buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+					buffer.clear();
+				}
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Closes the file channel. Samples stay readable until the mapping is
+	 * garbage collected.
+	 */
+	public void close() throws IOException {
+		randomAccessFile.close();
+	}
+
+	@Override
+	public String toString() {
+		return "MappedSampleFile [file=" + file + ", count=" + count + "]";
+	}
+}
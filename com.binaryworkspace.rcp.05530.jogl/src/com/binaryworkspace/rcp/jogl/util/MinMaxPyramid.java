@@ -0,0 +1,331 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Min/max decimation levels of a {@link MappedSampleFile}, so that any range
+ * of samples can be reduced to one minimum and maximum per pixel in time
+ * proportional to the number of pixels rather than samples.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Level 0 holds the minimum and maximum of every
+ * 2^{@value #BASE_SHIFT} samples, and every level above merges
+ * 2^{@value #FANOUT_SHIFT} buckets of the level below, up to a single bucket
+ * for the whole file. The levels take about 8 bytes of heap per
+ * 2^{@value #BASE_SHIFT} samples; decimations finer than level 0 are scanned
+ * from the file directly.
+ * <li>{@link #build(Executor, int)} builds the levels in the background, one
+ * chunk of consecutive samples at a time on each worker. A chunk is usable as
+ * soon as it is done, and the levels above it are merged by whichever worker
+ * finishes their last chunk, so nothing ever waits for the whole file.
+ * <li>{@link #minMax(int, long, float[], int)} returns false for parts not
+ * built yet; callers draw what is available and try again once the
+ * progress listener ran.
+ * <li>All methods are thread safe.
+ * </ul>
+ */
+public class MinMaxPyramid {
+
+	// Samples per level 0 bucket, as a power of two
+	public static final int BASE_SHIFT = 10;
+
+	// Buckets merged per level, as a power of two
+	public static final int FANOUT_SHIFT = 3;
+
+	// Level whose buckets are the chunks built by one worker at a time
+	private static final int CHUNK_LEVEL = 3;
+
+	private final MappedSampleFile file;
+
+	private final long count;
+
+	private final Runnable progressListener;
+
+	private final int levelCount;
+
+	private final int chunkLevel;
+
+	// Minimum and maximum per bucket, interleaved, per level
+	private final float[][] minMax;
+
+	// Per level from the chunk level up: 0 once a bucket is built, else the
+	// children still building plus one
+	private final AtomicIntegerArray[] pending;
+
+	private final AtomicInteger nextChunk = new AtomicInteger();
+
+	private final AtomicInteger builtChunks = new AtomicInteger();
+
+	private volatile boolean cancelled;
+
+	private volatile Throwable failure;
+
+	/**
+	 * Allocates the levels for the file. Nothing is built until
+	 * {@link #build(Executor, int)}.
+	 *
+	 * @param progressListener
+	 *            run on a worker thread after each built chunk (e.g. to
+	 *            invalidate a view), or null.
+	 */
+	public MinMaxPyramid(MappedSampleFile file, Runnable progressListener) {
+		this.file = file;
+		this.count = file.getCount();
+		this.progressListener = progressListener;
+		if (((count + (1L << BASE_SHIFT) - 1) >>> BASE_SHIFT) > Integer.MAX_VALUE / 2) {
+			throw new IllegalArgumentException("Too many samples: " + count);
+		}
+
+		// Levels up to a single bucket
+		int levels = 1;
+		while (getBucketCount(getLevelShift(levels - 1)) > 1) {
+			levels++;
+		}
+		levelCount = (count == 0) ? 0 : levels;
+		chunkLevel = Math.min(CHUNK_LEVEL, levels - 1);
+		minMax = new float[levelCount][];
+		pending = new AtomicIntegerArray[levelCount];
+		for (int level = 0; level < levelCount; level++) {
+			int buckets = (int) getBucketCount(getLevelShift(level));
+			minMax[level] = new float[buckets * 2];
+			if (level == chunkLevel) {
+				pending[level] = new AtomicIntegerArray(buckets);
+				for (int i = 0; i < buckets; i++) {
+					pending[level].set(i, 1);
+				}
+			} else if (level > chunkLevel) {
+				int children = (int) getBucketCount(getLevelShift(level - 1));
+				pending[level] = new AtomicIntegerArray(buckets);
+				for (int i = 0; i < buckets; i++) {
+					pending[level].set(i, Math.min(1 << FANOUT_SHIFT, children - (i << FANOUT_SHIFT)) + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a pool of low priority daemon threads suited to building
+	 * pyramids.
+	 *
+	 * @param threads
+	 *            maximum number of chunks built concurrently.
+	 */
+	public static ExecutorService createBuildExecutor(int threads) {
+		final AtomicInteger threadCount = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Pyramid Builder " + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Starts building the levels, in sample order.
+	 *
+	 * @param executor
+	 *            runs the workers, see {@link #createBuildExecutor(int)}.
+	 * @param workers
+	 *            number of chunks built concurrently.
+	 */
+	public void build(Executor executor, int workers) {
+		for (int i = 0; i < workers; i++) {
+			executor.execute(new Runnable() {
+				public void run() {
+					buildChunks();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Stops building after the chunks currently in progress.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public MappedSampleFile getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the number of samples.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the number of buckets of 2^bucketShift samples covering all
+	 *         samples.
+	 */
+	public long getBucketCount(int bucketShift) {
+		return (count + (1L << bucketShift) - 1) >>> bucketShift;
+	}
+
+	/**
+	 * @return true once every level is built.
+	 */
+	public boolean isComplete() {
+		return getBuiltChunks() == getChunkCount();
+	}
+
+	/**
+	 * @return the number of chunks built so far, for progress reports.
+	 */
+	public int getBuiltChunks() {
+		return builtChunks.get();
+	}
+
+	/**
+	 * @return the number of chunks the samples are built in.
+	 */
+	public int getChunkCount() {
+		return (levelCount == 0) ? 0 : pending[chunkLevel].length();
+	}
+
+	/**
+	 * @return the exception that stopped the build, or null.
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Writes the minimum and maximum of one bucket of samples to result.
+	 *
+	 * @param bucketShift
+	 *            bucket size, as the power of two of the samples per bucket.
+	 *            Sizes below 2^{@value #BASE_SHIFT} are scanned from the file.
+	 * @param bucket
+	 *            index of the bucket, below {@link #getBucketCount(int)}.
+	 * @param result
+	 *            receives the minimum at offset and the maximum at offset + 1.
+	 * @return false if the bucket holds no samples, e.g. in an empty file, or
+	 *         if the part of the levels needed is not built yet; result is
+	 *         not written then.
+	 */
+	public boolean minMax(int bucketShift, long bucket, float[] result, int offset) {
+		if ((bucket < 0) || (bucket >= getBucketCount(bucketShift))) {
+			return false;
+		}
+		long from = bucket << bucketShift;
+		if (bucketShift < BASE_SHIFT) {
+			file.minMax(from, Math.min(count, from + (1L << bucketShift)), result, offset);
+			return true;
+		}
+
+		// The finest level whose buckets fit, merging up to a fanout of them
+		int level = Math.min(levelCount - 1, (bucketShift - BASE_SHIFT) / FANOUT_SHIFT);
+		int levelShift = getLevelShift(level);
+		int first = (int) (from >>> levelShift);
+		int last = (int) Math.min(getBucketCount(levelShift), (from + (1L << bucketShift) + (1L << levelShift) - 1) >>> levelShift);
+		for (int i = first; i < last; i++) {
+			if (!isBuilt(level, i)) {
+				return false;
+			}
+		}
+		mergeInto(minMax[level], first, last, result, offset);
+		return true;
+	}
+
+	/**
+	 * Writes the minimum and maximum of all samples to result.
+	 *
+	 * @return false until the levels are complete, or if there are no
+	 *         samples.
+	 */
+	public boolean totalMinMax(float[] result, int offset) {
+		return (levelCount > 0) && minMax(getLevelShift(levelCount - 1), 0, result, offset);
+	}
+
+	@Override
+	public String toString() {
+		return "MinMaxPyramid [samples=" + count + ", levels=" + levelCount + ", chunks=" + getBuiltChunks() + "/" + getChunkCount() + "]";
+	}
+
+	private boolean isBuilt(int level, int bucket) {
+		if (level >= chunkLevel) {
+			return pending[level].get(bucket) == 0;
+		}
+		return pending[chunkLevel].get(bucket >>> (FANOUT_SHIFT * (chunkLevel - level))) == 0;
+	}
+
+	private static int getLevelShift(int level) {
+		return BASE_SHIFT + (FANOUT_SHIFT * level);
+	}
+
+	private static void mergeInto(float[] source, int first, int last, float[] result, int offset) {
+		float min = Float.POSITIVE_INFINITY;
+		float max = Float.NEGATIVE_INFINITY;
+		for (int i = first; i < last; i++) {
+			min = Math.min(min, source[i * 2]);
+			max = Math.max(max, source[(i * 2) + 1]);
+		}
+		result[offset] = min;
+		result[offset + 1] = max;
+	}
+
+	// Worker Thread
+	private void buildChunks() {
+		int chunks = getChunkCount();
+		try {
+			int chunk;
+			while (!cancelled && ((chunk = nextChunk.getAndIncrement()) < chunks)) {
+				buildChunk(chunk);
+				builtChunks.incrementAndGet();
+				if (progressListener != null) {
+					progressListener.run();
+				}
+			}
+		} catch (RuntimeException | InternalError e) {
+			// InternalError if the file was truncated while mapped
+			failure = e;
+			cancelled = true;
+		}
+	}
+
+	// Worker Thread
+	private void buildChunk(int chunk) {
+		// Level 0 from the samples
+		int chunkShift = FANOUT_SHIFT * chunkLevel;
+		int first = chunk << chunkShift;
+		int last = (int) Math.min(getBucketCount(BASE_SHIFT), (long) (chunk + 1) << chunkShift);
+		for (int i = first; i < last; i++) {
+			long from = (long) i << BASE_SHIFT;
+			file.minMax(from, Math.min(count, from + (1 << BASE_SHIFT)), minMax[0], i * 2);
+		}
+
+		// Levels up to the chunk
+		for (int level = 1; level <= chunkLevel; level++) {
+			int childLast = last;
+			first >>>= FANOUT_SHIFT;
+			last = (last + (1 << FANOUT_SHIFT) - 1) >>> FANOUT_SHIFT;
+			for (int i = first; i < last; i++) {
+				mergeInto(minMax[level - 1], i << FANOUT_SHIFT, Math.min(childLast, (i + 1) << FANOUT_SHIFT), minMax[level], i * 2);
+			}
+		}
+		pending[chunkLevel].set(chunk, 0);
+
+		// Levels above, merged by the worker finishing their last child
+		int bucket = chunk;
+		for (int level = chunkLevel + 1; level < levelCount; level++) {
+			bucket >>>= FANOUT_SHIFT;
+			if (pending[level].decrementAndGet(bucket) != 1) {
+				return;
+			}
+			int children = minMax[level - 1].length / 2;
+			mergeInto(minMax[level - 1], bucket << FANOUT_SHIFT, Math.min(children, (bucket + 1) << FANOUT_SHIFT), minMax[level], bucket * 2);
+			pending[level].set(bucket, 0);
+		}
+	}
+}
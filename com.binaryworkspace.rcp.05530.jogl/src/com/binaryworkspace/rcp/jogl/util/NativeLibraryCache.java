@@ -0,0 +1,297 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.osgi.framework.Bundle;
+
+import com.jogamp.common.jvm.JNILibLoaderBase;
+
+/**
+ * Keeps the native libraries of the JOGL platform fragments unpacked in a
+ * persistent cache, and loads JOGL's libraries from there.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Each fragment gets its own directory below the cache root, named after
+ * its symbolic name, version and last modification, so an updated fragment
+ * never mixes with stale libraries.
+ * <li>Libraries are extracted once, each to a temporary file renamed into
+ * place, and their SHA-256 checksums recorded in {@value #CHECKSUMS_FILE},
+ * written last. Later starts only read and verify the cached files; a missing
+ * or corrupt file is extracted again.
+ * <li>{@link #load(File, String[])} loads the libraries through GlueGen's own
+ * loader, so they are bound to JOGL's class loader and JOGL finds them loaded
+ * instead of looking for them itself. GlueGen asks the class loader for the
+ * library path through reflection, which needs Java 8 (or --add-opens
+ * java.base/java.lang=ALL-UNNAMED); otherwise nothing is loaded here and JOGL
+ * loads its libraries as before.
+ * </ul>
+ */
+public class NativeLibraryCache {
+
+	public static final String CHECKSUMS_FILE = "checksums.properties"; //$NON-NLS-1$
+
+	/**
+	 * The libraries JOGL loads for desktop GL, NEWT and the AWT surfaces, in
+	 * load order. Those not shipped for the platform are skipped.
+	 */
+	public static final String[] JOGL_LIBRARIES = { "gluegen-rt", "nativewindow_awt", "nativewindow_x11", "nativewindow_win32", "nativewindow_macosx", "jogl_desktop", "newt" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+
+	private static final String DIGEST_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File root;
+
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	private int verifiedCount;
+
+	private int extractedCount;
+
+	private long extractedBytes;
+
+	/**
+	 * @param root
+	 *            directory holding the cache, created on first use.
+	 */
+	public NativeLibraryCache(File root) {
+		this.root = root;
+	}
+
+	/**
+	 * Makes sure the cache holds verified copies of the libraries a fragment
+	 * ships, extracting those missing or corrupt.
+	 *
+	 * @param fragment
+	 *            bundle with the libraries at its root.
+	 * @param libraryNames
+	 *            library names as passed to {@link System#loadLibrary(String)};
+	 *            those the fragment doesn't ship are skipped.
+	 * @return the cache directory of the fragment.
+	 *
+	 * @throws IOException
+	 *             if a library can't be extracted.
+	 */
+	public synchronized File install(Bundle fragment, String[] libraryNames) throws IOException {
+		File directory = new File(root, fragment.getSymbolicName() + '_' + fragment.getVersion() + '_' + Long.toHexString(fragment.getLastModified()));
+		Properties checksums = readChecksums(directory);
+		boolean modified = false;
+		for (String libraryName : libraryNames) {
+			for (String fileName : getFileNames(libraryName)) {
+				URL url = fragment.getEntry(fileName);
+				if (url == null) {
+					continue;
+				}
+				File file = new File(directory, fileName);
+				String checksum = checksums.getProperty(fileName);
+				if ((checksum != null) && checksum.equals(digest(file))) {
+					verifiedCount++;
+				} else {
+					checksums.setProperty(fileName, extract(url, file));
+					modified = true;
+				}
+				break;
+			}
+		}
+		if (modified) {
+			writeChecksums(directory, checksums);
+		}
+		return directory;
+	}
+
+	/**
+	 * Loads cached libraries into JOGL's class loader, in the given order.
+	 * Libraries JOGL already loaded count as loaded.
+	 *
+	 * @param directory
+	 *            cache directory returned by {@link #install}.
+	 * @return the names of the libraries loaded.
+	 */
+	public static List<String> load(final File directory, String[] libraryNames) {
+		// Only answers GlueGen's question for the library path
+		ClassLoader locator = new ClassLoader(NativeLibraryCache.class.getClassLoader()) {
+			@Override
+			protected String findLibrary(String libraryName) {
+				File file = getFile(directory, libraryName);
+				return (file != null) ? file.getAbsolutePath() : null;
+			}
+		};
+		List<String> loaded = new ArrayList<String>();
+		for (String libraryName : libraryNames) {
+			if ((getFile(directory, libraryName) != null) && GlueGenLoader.load(libraryName, locator)) {
+				loaded.add(libraryName);
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * @return the cached file of a library, or null if not cached.
+	 */
+	public static File getFile(File directory, String libraryName) {
+		for (String fileName : getFileNames(libraryName)) {
+			File file = new File(directory, fileName);
+			if (file.isFile()) {
+				return file;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the number of cached libraries found intact by all installs.
+	 */
+	public synchronized int getVerifiedCount() {
+		return verifiedCount;
+	}
+
+	/**
+	 * @return the number of libraries extracted by all installs.
+	 */
+	public synchronized int getExtractedCount() {
+		return extractedCount;
+	}
+
+	/**
+	 * @return the bytes written by all installs.
+	 */
+	public synchronized long getExtractedBytes() {
+		return extractedBytes;
+	}
+
+	public File getRoot() {
+		return root;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "NativeLibraryCache [root=" + root + ", verified=" + verifiedCount + ", extracted=" + extractedCount + ", extractedBytes=" + extractedBytes + "]";
+	}
+
+	// The platform's file names of a library; JOGL ships .jnilib on Mac OS X
+	private static String[] getFileNames(String libraryName) {
+		String fileName = System.mapLibraryName(libraryName);
+		if (fileName.endsWith(".dylib")) { //$NON-NLS-1$
+			return new String[] { fileName, "lib" + libraryName + ".jnilib" }; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return new String[] { fileName };
+	}
+
+	// Returns the checksum of the extracted file
+	private String extract(URL url, File file) throws IOException {
+		File directory = file.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create the native library cache: " + directory);
+		}
+		MessageDigest digest = createDigest();
+		File temporary = File.createTempFile(file.getName(), ".tmp", directory); //$NON-NLS-1$
+		try {
+			long bytes = 0;
+			try (InputStream in = url.openStream(); OutputStream out = new FileOutputStream(temporary)) {
+				int count;
+				while ((count = in.read(buffer)) > 0) {
+					digest.update(buffer, 0, count);
+					out.write(buffer, 0, count);
+					bytes += count;
+				}
+			}
+			move(temporary, file);
+			extractedCount++;
+			extractedBytes += bytes;
+		} finally {
+			if (temporary.exists() && !temporary.delete()) {
+				temporary.deleteOnExit();
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	// The checksum of a cached file, or null if missing
+	private String digest(File file) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+		MessageDigest digest = createDigest();
+		try (InputStream in = new FileInputStream(file)) {
+			int count;
+			while ((count = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, count);
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	private static Properties readChecksums(File directory) throws IOException {
+		Properties checksums = new Properties();
+		File file = new File(directory, CHECKSUMS_FILE);
+		if (file.isFile()) {
+			try (InputStream in = new FileInputStream(file)) {
+				checksums.load(in);
+			}
+		}
+		return checksums;
+	}
+
+	private static void writeChecksums(File directory, Properties checksums) throws IOException {
+		File temporary = File.createTempFile(CHECKSUMS_FILE, ".tmp", directory); //$NON-NLS-1$
+		try {
+			try (OutputStream out = new FileOutputStream(temporary)) {
+				checksums.store(out, DIGEST_ALGORITHM);
+			}
+			move(temporary, new File(directory, CHECKSUMS_FILE));
+		} finally {
+			if (temporary.exists() && !temporary.delete()) {
+				temporary.deleteOnExit();
+			}
+		}
+	}
+
+	// Another instance starting at the same time sees the old or the new file, never a partial one
+	private static void move(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+	// Reaches GlueGen's loader, which binds the libraries to JOGL's class loader
+	private static final class GlueGenLoader extends JNILibLoaderBase {
+
+		static boolean load(String libraryName, ClassLoader locator) {
+			return loadLibrary(libraryName, true, locator);
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GLProfile;
+
+import org.osgi.framework.Bundle;
+
+import com.jogamp.opengl.util.texture.TextureData;
+import com.jogamp.opengl.util.texture.TextureIO;
+
+import jogamp.opengl.util.jpeg.JPEGDecoder;
+import jogamp.opengl.util.pngj.ImageInfo;
+import jogamp.opengl.util.pngj.ImageLine;
+import jogamp.opengl.util.pngj.ImageLineHelper;
+import jogamp.opengl.util.pngj.PngReader;
+import jogamp.opengl.util.pngj.chunks.PngChunkPLTE;
+import jogamp.opengl.util.pngj.chunks.PngChunkTRNS;
+
+/**
+ * Decodes PNG and JPEG images straight into pooled direct buffers, without
+ * AWT.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Uses the pngj and JPEG decoders exported by the JOGL bundle, avoiding the
+ * BufferedImage and AWTTextureIO heap copies and color model conversions of
+ * {@link GL2ES2_Util#createTexture}.
+ * <li>Pixels are written bottom row first as GL_RGB or GL_RGBA bytes (grey and
+ * indexed PNGs are expanded, samples scaled to 8 bit), so textures need no
+ * vertical flip.
+ * <li>The pixel buffer is returned to the {@link DirectBufferPool} when the
+ * {@link TextureData} is flushed, which {@link AsyncTextureLoader} and
+ * {@link TextureManager} do right after the upload. Other callers must flush
+ * the data themselves.
+ * <li>Thread-safe; each call uses its own decoder instances.
+ * </ul>
+ */
+public class NioImageDecoder {
+
+	private final DirectBufferPool bufferPool;
+
+	public NioImageDecoder(DirectBufferPool bufferPool) {
+		this.bufferPool = bufferPool;
+	}
+
+	/**
+	 * @return true if {@link #decode} handles images with the given file
+	 *         suffix.
+	 */
+	public static boolean isSupported(String suffix) {
+		return TextureIO.PNG.equalsIgnoreCase(suffix) || TextureIO.JPG.equalsIgnoreCase(suffix) || "jpeg".equalsIgnoreCase(suffix); //$NON-NLS-1$
+	}
+
+	/**
+	 * @return the lower case suffix of the given file path, or null if it has
+	 *         none.
+	 */
+	public static String getSuffix(String filePath) {
+		int index = filePath.lastIndexOf('.');
+		return (index < 0) ? null : filePath.substring(index + 1).toLowerCase();
+	}
+
+	/**
+	 * Decodes an image resource of a bundle, read through
+	 * {@link BundleResources}.
+	 *
+	 * @param glProfile
+	 *            profile of the context the texture data is meant for.
+	 * @param bundle
+	 *            bundle holding the image resource.
+	 * @param filePath
+	 *            bundle relative path of a PNG or JPEG image.
+	 * @return texture data backed by a pooled direct buffer.
+	 *
+	 * @throws IOException
+	 *             if the image can't be found or read, or its format is not
+	 *             supported.
+	 */
+	public TextureData decode(GLProfile glProfile, Bundle bundle, String filePath) throws IOException {
+		try (InputStream in = BundleResources.openStream(bundle, filePath)) {
+			return decode(glProfile, in, getSuffix(filePath));
+		}
+	}
+
+	/**
+	 * Decodes an image.
+	 *
+	 * @param glProfile
+	 *            profile of the context the texture data is meant for.
+	 * @param in
+	 *            image stream, not closed by this method.
+	 * @param suffix
+	 *            image file suffix (e.g. "png", "jpg").
+	 * @return texture data backed by a pooled direct buffer.
+	 *
+	 * @throws IOException
+	 *             if the image can't be read or its format is not supported.
+	 */
+	public TextureData decode(GLProfile glProfile, InputStream in, String suffix) throws IOException {
+		if (TextureIO.PNG.equalsIgnoreCase(suffix)) {
+			return decodePng(glProfile, in);
+		} else if (isSupported(suffix)) {
+			return decodeJpeg(glProfile, in);
+		}
+		throw new IOException("Unsupported image format: " + suffix);
+	}
+
+	private TextureData decodePng(GLProfile glProfile, InputStream in) throws IOException {
+		PngReader reader;
+		try {
+			reader = new PngReader(in, null);
+		} catch (RuntimeException e) {
+			// pngj reports malformed streams with unchecked exceptions
+			throw new IOException("Could not read the PNG image", e);
+		}
+		reader.setShouldCloseStream(false);
+		ImageInfo imageInfo = reader.imgInfo;
+		int width = imageInfo.cols;
+		int height = imageInfo.rows;
+
+		PngChunkPLTE palette = imageInfo.indexed ? reader.getMetadata().getPLTE() : null;
+		PngChunkTRNS transparency = imageInfo.indexed ? reader.getMetadata().getTRNS() : null;
+		boolean alpha = imageInfo.alpha || (transparency != null);
+		int bytesPerPixel = alpha ? 4 : 3;
+		int bitDepth = (palette != null) ? 8 : imageInfo.bitDepth;
+
+		ByteBuffer pixels = bufferPool.acquire(width * height * bytesPerPixel);
+		try {
+			int[] paletteRow = null;
+			for (int row = 0; row < height; row++) {
+				ImageLine line = reader.readRowInt(row);
+				if (imageInfo.packed && !line.samplesUnpacked) {
+					line = line.unpackToNewImageLine();
+				}
+				int[] samples = line.scanline;
+				int channels = imageInfo.channels;
+				if (palette != null) {
+					paletteRow = ImageLineHelper.palette2rgb(line, palette, transparency, paletteRow);
+					samples = paletteRow;
+					channels = bytesPerPixel;
+				}
+
+				// Bottom row first
+				int index = (height - 1 - row) * width * bytesPerPixel;
+				for (int x = 0, s = 0; x < width; x++, s += channels) {
+					if (imageInfo.greyscale) {
+						byte grey = to8Bit(samples[s], bitDepth);
+						pixels.put(index++, grey);
+						pixels.put(index++, grey);
+						pixels.put(index++, grey);
+						if (alpha) {
+							pixels.put(index++, to8Bit(samples[s + 1], bitDepth));
+						}
+					} else {
+						pixels.put(index++, to8Bit(samples[s], bitDepth));
+						pixels.put(index++, to8Bit(samples[s + 1], bitDepth));
+						pixels.put(index++, to8Bit(samples[s + 2], bitDepth));
+						if (alpha) {
+							pixels.put(index++, to8Bit(samples[s + 3], bitDepth));
+						}
+					}
+				}
+			}
+			reader.end();
+		} catch (RuntimeException e) {
+			bufferPool.release(pixels);
+			throw new IOException("Could not read the PNG image", e);
+		}
+		return createTextureData(glProfile, width, height, alpha ? GL.GL_RGBA : GL.GL_RGB, pixels);
+	}
+
+	private TextureData decodeJpeg(GLProfile glProfile, InputStream in) throws IOException {
+		JPEGDecoder decoder = new JPEGDecoder();
+		try {
+			decoder.parse(in);
+		} catch (RuntimeException e) {
+			throw new IOException("Could not read the JPEG image", e);
+		}
+		final int width = decoder.getWidth();
+		final int height = decoder.getHeight();
+		final ByteBuffer pixels = bufferPool.acquire(width * height * 3);
+		try {
+			decoder.getPixel(new JPEGDecoder.ColorSink() {
+				public TextureData.ColorSpace allocate(int width, int height, TextureData.ColorSpace sourceColorSpace, int sourceComponents) {
+					// Let the decoder convert to RGB
+					return TextureData.ColorSpace.RGB;
+				}
+
+				public void storeRGB(int x, int y, byte r, byte g, byte b) {
+					int index = ((height - 1 - y) * width + x) * 3;
+					pixels.put(index, r);
+					pixels.put(index + 1, g);
+					pixels.put(index + 2, b);
+				}
+
+				public void storeYCbCr(int x, int y, byte Y, byte Cb, byte Cr) {
+					// JFIF conversion
+					int luma = Y & 0xff;
+					int cb = (Cb & 0xff) - 128;
+					int cr = (Cr & 0xff) - 128;
+					storeRGB(x, y, clamp(luma + 1.402f * cr), clamp(luma - 0.344136f * cb - 0.714136f * cr), clamp(luma + 1.772f * cb));
+				}
+
+				public void store2(int x, int y, byte c1, byte c2) {
+					throw new RuntimeException("Two component JPEG images are not supported");
+				}
+			}, width, height);
+		} catch (RuntimeException e) {
+			bufferPool.release(pixels);
+			throw new IOException("Could not read the JPEG image", e);
+		}
+		return createTextureData(glProfile, width, height, GL.GL_RGB, pixels);
+	}
+
+	private TextureData createTextureData(GLProfile glProfile, int width, int height, int format, final ByteBuffer pixels) {
+		TextureData textureData = new TextureData(glProfile, format, width, height, 0, format, GL.GL_UNSIGNED_BYTE, false, false, false, pixels, new TextureData.Flusher() {
+			public void flush() {
+				bufferPool.release(pixels);
+			}
+		});
+		textureData.setAlignment(1);
+		return textureData;
+	}
+
+	private static byte to8Bit(int sample, int bitDepth) {
+		switch (bitDepth) {
+		case 8:
+			return (byte) sample;
+		case 16:
+			return (byte) (sample >> 8);
+		default:
+			// 1, 2 or 4 bit grey
+			return (byte) ((sample * 255) / ((1 << bitDepth) - 1));
+		}
+	}
+
+	private static byte clamp(float value) {
+		return (byte) Math.max(0, Math.min(255, Math.round(value)));
+	}
+}
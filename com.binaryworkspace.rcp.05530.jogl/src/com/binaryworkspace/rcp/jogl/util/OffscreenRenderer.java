@@ -0,0 +1,271 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.nio.ByteBuffer;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES3;
+import javax.media.opengl.GLAutoDrawable;
+import javax.media.opengl.GLCapabilities;
+import javax.media.opengl.GLContext;
+import javax.media.opengl.GLDrawableFactory;
+import javax.media.opengl.GLEventListener;
+import javax.media.opengl.GLException;
+import javax.media.opengl.GLOffscreenAutoDrawable;
+import javax.media.opengl.GLProfile;
+
+import com.jogamp.common.nio.Buffers;
+
+/**
+ * Renders a scene without a window and hands every frame to a consumer as a
+ * direct {@link ByteBuffer}, e.g. for server-side thumbnails or automated
+ * tests.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The scene is a plain {@link GLEventListener}, so scenes written for an
+ * AWT GLCanvas render here unchanged. The drawable is a
+ * {@link GLOffscreenAutoDrawable} (an FBO where available), which also works
+ * on Mesa/llvmpipe without a GPU.
+ * <li>Pixels are read back through a ring of pixel buffer objects:
+ * glReadPixels of frame N only queues a copy into a PBO, and the PBO is mapped
+ * once the ring comes round to it, so the readback of a frame overlaps with
+ * rendering the following ones. Frames are therefore delivered
+ * {@code pboCount - 1} calls to {@link #render()} late; {@link #flush()}
+ * delivers the rest. Without PBO support frames are read back synchronously.
+ * <li>Images are GL_RGBA bytes, bottom row first. The buffer handed to the
+ * consumer is only valid during the callback; consumers keeping the pixels
+ * must copy them.
+ * <li>Not thread-safe. All methods must be called on the same thread, which
+ * also receives the callbacks.
+ * </ul>
+ */
+public class OffscreenRenderer {
+
+	/**
+	 * Receives the frames read back by an {@link OffscreenRenderer}.
+	 */
+	public interface IImageConsumer {
+
+		/**
+		 * @param frameNumber
+		 *            zero based number of the frame, counted by
+		 *            {@link OffscreenRenderer#render()} calls.
+		 * @param pixels
+		 *            width * height GL_RGBA pixels, bottom row first. Only
+		 *            valid during this call.
+		 */
+		void imageAvailable(long frameNumber, int width, int height, ByteBuffer pixels);
+	}
+
+	public static final int DEFAULT_PBO_COUNT = 3;
+
+	private static final int BYTES_PER_PIXEL = 4;
+
+	private final GLOffscreenAutoDrawable drawable;
+
+	private final IImageConsumer consumer;
+
+	private final int pboCount;
+
+	// GL state, owned by the readback listener
+	private int[] pboIds;
+	private long[] pboFrameNumbers;
+	private int pboWidth;
+	private int pboHeight;
+	private int nextPbo;
+	private boolean pboSupported;
+	private ByteBuffer syncPixels;
+
+	private long frameNumber;
+
+	private final GLEventListener readbackListener = new GLEventListener() {
+		public void init(GLAutoDrawable glAutoDrawable) {
+			GL gl = glAutoDrawable.getGL();
+			// Mapped with glMapBufferRange, ES 3 has no glMapBuffer
+			pboSupported = gl.isGL2ES3() || (gl.isExtensionAvailable("GL_ARB_pixel_buffer_object") && gl.isExtensionAvailable("GL_ARB_map_buffer_range")); //$NON-NLS-1$ //$NON-NLS-2$
+			allocate(gl, glAutoDrawable.getWidth(), glAutoDrawable.getHeight());
+		}
+
+		public void reshape(GLAutoDrawable glAutoDrawable, int x, int y, int width, int height) {
+			GL gl = glAutoDrawable.getGL();
+			if ((width != pboWidth) || (height != pboHeight)) {
+				deliverAll(gl);
+				free(gl);
+				allocate(gl, width, height);
+			}
+		}
+
+		public void display(GLAutoDrawable glAutoDrawable) {
+			readback(glAutoDrawable.getGL());
+		}
+
+		public void dispose(GLAutoDrawable glAutoDrawable) {
+			GL gl = glAutoDrawable.getGL();
+			deliverAll(gl);
+			free(gl);
+		}
+	};
+
+	/**
+	 * Creates the offscreen drawable. No GL work happens until the first
+	 * {@link #render()}.
+	 *
+	 * @param glProfile
+	 *            profile of the offscreen context (e.g. GLProfile.get(GL2)).
+	 * @param scene
+	 *            draws the frames; its init/reshape/display/dispose are called
+	 *            as for an on-screen drawable.
+	 * @param consumer
+	 *            receives the rendered images.
+	 * @param pboCount
+	 *            PBOs in the readback ring; 1 reads every frame back
+	 *            synchronously.
+	 */
+	public OffscreenRenderer(GLProfile glProfile, int width, int height, GLEventListener scene, IImageConsumer consumer, int pboCount) {
+		if ((width <= 0) || (height <= 0)) {
+			throw new IllegalArgumentException("Size must be positive: " + width + "x" + height);
+		}
+		this.consumer = consumer;
+		this.pboCount = Math.max(1, pboCount);
+
+		GLCapabilities glCapabilities = new GLCapabilities(glProfile);
+		glCapabilities.setOnscreen(false);
+		glCapabilities.setDoubleBuffered(false);
+		glCapabilities.setAlphaBits(8);
+		drawable = GLDrawableFactory.getFactory(glProfile).createOffscreenAutoDrawable(null, glCapabilities, null, width, height);
+		drawable.addGLEventListener(scene);
+		// After the scene, so its display() has drawn the frame
+		drawable.addGLEventListener(readbackListener);
+	}
+
+	/**
+	 * Renders one frame and queues its readback. Delivers the oldest pending
+	 * frame to the consumer once the PBO ring is full.
+	 */
+	public void render() {
+		drawable.display();
+	}
+
+	/**
+	 * Delivers every frame still pending in the PBO ring, waiting for its
+	 * readback if necessary.
+	 */
+	public void flush() {
+		GLContext context = drawable.getContext();
+		if ((context == null) || (pboIds == null)) {
+			return;
+		}
+		if (context.makeCurrent() == GLContext.CONTEXT_NOT_CURRENT) {
+			throw new GLException("Could not make the offscreen context current");
+		}
+		try {
+			deliverAll(context.getGL());
+		} finally {
+			context.release();
+		}
+	}
+
+	/**
+	 * Resizes the drawable; pending frames are delivered first.
+	 */
+	public void setSize(int width, int height) {
+		flush();
+		drawable.setSize(width, height);
+	}
+
+	public int getWidth() {
+		return drawable.getWidth();
+	}
+
+	public int getHeight() {
+		return drawable.getHeight();
+	}
+
+	/**
+	 * Delivers pending frames, then disposes the scene and the drawable.
+	 */
+	public void dispose() {
+		drawable.destroy();
+	}
+
+	// GL thread
+	private void allocate(GL gl, int width, int height) {
+		pboWidth = width;
+		pboHeight = height;
+		nextPbo = 0;
+		int sizeBytes = width * height * BYTES_PER_PIXEL;
+		if (!pboSupported) {
+			syncPixels = Buffers.newDirectByteBuffer(sizeBytes);
+			return;
+		}
+		pboIds = new int[pboCount];
+		pboFrameNumbers = new long[pboCount];
+		gl.glGenBuffers(pboCount, pboIds, 0);
+		for (int i = 0; i < pboCount; i++) {
+			gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, pboIds[i]);
+			gl.glBufferData(GL2ES3.GL_PIXEL_PACK_BUFFER, sizeBytes, null, GL2ES3.GL_STREAM_READ);
+			pboFrameNumbers[i] = -1;
+		}
+		gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, 0);
+	}
+
+	private void free(GL gl) {
+		if (pboIds != null) {
+			gl.glDeleteBuffers(pboIds.length, pboIds, 0);
+			pboIds = null;
+		}
+		syncPixels = null;
+	}
+
+	private void readback(GL gl) {
+		gl.glPixelStorei(GL.GL_PACK_ALIGNMENT, 1);
+		if (!pboSupported) {
+			syncPixels.clear();
+			gl.glReadPixels(0, 0, pboWidth, pboHeight, GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, syncPixels);
+			consumer.imageAvailable(frameNumber++, pboWidth, pboHeight, syncPixels);
+			return;
+		}
+
+		// Queue the copy of this frame
+		int pbo = nextPbo;
+		gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, pboIds[pbo]);
+		gl.glReadPixels(0, 0, pboWidth, pboHeight, GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, 0L);
+		gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, 0);
+		pboFrameNumbers[pbo] = frameNumber++;
+		nextPbo = (pbo + 1) % pboCount;
+
+		// Once the ring is full deliver the oldest frame, keeping
+		// pboCount - 1 frames in flight
+		if (pboFrameNumbers[nextPbo] >= 0) {
+			deliver(gl, nextPbo);
+		}
+	}
+
+	private void deliverAll(GL gl) {
+		if (pboIds == null) {
+			return;
+		}
+		// Oldest first
+		for (int i = 0; i < pboCount; i++) {
+			int pbo = (nextPbo + i) % pboCount;
+			if (pboFrameNumbers[pbo] >= 0) {
+				deliver(gl, pbo);
+			}
+		}
+	}
+
+	private void deliver(GL gl, int pbo) {
+		gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, pboIds[pbo]);
+		ByteBuffer pixels = gl.glMapBufferRange(GL2ES3.GL_PIXEL_PACK_BUFFER, 0, pboWidth * pboHeight * BYTES_PER_PIXEL, GL.GL_MAP_READ_BIT);
+		long pboFrameNumber = pboFrameNumbers[pbo];
+		pboFrameNumbers[pbo] = -1;
+		try {
+			if (pixels != null) {
+				consumer.imageAvailable(pboFrameNumber, pboWidth, pboHeight, pixels);
+			}
+		} finally {
+			gl.glUnmapBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER);
+			gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, 0);
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Feeds the sources of a vertex and a fragment shader file of a bundle to an
+ * {@link AsyncProgramBuilder}, and again whenever either file is saved.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Files are read on the watcher's own daemon thread; frames only ever
+ * see the finished sources through {@link AsyncProgramBuilder#request}, so
+ * editing a shader never stalls a frame, and a shader that fails to compile
+ * leaves the previous program in use.
+ * <li>Changes are watched with a {@link WatchService} when the bundle is
+ * unpacked on disk, e.g. when launched from the workspace. Otherwise the
+ * sources are read once.
+ * <li>Bursts of change events, as written by editors saving through a
+ * temporary file, are coalesced into one reload after
+ * {@value #SETTLE_MILLIS} ms without events.
+ * <li>Enabled by the {@value #HOT_RELOAD_PROPERTY} system property, see
+ * {@link #isEnabled()}.
+ * </ul>
+ */
+public class ShaderFileWatcher {
+
+	public static final String HOT_RELOAD_PROPERTY = "com.binaryworkspace.rcp.jogl.shaderHotReload"; //$NON-NLS-1$
+
+	public static final long SETTLE_MILLIS = 100;
+
+	private final Bundle bundle;
+
+	private final String vertexPath;
+
+	private final String fragmentPath;
+
+	private final AsyncProgramBuilder builder;
+
+	private final Runnable reloadListener;
+
+	private volatile WatchService watchService;
+
+	private volatile Thread thread;
+
+	private volatile IOException failure;
+
+	/**
+	 * @param vertexPath
+	 *            bundle relative path of the vertex shader source.
+	 * @param fragmentPath
+	 *            bundle relative path of the fragment shader source.
+	 * @param builder
+	 *            receives the sources.
+	 * @param reloadListener
+	 *            run on the watcher thread after new sources were requested
+	 *            (e.g. to invalidate a view), or null.
+	 */
+	public ShaderFileWatcher(Bundle bundle, String vertexPath, String fragmentPath, AsyncProgramBuilder builder, Runnable reloadListener) {
+		this.bundle = bundle;
+		this.vertexPath = vertexPath;
+		this.fragmentPath = fragmentPath;
+		this.builder = builder;
+		this.reloadListener = reloadListener;
+	}
+
+	/**
+	 * @return true if shaders should be reloaded from their files, as set by
+	 *         the {@value #HOT_RELOAD_PROPERTY} system property.
+	 */
+	public static boolean isEnabled() {
+		return Boolean.getBoolean(HOT_RELOAD_PROPERTY);
+	}
+
+	/**
+	 * Reads the sources and starts watching them. Has no effect if already
+	 * started.
+	 */
+	public synchronized void start() {
+		if (thread != null) {
+			return;
+		}
+		thread = new Thread(new Runnable() {
+			public void run() {
+				watch();
+			}
+		}, "Shader Watcher: " + vertexPath);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops watching. Returns without waiting for the watcher thread to end.
+	 */
+	public synchronized void dispose() {
+		thread = null;
+		WatchService service = watchService;
+		if (service != null) {
+			try {
+				service.close();
+			} catch (IOException e) {
+				// Ignore, the thread ends with the next event
+			}
+		}
+	}
+
+	/**
+	 * @return true while the files are watched for changes; false before the
+	 *         first read or if the bundle is not unpacked on disk.
+	 */
+	public boolean isWatching() {
+		return watchService != null;
+	}
+
+	/**
+	 * @return the error of the last failed read, or null.
+	 */
+	public IOException getFailure() {
+		return failure;
+	}
+
+	@Override
+	public String toString() {
+		return "ShaderFileWatcher [vertexPath=" + vertexPath + ", fragmentPath=" + fragmentPath + ", watching=" + isWatching() + "]";
+	}
+
+	// Watcher Thread
+	private void watch() {
+		File vertexFile = BundleResources.getFile(bundle, vertexPath);
+		File fragmentFile = BundleResources.getFile(bundle, fragmentPath);
+		try {
+			if ((vertexFile != null) && (fragmentFile != null)) {
+				watchService = FileSystems.getDefault().newWatchService();
+				vertexFile.getParentFile().toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+				if (!fragmentFile.getParentFile().equals(vertexFile.getParentFile())) {
+					fragmentFile.getParentFile().toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+				}
+			}
+		} catch (IOException e) {
+			failure = e;
+		}
+		reload();
+
+		WatchService service = watchService;
+		if (service == null) {
+			return;
+		}
+		try {
+			while (thread == Thread.currentThread()) {
+				WatchKey key = service.take();
+				boolean changed = false;
+				do {
+					changed |= isShaderEvent(key, vertexFile, fragmentFile);
+					key.reset();
+					// Wait for the burst of events of a save to settle
+				} while ((key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+				if (changed && (thread == Thread.currentThread())) {
+					reload();
+				}
+			}
+		} catch (ClosedWatchServiceException | InterruptedException e) {
+			// Disposed
+		} finally {
+			watchService = null;
+			try {
+				service.close();
+			} catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+
+	private static boolean isShaderEvent(WatchKey key, File vertexFile, File fragmentFile) {
+		boolean shaderEvent = false;
+		Path directory = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.context() instanceof Path) {
+				File file = directory.resolve((Path) event.context()).toFile();
+				shaderEvent |= file.equals(vertexFile) || file.equals(fragmentFile);
+			}
+		}
+		return shaderEvent;
+	}
+
+	private void reload() {
+		try {
+			builder.request(read(vertexPath), read(fragmentPath));
+			failure = null;
+		} catch (IOException e) {
+			// e.g. read while being written; the next event retries
+			failure = e;
+			return;
+		}
+		if (reloadListener != null) {
+			reloadListener.run();
+		}
+	}
+
+	private String read(String filePath) throws IOException {
+		try (InputStream in = BundleResources.openStream(bundle, filePath)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = in.read(buffer)) > 0) {
+				out.write(buffer, 0, count);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,424 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GL4ES3;
+
+import com.jogamp.common.nio.Buffers;
+
+/**
+ * Caches linked shader programs so each vertex/fragment source pair is
+ * compiled once, and persists program binaries across workbench restarts.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Programs are keyed by a SHA-256 hash of the vertex source, the fragment
+ * source, GL_VENDOR and GL_RENDERER. The key is computed once per source pair
+ * and share group, so a cache hit is a map lookup. Linked programs are
+ * reference counted and shared by every caller using the same GL context, or
+ * a context of the same {@link GLShareGroup}.
+ * <li>If the context supports program binaries (ARB_get_program_binary,
+ * OES_get_program_binary or GL 4.1 / ES 3.0), the linked binary is written
+ * to the cache directory and loaded on the next start instead of compiling.
+ * <li>A binary rejected by the driver (e.g. after a driver update) is deleted
+ * and the program is compiled from source again.
+ * <li>{@link #acquire} compiles and links right away. An
+ * {@link AsyncProgramBuilder} instead takes cached programs with
+ * {@link #acquireCached}, and links the others itself over several frames
+ * before adding them with {@link #acquireLinked}.
+ * <li>All GL methods must be called with the owning context current.
+ * </ul>
+ */
+public class ShaderProgramCache {
+
+	private static final String BINARY_FILE_EXTENSION = ".bin"; //$NON-NLS-1$
+
+	// The format and length ints before the binary
+	private static final int BINARY_HEADER_BYTES = 8;
+
+	private static final class CachedProgram {
+		final int programId;
+		int referenceCount;
+		// Last caller that set the program's uniforms
+		Object uniformOwner;
+
+		CachedProgram(int programId) {
+			this.programId = programId;
+		}
+	}
+
+	private static final class SourcePair {
+		final String vertexSource;
+		final String fragmentSource;
+
+		SourcePair(String vertexSource, String fragmentSource) {
+			this.vertexSource = vertexSource;
+			this.fragmentSource = fragmentSource;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * vertexSource.hashCode()) + fragmentSource.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof SourcePair)) {
+				return false;
+			}
+			SourcePair other = (SourcePair) obj;
+			return vertexSource.equals(other.vertexSource) && fragmentSource.equals(other.fragmentSource);
+		}
+	}
+
+	// Programs and keys of one share group
+	private static final class SharedPrograms {
+		// Key -> program
+		final Map<String, CachedProgram> programs = new HashMap<String, CachedProgram>();
+		// Source pair -> key
+		final Map<SourcePair, String> keys = new HashMap<SourcePair, String>();
+	}
+
+	private final File binaryDirectory;
+
+	// Share group -> programs, guarded by this
+	private final Map<Object, SharedPrograms> programs = new WeakHashMap<Object, SharedPrograms>();
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong binaryLoadCount = new AtomicLong();
+	private final AtomicLong binaryRejectCount = new AtomicLong();
+
+	/**
+	 * @param binaryDirectory
+	 *            directory program binaries are persisted to (e.g. below the
+	 *            bundle state location), or null to only cache in memory.
+	 */
+	public ShaderProgramCache(File binaryDirectory) {
+		this.binaryDirectory = binaryDirectory;
+	}
+
+	/**
+	 * Returns a linked program for the given sources, compiling it only if
+	 * neither a cached program nor a stored binary is available. Each call
+	 * must be balanced by {@link #release(GL2ES2, int)}.
+	 *
+	 * @param gl2es2
+	 *            GL2ES2 pipeline object for the calling GLContext. Note, the
+	 *            provided gl2es2 instance must come for the current glcontext
+	 *            (e.g. glcanvas.setCurrent(), then glcontext.makeCurrent()).
+	 * @return int which is the linked program's id.
+	 *
+	 * @throws RuntimeException
+	 *             if a shader fails to compile or the program fails to link.
+	 */
+	public synchronized int acquire(GL2ES2 gl2es2, String vertexSource, String fragmentSource) {
+		int programId = acquireCached(gl2es2, vertexSource, fragmentSource);
+		if (programId != 0) {
+			return programId;
+		}
+
+		// Compile from source
+		programId = createProgram(gl2es2);
+		GL2ES2_Util.linkProgram(gl2es2, programId, vertexSource, fragmentSource);
+		return acquireLinked(gl2es2, vertexSource, fragmentSource, programId);
+	}
+
+	/**
+	 * Returns the linked program for the given sources if this share group
+	 * has one or a stored binary is accepted by the driver, never compiling.
+	 * A program returned must be balanced by {@link #release(GL2ES2, int)}.
+	 *
+	 * @return the program's id, or 0 if the sources must be compiled.
+	 */
+	public synchronized int acquireCached(GL2ES2 gl2es2, String vertexSource, String fragmentSource) {
+		SharedPrograms sharedPrograms = getSharedPrograms(gl2es2);
+		String key = getKey(sharedPrograms, gl2es2, vertexSource, fragmentSource);
+		Map<String, CachedProgram> contextPrograms = sharedPrograms.programs;
+
+		// Linked program in this context
+		CachedProgram cachedProgram = contextPrograms.get(key);
+		if (cachedProgram != null) {
+			hitCount.incrementAndGet();
+			cachedProgram.referenceCount++;
+			return cachedProgram.programId;
+		}
+
+		// Stored binary
+		int programId = isBinarySupported(gl2es2) ? loadBinary(gl2es2, key) : 0;
+		if (programId == 0) {
+			return 0;
+		}
+		hitCount.incrementAndGet();
+		cachedProgram = new CachedProgram(programId);
+		cachedProgram.referenceCount = 1;
+		contextPrograms.put(key, cachedProgram);
+		return programId;
+	}
+
+	/**
+	 * Creates an empty program for the caller to link, asking the driver to
+	 * keep its binary retrievable where binaries are persisted.
+	 */
+	public int createProgram(GL2ES2 gl2es2) {
+		int programId = gl2es2.glCreateProgram();
+		if (gl2es2.isGL4ES3() && isBinarySupported(gl2es2)) {
+			gl2es2.getGL4ES3().glProgramParameteri(programId, GL4ES3.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL.GL_TRUE);
+		}
+		return programId;
+	}
+
+	/**
+	 * Adds a program the caller linked from the given sources, e.g. one
+	 * created with {@link #createProgram(GL2ES2)} and built asynchronously,
+	 * and persists its binary. Should another caller have added the same
+	 * sources meanwhile, the given program is deleted and the cached one
+	 * returned. Must be balanced by {@link #release(GL2ES2, int)}.
+	 *
+	 * @return the id of the program to use.
+	 */
+	public synchronized int acquireLinked(GL2ES2 gl2es2, String vertexSource, String fragmentSource, int programId) {
+		SharedPrograms sharedPrograms = getSharedPrograms(gl2es2);
+		String key = getKey(sharedPrograms, gl2es2, vertexSource, fragmentSource);
+		Map<String, CachedProgram> contextPrograms = sharedPrograms.programs;
+		CachedProgram cachedProgram = contextPrograms.get(key);
+		if (cachedProgram != null) {
+			// Linked twice
+			gl2es2.glDeleteProgram(programId);
+			cachedProgram.referenceCount++;
+			return cachedProgram.programId;
+		}
+
+		missCount.incrementAndGet();
+		if (isBinarySupported(gl2es2)) {
+			storeBinary(gl2es2, key, programId);
+		}
+		cachedProgram = new CachedProgram(programId);
+		cachedProgram.referenceCount = 1;
+		contextPrograms.put(key, cachedProgram);
+		return programId;
+	}
+
+	/**
+	 * Releases a program obtained from {@link #acquire}. The program is deleted
+	 * once no caller references it anymore; its binary stays on disk.
+	 */
+	public synchronized void release(GL2ES2 gl2es2, int programId) {
+		Map<String, CachedProgram> contextPrograms = getSharedPrograms(gl2es2).programs;
+		for (Iterator<CachedProgram> iterator = contextPrograms.values().iterator(); iterator.hasNext();) {
+			CachedProgram cachedProgram = iterator.next();
+			if (cachedProgram.programId == programId) {
+				if (--cachedProgram.referenceCount == 0) {
+					gl2es2.glDeleteProgram(programId);
+					iterator.remove();
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Records the caller as the last one setting the uniforms of a program.
+	 * Uniform values are state of the program, so with a shared program
+	 * another caller may have overwritten them since.
+	 *
+	 * @param owner
+	 *            identifies the caller, e.g. the renderer using the program.
+	 * @return true if the uniforms were last set by owner and still hold its
+	 *         values, false if owner has to set them again.
+	 */
+	public synchronized boolean claimUniforms(GL2ES2 gl2es2, int programId, Object owner) {
+		for (CachedProgram cachedProgram : getSharedPrograms(gl2es2).programs.values()) {
+			if (cachedProgram.programId == programId) {
+				boolean owned = (cachedProgram.uniformOwner == owner);
+				cachedProgram.uniformOwner = owner;
+				return owned;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of requests served without compiling, either by a
+	 *         linked program or by a stored binary.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of requests compiled from source.
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return the number of programs restored from a stored binary.
+	 */
+	public long getBinaryLoadCount() {
+		return binaryLoadCount.get();
+	}
+
+	/**
+	 * @return the number of stored binaries the driver rejected.
+	 */
+	public long getBinaryRejectCount() {
+		return binaryRejectCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ShaderProgramCache [hits=" + hitCount + ", misses=" + missCount + ", binaryLoads=" + binaryLoadCount + ", binaryRejects=" + binaryRejectCount + "]";
+	}
+
+	private SharedPrograms getSharedPrograms(GL2ES2 gl2es2) {
+		Object shareGroup = GLShareGroup.of(gl2es2.getContext());
+		SharedPrograms sharedPrograms = programs.get(shareGroup);
+		if (sharedPrograms == null) {
+			sharedPrograms = new SharedPrograms();
+			programs.put(shareGroup, sharedPrograms);
+		}
+		return sharedPrograms;
+	}
+
+	// The contexts of a share group have the same vendor and renderer
+	private static String getKey(SharedPrograms sharedPrograms, GL2ES2 gl2es2, String vertexSource, String fragmentSource) {
+		SourcePair sourcePair = new SourcePair(vertexSource, fragmentSource);
+		String key = sharedPrograms.keys.get(sourcePair);
+		if (key == null) {
+			key = createKey(gl2es2, vertexSource, fragmentSource);
+			sharedPrograms.keys.put(sourcePair, key);
+		}
+		return key;
+	}
+
+	private boolean isBinarySupported(GL2ES2 gl2es2) {
+		if (binaryDirectory == null) {
+			return false;
+		}
+		if (!gl2es2.isGL4ES3() && !gl2es2.isExtensionAvailable("GL_ARB_get_program_binary") && !gl2es2.isExtensionAvailable("GL_OES_get_program_binary")) {
+			return false;
+		}
+		int[] formatCount = new int[1];
+		gl2es2.glGetIntegerv(GL2ES2.GL_NUM_PROGRAM_BINARY_FORMATS, formatCount, 0);
+		return formatCount[0] > 0;
+	}
+
+	// Returns 0 if no binary is stored or the driver rejected it
+	private int loadBinary(GL2ES2 gl2es2, String key) {
+		File file = new File(binaryDirectory, key + BINARY_FILE_EXTENSION);
+		if (!file.isFile()) {
+			return 0;
+		}
+
+		int format;
+		ByteBuffer binary;
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			format = in.readInt();
+			int length = in.readInt();
+			if ((length < 0) || (length > (file.length() - BINARY_HEADER_BYTES))) {
+				// Corrupt header, don't allocate what it claims
+				throw new IOException("Invalid binary length: " + length);
+			}
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			binary = Buffers.newDirectByteBuffer(bytes);
+		} catch (IOException e) {
+			// Truncated or unreadable, compile from source instead
+			file.delete();
+			return 0;
+		}
+
+		int programId = gl2es2.glCreateProgram();
+		gl2es2.glProgramBinary(programId, format, binary, binary.capacity());
+		int[] linkStatus = new int[1];
+		gl2es2.glGetProgramiv(programId, GL2ES2.GL_LINK_STATUS, linkStatus, 0);
+		if (linkStatus[0] == GL2ES2.GL_TRUE) {
+			binaryLoadCount.incrementAndGet();
+			return programId;
+		}
+
+		// Rejected by the driver, drop it so it gets replaced
+		binaryRejectCount.incrementAndGet();
+		gl2es2.glDeleteProgram(programId);
+		file.delete();
+		return 0;
+	}
+
+	private void storeBinary(GL2ES2 gl2es2, String key, int programId) {
+		int[] length = new int[1];
+		gl2es2.glGetProgramiv(programId, GL2ES2.GL_PROGRAM_BINARY_LENGTH, length, 0);
+		if (length[0] <= 0) {
+			return;
+		}
+		ByteBuffer binary = Buffers.newDirectByteBuffer(length[0]);
+		int[] format = new int[1];
+		gl2es2.glGetProgramBinary(programId, length[0], length, 0, format, 0, binary);
+		byte[] bytes = new byte[length[0]];
+		binary.get(bytes);
+
+		// Write to a temporary file first so readers never see partial binaries
+		if (!binaryDirectory.isDirectory() && !binaryDirectory.mkdirs()) {
+			return;
+		}
+		File file = new File(binaryDirectory, key + BINARY_FILE_EXTENSION);
+		File tempFile = new File(binaryDirectory, key + ".tmp"); //$NON-NLS-1$
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile))) {
+			out.writeInt(format[0]);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} catch (IOException e) {
+			// Persisting is an optimization only
+			tempFile.delete();
+			return;
+		}
+		file.delete();
+		if (!tempFile.renameTo(file)) {
+			tempFile.delete();
+		}
+	}
+
+	private static String createKey(GL2ES2 gl2es2, String vertexSource, String fragmentSource) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256 is not available", e);
+		}
+		update(digest, vertexSource);
+		update(digest, fragmentSource);
+		update(digest, gl2es2.glGetString(GL.GL_VENDOR));
+		update(digest, gl2es2.glGetString(GL.GL_RENDERER));
+
+		StringBuilder sb = new StringBuilder();
+		for (byte b : digest.digest()) {
+			sb.append(String.format("%02x", b & 0xff));
+		}
+		return sb.toString();
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		if (value != null) {
+			digest.update(value.getBytes(StandardCharsets.UTF_8));
+		}
+		// Separator so ("ab", "c") and ("a", "bc") differ
+		digest.update((byte) 0);
+	}
+}
@@ -0,0 +1,241 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Advances a model with a fixed timestep on its own thread, independent of
+ * the frame rate.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The model is stepped {@code stepsPerSecond} times per second of wall
+ * clock time, so model time and simulation cost don't depend on how often or
+ * how late frames are drawn.
+ * <li>Renderers call {@link #sample(Object)} once per frame. It interpolates
+ * between the last two steps by how far the current step period has
+ * progressed, so motion stays smooth at any refresh rate at the cost of one
+ * step of latency.
+ * <li>If the model falls more than {@value #MAX_CATCH_UP_STEPS} steps behind
+ * (e.g. the machine was suspended) the missed steps are dropped instead of
+ * being run back to back.
+ * <li>Steps are handed to the renderer through a {@link TripleBuffer}, so
+ * neither the simulation nor the renderer ever blocks on the other, and the
+ * renderer always sees a complete step.
+ * <li>States are preallocated; stepping and sampling don't allocate.
+ * </ul>
+ *
+ * @param <S>
+ *            type of the model state.
+ */
+public class SimulationLoop<S> {
+
+	/**
+	 * The model advanced by a {@link SimulationLoop}.
+	 *
+	 * @param <S>
+	 *            type of the model state.
+	 */
+	public interface IModel<S> {
+
+		/**
+		 * @return a new state holding the initial values of the model.
+		 */
+		S createState();
+
+		/**
+		 * Copies all values of source into target.
+		 */
+		void copy(S source, S target);
+
+		/**
+		 * Advances the state in place by one step. Called on the simulation
+		 * thread.
+		 */
+		void step(S state, double stepSeconds);
+
+		/**
+		 * Writes the state between previous and current into result.
+		 *
+		 * @param alpha
+		 *            0 for previous, 1 for current.
+		 */
+		void interpolate(S previous, S current, double alpha, S result);
+	}
+
+	public static final int DEFAULT_STEPS_PER_SECOND = 60;
+
+	public static final int MAX_CATCH_UP_STEPS = 5;
+
+	private final IModel<S> model;
+
+	private final long stepNanos;
+
+	private final String name;
+
+	/**
+	 * The two states a renderer interpolates between.
+	 */
+	private static final class Step<S> {
+		final S previous;
+		final S current;
+		// When the current state became due
+		long startNanos;
+
+		Step(IModel<S> model, long startNanos) {
+			this.previous = model.createState();
+			this.current = model.createState();
+			this.startNanos = startNanos;
+		}
+	}
+
+	private final TripleBuffer<Step<S>> steps;
+
+	// Written by the simulation thread only
+	private volatile long stepCount;
+
+	private volatile Thread thread;
+
+	private volatile boolean running;
+
+	private volatile Throwable failure;
+
+	/**
+	 * @param name
+	 *            names the simulation thread.
+	 * @param model
+	 *            the model to advance.
+	 * @param stepsPerSecond
+	 *            fixed step rate, e.g. {@link #DEFAULT_STEPS_PER_SECOND}.
+	 */
+	public SimulationLoop(String name, IModel<S> model, int stepsPerSecond) {
+		if (stepsPerSecond <= 0) {
+			throw new IllegalArgumentException("Steps per second must be positive: " + stepsPerSecond);
+		}
+		this.name = name;
+		this.model = model;
+		this.stepNanos = TimeUnit.SECONDS.toNanos(1) / stepsPerSecond;
+		long now = System.nanoTime();
+		steps = new TripleBuffer<Step<S>>(new Step<S>(model, now), new Step<S>(model, now), new Step<S>(model, now));
+	}
+
+	/**
+	 * Starts stepping the model. Has no effect while running.
+	 */
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				runSteps();
+			}
+		}, "Simulation: " + name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops stepping the model; the last state is kept. Waits for the
+	 * simulation thread to end, at most the time of one step, so a following
+	 * {@link #start()} never runs two threads publishing steps at once.
+	 */
+	public synchronized void stop() {
+		running = false;
+		Thread stopped = thread;
+		thread = null;
+		if ((stopped == null) || (stopped == Thread.currentThread())) {
+			return;
+		}
+		LockSupport.unpark(stopped);
+		boolean interrupted = false;
+		try {
+			while (stopped.isAlive()) {
+				try {
+					stopped.join();
+				} catch (InterruptedException e) {
+					// The thread ends after its current step, wait on
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Writes the model state at the current time, one step in the past,
+	 * into result. Never blocks. Must always be called from the same thread,
+	 * e.g. the frame thread of a view.
+	 */
+	public void sample(S result) {
+		Step<S> step = steps.read();
+		double alpha = (double) (System.nanoTime() - step.startNanos) / stepNanos;
+		model.interpolate(step.previous, step.current, Math.max(0.0, Math.min(1.0, alpha)), result);
+	}
+
+	/**
+	 * @return the number of steps taken.
+	 */
+	public long getStepCount() {
+		return stepCount;
+	}
+
+	public long getStepNanos() {
+		return stepNanos;
+	}
+
+	/**
+	 * @return the exception that stopped the simulation, or null.
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	@Override
+	public String toString() {
+		return "SimulationLoop [name=" + name + ", stepNanos=" + stepNanos + ", steps=" + getStepCount() + ", running=" + running + "]";
+	}
+
+	// Simulation Thread
+	private void runSteps() {
+		double stepSeconds = stepNanos / 1e9;
+		long nextStepNanos = System.nanoTime();
+		try {
+			// stop() clears the thread
+			while (running && (thread == Thread.currentThread())) {
+				long now = System.nanoTime();
+				if (now < nextStepNanos) {
+					LockSupport.parkNanos(this, nextStepNanos - now);
+					continue;
+				}
+				if ((now - nextStepNanos) > (MAX_CATCH_UP_STEPS * stepNanos)) {
+					// Too far behind, drop the missed steps
+					nextStepNanos = now;
+				}
+
+				// Step a copy of the last state, then publish both
+				Step<S> last = steps.getLastPublished();
+				Step<S> step = steps.getWriteBuffer();
+				model.copy(last.current, step.previous);
+				model.copy(last.current, step.current);
+				model.step(step.current, stepSeconds);
+				step.startNanos = nextStepNanos;
+				steps.publish();
+				stepCount++;
+				nextStepNanos += stepNanos;
+			}
+		} catch (RuntimeException e) {
+			// Not stop(), which may be joining this thread
+			failure = e;
+			running = false;
+		}
+	}
+}
@@ -0,0 +1,315 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.util.Arrays;
+
+/**
+ * A loose grid indexing the bounding boxes of 2D scene primitives, so that
+ * frames only submit the primitives inside the viewport.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Each primitive is kept in the one cell holding the center of its
+ * bounding box, in a linked list through int arrays. Insert, move and remove
+ * are constant time and don't allocate; a move only relinks the primitive
+ * when its center changes cells.
+ * <li>Queries visit the cells overlapping the query rectangle grown by the
+ * largest half extent ever indexed, then test each primitive's bounding box.
+ * Queries covering half the grid or more test all primitives in id order
+ * instead, which walks memory linearly.
+ * Cells should therefore be about the size of the larger primitives;
+ * primitives much larger than a cell make every query visit more cells.
+ * <li>Primitives outside the grid bounds are kept in the nearest edge cell,
+ * so they are still found, only less efficiently.
+ * <li>{@link #query(float[], IVisitor)} takes the projection of a view, e.g.
+ * {@link Viewport#getProjection()}, and visits what that projection shows.
+ * <li>Not thread safe; usually owned by the frame thread.
+ * </ul>
+ */
+public class SpatialGrid {
+
+	/**
+	 * Receives the primitives found by a query.
+	 */
+	public interface IVisitor {
+
+		/**
+		 * @param id
+		 *            the id returned by {@link SpatialGrid#insert}.
+		 */
+		void visit(int id);
+	}
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	// Cells are enlarged to keep at most this many per axis
+	private static final int MAX_CELLS_PER_AXIS = 1024;
+
+	// Cell of removed ids, whose next links the free list
+	private static final int FREE = -1;
+
+	private final float gridMinX;
+	private final float gridMinY;
+	private final float cellSize;
+	private final int columns;
+	private final int rows;
+
+	// First id per cell, -1 if empty
+	private final int[] cellHeads;
+
+	// Per id
+	private float[] bounds = new float[INITIAL_CAPACITY * 4];
+	private int[] cells = new int[INITIAL_CAPACITY];
+	private int[] next = new int[INITIAL_CAPACITY];
+	private int[] previous = new int[INITIAL_CAPACITY];
+
+	private int idCount;
+	private int freeHead = -1;
+	private int size;
+
+	// Largest half extents indexed, the looseness of the cells
+	private float maxHalfWidth;
+	private float maxHalfHeight;
+
+	private long candidateCount;
+
+	/**
+	 * @param minX
+	 *            left edge of the grid.
+	 * @param minY
+	 *            bottom edge of the grid.
+	 * @param maxX
+	 *            right edge of the grid.
+	 * @param maxY
+	 *            top edge of the grid.
+	 * @param cellSize
+	 *            width and height of a cell, about the size of the larger
+	 *            primitives. Enlarged if the grid would exceed
+	 *            {@value #MAX_CELLS_PER_AXIS} cells per axis.
+	 */
+	public SpatialGrid(float minX, float minY, float maxX, float maxY, float cellSize) {
+		if (!(cellSize > 0) || !(maxX > minX) || !(maxY > minY)) {
+			throw new IllegalArgumentException("Invalid grid: " + minX + ", " + minY + ", " + maxX + ", " + maxY + ", " + cellSize);
+		}
+		this.gridMinX = minX;
+		this.gridMinY = minY;
+		this.cellSize = Math.max(cellSize, Math.max(maxX - minX, maxY - minY) / MAX_CELLS_PER_AXIS);
+		this.columns = (int) Math.ceil((maxX - minX) / this.cellSize);
+		this.rows = (int) Math.ceil((maxY - minY) / this.cellSize);
+		cellHeads = new int[columns * rows];
+		Arrays.fill(cellHeads, -1);
+	}
+
+	/**
+	 * Adds a primitive.
+	 *
+	 * @return the id of the primitive, reused after it was removed.
+	 */
+	public int insert(float minX, float minY, float maxX, float maxY) {
+		int id;
+		if (freeHead >= 0) {
+			id = freeHead;
+			freeHead = next[id];
+		} else {
+			if (idCount == cells.length) {
+				grow();
+			}
+			id = idCount++;
+		}
+		size++;
+		setBounds(id, minX, minY, maxX, maxY);
+		link(id, getCell(minX, minY, maxX, maxY));
+		return id;
+	}
+
+	/**
+	 * Sets new bounds of a primitive.
+	 */
+	public void move(int id, float minX, float minY, float maxX, float maxY) {
+		checkId(id);
+		setBounds(id, minX, minY, maxX, maxY);
+		int cell = getCell(minX, minY, maxX, maxY);
+		if (cell != cells[id]) {
+			unlink(id);
+			link(id, cell);
+		}
+	}
+
+	/**
+	 * Removes a primitive; its id may be returned by a later insert.
+	 */
+	public void remove(int id) {
+		checkId(id);
+		unlink(id);
+		cells[id] = FREE;
+		next[id] = freeHead;
+		freeHead = id;
+		size--;
+	}
+
+	/**
+	 * Removes all primitives.
+	 */
+	public void clear() {
+		Arrays.fill(cellHeads, -1);
+		idCount = 0;
+		freeHead = -1;
+		size = 0;
+		maxHalfWidth = 0;
+		maxHalfHeight = 0;
+	}
+
+	/**
+	 * Visits every primitive whose bounding box overlaps the rectangle, each
+	 * once and in no particular order. The grid must not be modified by the
+	 * visitor.
+	 *
+	 * @return the number of primitives visited.
+	 */
+	public int query(float minX, float minY, float maxX, float maxY, IVisitor visitor) {
+		int firstColumn = getColumn(minX - maxHalfWidth);
+		int lastColumn = getColumn(maxX + maxHalfWidth);
+		int firstRow = getRow(minY - maxHalfHeight);
+		int lastRow = getRow(maxY + maxHalfHeight);
+		int visited = 0;
+		if ((2L * (lastColumn - firstColumn + 1) * (lastRow - firstRow + 1)) >= cellHeads.length) {
+			// Most of the grid, scanning the ids in memory order is faster
+			for (int id = 0; id < idCount; id++) {
+				if (cells[id] != FREE) {
+					candidateCount++;
+					int offset = id * 4;
+					if ((bounds[offset] <= maxX) && (bounds[offset + 2] >= minX) && (bounds[offset + 1] <= maxY) && (bounds[offset + 3] >= minY)) {
+						visitor.visit(id);
+						visited++;
+					}
+				}
+			}
+			return visited;
+		}
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				for (int id = cellHeads[(row * columns) + column]; id >= 0; id = next[id]) {
+					candidateCount++;
+					int offset = id * 4;
+					if ((bounds[offset] <= maxX) && (bounds[offset + 2] >= minX) && (bounds[offset + 1] <= maxY) && (bounds[offset + 3] >= minY)) {
+						visitor.visit(id);
+						visited++;
+					}
+				}
+			}
+		}
+		return visited;
+	}
+
+	/**
+	 * Visits every primitive shown by an orthographic projection, such as
+	 * the one of gluOrtho2D or {@link GL2ES2_Util#ortho2D}.
+	 *
+	 * @param projection
+	 *            column major 4x4 orthographic projection without rotation.
+	 * @return the number of primitives visited.
+	 */
+	public int query(float[] projection, IVisitor visitor) {
+		// Clip space -1..1 back to scene coordinates
+		float x0 = (-1 - projection[12]) / projection[0];
+		float x1 = (1 - projection[12]) / projection[0];
+		float y0 = (-1 - projection[13]) / projection[5];
+		float y1 = (1 - projection[13]) / projection[5];
+		return query(Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1), visitor);
+	}
+
+	/**
+	 * @return the number of primitives indexed.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public float getMinX(int id) {
+		return bounds[id * 4];
+	}
+
+	public float getMinY(int id) {
+		return bounds[(id * 4) + 1];
+	}
+
+	public float getMaxX(int id) {
+		return bounds[(id * 4) + 2];
+	}
+
+	public float getMaxY(int id) {
+		return bounds[(id * 4) + 3];
+	}
+
+	/**
+	 * @return the number of bounding boxes tested by all queries, visited or
+	 *         not.
+	 */
+	public long getCandidateCount() {
+		return candidateCount;
+	}
+
+	@Override
+	public String toString() {
+		return "SpatialGrid [columns=" + columns + ", rows=" + rows + ", cellSize=" + cellSize + ", size=" + size + ", candidates=" + candidateCount + "]";
+	}
+
+	private void checkId(int id) {
+		if ((id < 0) || (id >= idCount) || (cells[id] == FREE)) {
+			throw new IllegalArgumentException("Not an indexed primitive: " + id);
+		}
+	}
+
+	private void setBounds(int id, float minX, float minY, float maxX, float maxY) {
+		int offset = id * 4;
+		bounds[offset] = minX;
+		bounds[offset + 1] = minY;
+		bounds[offset + 2] = maxX;
+		bounds[offset + 3] = maxY;
+		maxHalfWidth = Math.max(maxHalfWidth, (maxX - minX) / 2);
+		maxHalfHeight = Math.max(maxHalfHeight, (maxY - minY) / 2);
+	}
+
+	private int getCell(float minX, float minY, float maxX, float maxY) {
+		return (getRow((minY + maxY) / 2) * columns) + getColumn((minX + maxX) / 2);
+	}
+
+	private int getColumn(float x) {
+		return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - gridMinX) / cellSize)));
+	}
+
+	private int getRow(float y) {
+		return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - gridMinY) / cellSize)));
+	}
+
+	private void link(int id, int cell) {
+		int head = cellHeads[cell];
+		cells[id] = cell;
+		previous[id] = -1;
+		next[id] = head;
+		if (head >= 0) {
+			previous[head] = id;
+		}
+		cellHeads[cell] = id;
+	}
+
+	private void unlink(int id) {
+		int before = previous[id];
+		int after = next[id];
+		if (before >= 0) {
+			next[before] = after;
+		} else {
+			cellHeads[cells[id]] = after;
+		}
+		if (after >= 0) {
+			previous[after] = before;
+		}
+	}
+
+	private void grow() {
+		int capacity = cells.length * 2;
+		bounds = Arrays.copyOf(bounds, capacity * 4);
+		cells = Arrays.copyOf(cells, capacity);
+		next = Arrays.copyOf(next, capacity);
+		previous = Arrays.copyOf(previous, capacity);
+	}
+}
@@ -0,0 +1,283 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GLContext;
+
+import org.osgi.framework.Bundle;
+
+import com.jogamp.opengl.util.texture.Texture;
+import com.jogamp.opengl.util.texture.TextureData;
+import com.jogamp.opengl.util.texture.TextureIO;
+
+/**
+ * Loads each bundle texture once, reference counts it and keeps unreferenced
+ * textures resident until a video memory budget is exceeded.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Textures are deduplicated by {@link GLShareGroup}, bundle and path, so
+ * views sharing a context, or contexts sharing objects, share the texture
+ * object.
+ * <li>PNG and JPEG images are decoded by the {@link NioImageDecoder}, other
+ * formats through {@link GL2ES2_Util#createTexture}.
+ * <li>A texture whose reference count drops to zero stays resident so that
+ * reopening a view does not reload it. Once the resident bytes exceed the
+ * budget, unreferenced textures are destroyed in least recently used order.
+ * Referenced textures are never evicted, so the budget can be exceeded while
+ * they are in use.
+ * <li>Eviction only destroys textures of the calling (current) context's
+ * share group; the others are evicted on the next call made with one of their
+ * contexts current.
+ * <li>Textures hold their share group weakly. Once it was collected, its
+ * contexts and their texture objects are gone, so its textures are dropped
+ * and no longer count as resident.
+ * <li>All GL methods must be called with the owning context current.
+ * </ul>
+ */
+public class TextureManager {
+
+	public static final long DEFAULT_BUDGET_BYTES = 256L * 1024 * 1024;
+
+	private static final class Key {
+		final WeakReference<Object> shareGroup;
+		final int shareGroupHash;
+		final String bundleName;
+		final String filePath;
+
+		/**
+		 * @param queue
+		 *            notified once the share group was collected, or null for
+		 *            a key only looked up.
+		 */
+		Key(GLContext context, Bundle bundle, String filePath, ReferenceQueue<Object> queue) {
+			Object group = GLShareGroup.of(context);
+			this.shareGroup = new WeakReference<Object>(group, queue);
+			this.shareGroupHash = System.identityHashCode(group);
+			this.bundleName = bundle.getSymbolicName();
+			this.filePath = filePath;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * (31 * shareGroupHash + bundleName.hashCode())) + filePath.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			Object group = shareGroup.get();
+			return (group != null) && (group == other.shareGroup.get()) && bundleName.equals(other.bundleName) && filePath.equals(other.filePath);
+		}
+
+		@Override
+		public String toString() {
+			return bundleName + "/" + filePath;
+		}
+	}
+
+	private static final class Entry {
+		final Key key;
+		final Texture texture;
+		final long sizeBytes;
+		int referenceCount;
+
+		Entry(Key key, Texture texture) {
+			this.key = key;
+			this.texture = texture;
+			this.sizeBytes = texture.getEstimatedMemorySize();
+		}
+	}
+
+	// Access ordered, eldest first; guarded by this
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+	// Texture -> entry for release(); guarded by this
+	private final Map<Texture, Entry> entriesByTexture = new IdentityHashMap<Texture, Entry>();
+
+	// Share groups of entries, once collected
+	private final ReferenceQueue<Object> collectedShareGroups = new ReferenceQueue<Object>();
+
+	private final NioImageDecoder imageDecoder;
+
+	private volatile long budgetBytes;
+
+	private final AtomicLong residentBytes = new AtomicLong();
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * @param budgetBytes
+	 *            video memory the resident textures may use before unreferenced
+	 *            textures are evicted.
+	 * @param imageDecoder
+	 *            decoder for PNG and JPEG images.
+	 */
+	public TextureManager(long budgetBytes, NioImageDecoder imageDecoder) {
+		this.imageDecoder = imageDecoder;
+		setBudgetBytes(budgetBytes);
+	}
+
+	/**
+	 * Returns the texture for the given bundle resource, loading it only if it
+	 * is not resident. Each call must be balanced by
+	 * {@link #release(GL2ES2, Texture)}.
+	 *
+	 * @param gl2es2
+	 *            GL2ES2 pipeline object for the calling GLContext. Note, the
+	 *            provided gl2es2 instance must come for the current glcontext
+	 *            (e.g. glcanvas.setCurrent(), then glcontext.makeCurrent()).
+	 * @see GL2ES2_Util#createTexture(GL2ES2, Bundle, String)
+	 *
+	 * @throws RuntimeException
+	 *             if the texture fails to load in any way.
+	 */
+	public synchronized Texture acquire(GL2ES2 gl2es2, Bundle bundle, String filePath) {
+		purgeCollectedShareGroups();
+		Entry entry = entries.get(new Key(gl2es2.getContext(), bundle, filePath, null));
+		if (entry != null) {
+			hitCount.incrementAndGet();
+		} else {
+			missCount.incrementAndGet();
+			Key key = new Key(gl2es2.getContext(), bundle, filePath, collectedShareGroups);
+			entry = new Entry(key, createTexture(gl2es2, bundle, filePath));
+			entries.put(key, entry);
+			entriesByTexture.put(entry.texture, entry);
+			residentBytes.addAndGet(entry.sizeBytes);
+			evict(gl2es2);
+		}
+		entry.referenceCount++;
+		return entry.texture;
+	}
+
+	/**
+	 * Releases a texture obtained from {@link #acquire}. It stays resident
+	 * until evicted by the budget.
+	 */
+	public synchronized void release(GL2ES2 gl2es2, Texture texture) {
+		purgeCollectedShareGroups();
+		Entry entry = entriesByTexture.get(texture);
+		if ((entry == null) || (entry.referenceCount == 0)) {
+			return;
+		}
+		entry.referenceCount--;
+		evict(gl2es2);
+	}
+
+	/**
+	 * Destroys every unreferenced texture of the current context's share
+	 * group, regardless of the budget (e.g. before the share group is
+	 * destroyed).
+	 */
+	public synchronized void trim(GL2ES2 gl2es2) {
+		purgeCollectedShareGroups();
+		evict(gl2es2, 0);
+	}
+
+	public synchronized void setBudgetBytes(long budgetBytes) {
+		if (budgetBytes < 0) {
+			throw new IllegalArgumentException("Budget must not be negative: " + budgetBytes);
+		}
+		this.budgetBytes = budgetBytes;
+	}
+
+	public long getBudgetBytes() {
+		return budgetBytes;
+	}
+
+	/**
+	 * @return the estimated video memory used by all resident textures.
+	 */
+	public synchronized long getResidentBytes() {
+		purgeCollectedShareGroups();
+		return residentBytes.get();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "TextureManager [residentBytes=" + residentBytes + ", budgetBytes=" + budgetBytes + ", hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+	}
+
+	private Texture createTexture(GL2ES2 gl2es2, Bundle bundle, String filePath) {
+		if (!NioImageDecoder.isSupported(NioImageDecoder.getSuffix(filePath))) {
+			return GL2ES2_Util.createTexture(gl2es2, bundle, filePath);
+		}
+		TextureData textureData;
+		try {
+			textureData = imageDecoder.decode(gl2es2.getGLProfile(), bundle, filePath);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not create a texture data for: " + filePath, e);
+		}
+		try {
+			return TextureIO.newTexture(gl2es2, textureData);
+		} finally {
+			// Return the pixel buffer to the pool
+			textureData.flush();
+		}
+	}
+
+	private void evict(GL2ES2 gl2es2) {
+		evict(gl2es2, budgetBytes);
+	}
+
+	private void evict(GL2ES2 gl2es2, long limitBytes) {
+		Object shareGroup = GLShareGroup.of(gl2es2.getContext());
+		for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext() && (residentBytes.get() > limitBytes);) {
+			Entry entry = iterator.next();
+			if ((entry.referenceCount > 0) || (entry.key.shareGroup.get() != shareGroup)) {
+				continue;
+			}
+			entry.texture.destroy(gl2es2);
+			iterator.remove();
+			entriesByTexture.remove(entry.texture);
+			residentBytes.addAndGet(-entry.sizeBytes);
+			evictionCount.incrementAndGet();
+		}
+	}
+
+	// Drops the textures of collected share groups, destroyed with their
+	// contexts
+	private void purgeCollectedShareGroups() {
+		if (collectedShareGroups.poll() == null) {
+			return;
+		}
+		while (collectedShareGroups.poll() != null) {
+			// Drain, the entries are found by their cleared keys
+		}
+		for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext();) {
+			Entry entry = iterator.next();
+			if (entry.key.shareGroup.get() == null) {
+				iterator.remove();
+				entriesByTexture.remove(entry.texture);
+				residentBytes.addAndGet(-entry.sizeBytes);
+			}
+		}
+	}
+}
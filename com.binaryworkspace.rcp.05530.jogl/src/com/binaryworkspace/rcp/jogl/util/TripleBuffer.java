@@ -0,0 +1,108 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free handoff of snapshots from one producer thread to one consumer
+ * thread through three preallocated buffers.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The producer fills {@link #getWriteBuffer()} and {@link #publish()}es
+ * it. The consumer's {@link #read()} returns the latest published snapshot.
+ * Each side owns one buffer and the third is exchanged atomically, so neither
+ * side ever blocks or waits for the other, and a snapshot is never read while
+ * it is written.
+ * <li>Snapshots published faster than they are read replace each other; the
+ * consumer only ever sees the latest one. Until the first publish it reads the
+ * initial buffer.
+ * <li>Nothing is allocated after construction. Buffers are reused in turn, so
+ * the producer must write every field of the write buffer, e.g. by copying
+ * {@link #getLastPublished()} first.
+ * <li>Exactly one producer and one consumer thread; neither method may be
+ * called from the other side.
+ * </ul>
+ *
+ * @param <T>
+ *            type of the snapshots.
+ */
+public class TripleBuffer<T> {
+
+	private static final int INDEX_MASK = 0x3;
+
+	// Set while the exchanged buffer holds a snapshot the consumer has not read
+	private static final int UPDATED = 0x4;
+
+	private final T[] buffers;
+
+	// Index of the exchanged buffer, plus UPDATED
+	private final AtomicInteger exchange = new AtomicInteger(1);
+
+	// Producer
+	private int writeIndex = 2;
+	private int publishedIndex;
+
+	// Consumer
+	private int readIndex;
+
+	/**
+	 * @param initial
+	 *            buffer read until the first publish.
+	 * @param second
+	 *            second buffer, of the same type and size.
+	 * @param third
+	 *            third buffer, of the same type and size.
+	 */
+	@SuppressWarnings("unchecked")
+	public TripleBuffer(T initial, T second, T third) {
+		if ((initial == second) || (initial == third) || (second == third)) {
+			throw new IllegalArgumentException("The buffers must be distinct");
+		}
+		buffers = (T[]) new Object[] { initial, second, third };
+	}
+
+	/**
+	 * @return the buffer the producer writes the next snapshot into. Stays the
+	 *         same until {@link #publish()}. Producer only.
+	 */
+	public T getWriteBuffer() {
+		return buffers[writeIndex];
+	}
+
+	/**
+	 * @return the snapshot published last, or the initial buffer. The consumer
+	 *         may be reading it, so the producer must not modify it. Producer
+	 *         only.
+	 */
+	public T getLastPublished() {
+		return buffers[publishedIndex];
+	}
+
+	/**
+	 * Makes the write buffer the latest snapshot and hands the producer a new
+	 * write buffer. Never blocks. Producer only.
+	 */
+	public void publish() {
+		publishedIndex = writeIndex;
+		writeIndex = exchange.getAndSet(writeIndex | UPDATED) & INDEX_MASK;
+	}
+
+	/**
+	 * @return the latest published snapshot. Valid until the next call; the
+	 *         consumer must not modify it. Never blocks. Consumer only.
+	 */
+	public T read() {
+		if ((exchange.get() & UPDATED) != 0) {
+			readIndex = exchange.getAndSet(readIndex) & INDEX_MASK;
+		}
+		return buffers[readIndex];
+	}
+
+	/**
+	 * @return true if a snapshot was published since the last {@link #read()}.
+	 *         May be called from any thread.
+	 */
+	public boolean hasUpdate() {
+		return (exchange.get() & UPDATED) != 0;
+	}
+}
@@ -0,0 +1,348 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
+
+import com.jogamp.common.nio.Buffers;
+
+/**
+ * A retained-mode renderer for colored two dimensional geometry replacing
+ * glBegin/glColor/glVertex immediate mode.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Vertices are gathered interleaved (x, y, r, g, b) into a direct
+ * {@link FloatBuffer} and uploaded to a single VBO. The upload only happens
+ * when the batch changed since the last draw, so static geometry is sent to
+ * the video card once.
+ * <li>Drawing costs a handful of GL calls regardless of the vertex count.
+ * <li>The shader program runs on desktop GL2 as well as GLES2 contexts. It
+ * is built over the first frames by an {@link AsyncProgramBuilder} of the
+ * batch, so init never waits for the driver's compiler; nothing is drawn and
+ * {@link #isProgramPending()} is true until it linked. When a
+ * {@link ShaderProgramCache} is given the program is shared with every other
+ * batch of the same context. {@link #setAsyncBuild(boolean)} turns this off
+ * for callers drawing right after init, e.g. benchmarks.
+ * <li>With an {@link AsyncProgramBuilder} set by the caller, the program is
+ * replaced whenever the builder links new sources, e.g. shader files reloaded
+ * by a {@link ShaderFileWatcher}.
+ * <li>The projection uniform is only pushed when it changed, or when another
+ * batch sharing the program set its own since.
+ * <li>All GL methods must be called with the owning context current.
+ * </ul>
+ */
+public class VertexBatchRenderer {
+
+	public static final int POSITION_COMPONENTS = 2;
+
+	public static final int COLOR_COMPONENTS = 3;
+
+	public static final int FLOATS_PER_VERTEX = POSITION_COMPONENTS + COLOR_COMPONENTS;
+
+	private static final int STRIDE_BYTES = FLOATS_PER_VERTEX * Buffers.SIZEOF_FLOAT;
+
+	public static final String VERTEX_SHADER_SOURCE = "" //
+			+ "#ifdef GL_ES\n" //
+			+ "precision mediump float;\n" //
+			+ "#endif\n" //
+			+ "uniform mat4 uProjection;\n" //
+			+ "attribute vec2 aPosition;\n" //
+			+ "attribute vec3 aColor;\n" //
+			+ "varying vec3 vColor;\n" //
+			+ "void main() {\n" //
+			+ "  vColor = aColor;\n" //
+			+ "  gl_Position = uProjection * vec4(aPosition, 0.0, 1.0);\n" //
+			+ "}\n";
+
+	public static final String FRAGMENT_SHADER_SOURCE = "" //
+			+ "#ifdef GL_ES\n" //
+			+ "precision mediump float;\n" //
+			+ "#endif\n" //
+			+ "varying vec3 vColor;\n" //
+			+ "void main() {\n" //
+			+ "  gl_FragColor = vec4(vColor, 1.0);\n" //
+			+ "}\n";
+
+	private final ShaderProgramCache programCache;
+
+	private AsyncProgramBuilder programBuilder;
+
+	// Created by init, rather than set by the caller
+	private boolean ownsProgramBuilder;
+
+	private boolean asyncBuild = true;
+
+	private int programVersion;
+
+	private boolean programPending;
+
+	private FloatBuffer vertexData;
+
+	private int vertexCount;
+
+	private boolean modified;
+
+	private final float[] projection = new float[16];
+
+	private boolean projectionModified;
+
+	// GL state
+	private int programId;
+	private int vboId;
+	private int vboCapacityBytes;
+	private int positionLocation;
+	private int colorLocation;
+	private int projectionLocation;
+
+	/**
+	 * @param initialVertexCapacity
+	 *            number of vertices the client side buffer holds before it has
+	 *            to grow.
+	 */
+	public VertexBatchRenderer(int initialVertexCapacity) {
+		this(initialVertexCapacity, null);
+	}
+
+	/**
+	 * @param initialVertexCapacity
+	 *            number of vertices the client side buffer holds before it has
+	 *            to grow.
+	 * @param programCache
+	 *            cache the shader program is acquired from, or null to compile
+	 *            a private program.
+	 */
+	public VertexBatchRenderer(int initialVertexCapacity, ShaderProgramCache programCache) {
+		this.programCache = programCache;
+		vertexData = Buffers.newDirectFloatBuffer(Math.max(1, initialVertexCapacity) * FLOATS_PER_VERTEX);
+		GL2ES2_Util.ortho2D(projection, -1, 1, -1, 1);
+	}
+
+	/**
+	 * Starts building the shader program and creates the VBO.
+	 *
+	 * @throws RuntimeException
+	 *             if the shader program fails to compile or link when built
+	 *             synchronously.
+	 */
+	public void init(GL2ES2 gl2es2) {
+		if ((programBuilder == null) && asyncBuild) {
+			programBuilder = new AsyncProgramBuilder(programCache);
+			programBuilder.request(VERTEX_SHADER_SOURCE, FRAGMENT_SHADER_SOURCE);
+			ownsProgramBuilder = true;
+		}
+		if (programBuilder != null) {
+			// Set by the first draw after the builder linked a program
+			programId = 0;
+			programVersion = -1;
+		} else {
+			if (programCache != null) {
+				programId = programCache.acquire(gl2es2, VERTEX_SHADER_SOURCE, FRAGMENT_SHADER_SOURCE);
+			} else {
+				programId = GL2ES2_Util.createProgram(gl2es2, VERTEX_SHADER_SOURCE, FRAGMENT_SHADER_SOURCE);
+			}
+			lookupLocations(gl2es2);
+		}
+
+		int[] ids = new int[1];
+		gl2es2.glGenBuffers(1, ids, 0);
+		vboId = ids[0];
+		vboCapacityBytes = 0;
+		modified = true;
+		projectionModified = true;
+	}
+
+	/**
+	 * Takes the shader program from the given builder instead of compiling
+	 * {@link #VERTEX_SHADER_SOURCE} and {@link #FRAGMENT_SHADER_SOURCE}. The
+	 * builder is updated by every draw, but requested and disposed by the
+	 * caller. Must be set before {@link #init(GL2ES2)}.
+	 */
+	public void setProgramBuilder(AsyncProgramBuilder programBuilder) {
+		this.programBuilder = programBuilder;
+	}
+
+	/**
+	 * @param asyncBuild
+	 *            false to build the program in {@link #init(GL2ES2)}, waiting
+	 *            for the driver. Must be set before {@link #init(GL2ES2)}.
+	 */
+	public void setAsyncBuild(boolean asyncBuild) {
+		this.asyncBuild = asyncBuild;
+	}
+
+	/**
+	 * @return true if the program builder is still building after the last
+	 *         draw, so another frame is needed to show its program.
+	 */
+	public boolean isProgramPending() {
+		return programPending;
+	}
+
+	/**
+	 * Empties the batch. The client side buffer is kept for reuse.
+	 */
+	public void clear() {
+		vertexData.clear();
+		vertexCount = 0;
+		modified = true;
+	}
+
+	public void addVertex(float x, float y, float r, float g, float b) {
+		ensureCapacity(vertexCount + 1);
+		vertexData.put(x).put(y).put(r).put(g).put(b);
+		vertexCount++;
+		modified = true;
+	}
+
+	/**
+	 * Adds interleaved vertices (x, y, r, g, b) in bulk.
+	 *
+	 * @param data
+	 *            interleaved vertex data, {@link #FLOATS_PER_VERTEX} floats per
+	 *            vertex.
+	 */
+	public void addVertices(float[] data, int offset, int count) {
+		ensureCapacity(vertexCount + count);
+		vertexData.put(data, offset, count * FLOATS_PER_VERTEX);
+		vertexCount += count;
+		modified = true;
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	/**
+	 * @param matrix
+	 *            column major 4x4 projection matrix, e.g. from
+	 *            {@link GL2ES2_Util#ortho2D}. The values are copied and
+	 *            only pushed to the program if they changed.
+	 */
+	public void setProjection(float[] matrix) {
+		if (!Arrays.equals(projection, matrix)) {
+			System.arraycopy(matrix, 0, projection, 0, 16);
+			projectionModified = true;
+		}
+	}
+
+	/**
+	 * Draws the batch as the given primitive type, uploading the vertex data
+	 * first if it changed since the last draw.
+	 *
+	 * @param mode
+	 *            primitive type (e.g. GL.GL_TRIANGLES, GL.GL_LINES).
+	 * @throws RuntimeException
+	 *             if the program built by the batch failed to compile or
+	 *             link.
+	 */
+	public void draw(GL2ES2 gl2es2, int mode) {
+		if (programBuilder != null) {
+			programPending = programBuilder.update(gl2es2);
+			RuntimeException failure = ownsProgramBuilder ? programBuilder.takeFailure() : null;
+			if (failure != null) {
+				throw failure;
+			}
+			if (programBuilder.getVersion() != programVersion) {
+				programId = programBuilder.getProgram();
+				programVersion = programBuilder.getVersion();
+				lookupLocations(gl2es2);
+				projectionModified = true;
+			}
+			if (programId == 0) {
+				return;
+			}
+		}
+
+		gl2es2.glBindBuffer(GL.GL_ARRAY_BUFFER, vboId);
+		if (modified) {
+			upload(gl2es2);
+		}
+
+		gl2es2.glUseProgram(programId);
+		boolean ownsUniforms = ownsUniforms(gl2es2);
+		if (projectionModified || !ownsUniforms) {
+			gl2es2.glUniformMatrix4fv(projectionLocation, 1, false, projection, 0);
+			projectionModified = false;
+		}
+
+		gl2es2.glEnableVertexAttribArray(positionLocation);
+		gl2es2.glEnableVertexAttribArray(colorLocation);
+		gl2es2.glVertexAttribPointer(positionLocation, POSITION_COMPONENTS, GL.GL_FLOAT, false, STRIDE_BYTES, 0L);
+		gl2es2.glVertexAttribPointer(colorLocation, COLOR_COMPONENTS, GL.GL_FLOAT, false, STRIDE_BYTES, POSITION_COMPONENTS * Buffers.SIZEOF_FLOAT);
+
+		gl2es2.glDrawArrays(mode, 0, vertexCount);
+
+		gl2es2.glDisableVertexAttribArray(positionLocation);
+		gl2es2.glDisableVertexAttribArray(colorLocation);
+		gl2es2.glUseProgram(0);
+		gl2es2.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Releases the VBO and the shader program.
+	 */
+	public void dispose(GL2ES2 gl2es2) {
+		if (vboId != 0) {
+			gl2es2.glDeleteBuffers(1, new int[] { vboId }, 0);
+			vboId = 0;
+		}
+		if (ownsProgramBuilder) {
+			programBuilder.dispose(gl2es2);
+			programBuilder = null;
+			ownsProgramBuilder = false;
+			programId = 0;
+		} else if (programBuilder != null) {
+			// Owned by the caller
+			programId = 0;
+		} else if (programId != 0) {
+			if (programCache != null) {
+				programCache.release(gl2es2, programId);
+			} else {
+				gl2es2.glDeleteProgram(programId);
+			}
+			programId = 0;
+		}
+	}
+
+	private boolean ownsUniforms(GL2ES2 gl2es2) {
+		// A private program or one of the caller's builder is only used by
+		// this batch
+		return (programCache == null) || ((programBuilder != null) && !ownsProgramBuilder) || programCache.claimUniforms(gl2es2, programId, this);
+	}
+
+	private void lookupLocations(GL2ES2 gl2es2) {
+		positionLocation = gl2es2.glGetAttribLocation(programId, "aPosition");
+		colorLocation = gl2es2.glGetAttribLocation(programId, "aColor");
+		projectionLocation = gl2es2.glGetUniformLocation(programId, "uProjection");
+	}
+
+	// Expects the VBO to be bound
+	private void upload(GL2ES2 gl2es2) {
+		int sizeBytes = vertexCount * STRIDE_BYTES;
+		FloatBuffer data = vertexData.duplicate();
+		data.flip();
+		if (sizeBytes > vboCapacityBytes) {
+			// Grow the store
+			gl2es2.glBufferData(GL.GL_ARRAY_BUFFER, sizeBytes, data, GL.GL_DYNAMIC_DRAW);
+			vboCapacityBytes = sizeBytes;
+		} else if (sizeBytes > 0) {
+			gl2es2.glBufferSubData(GL.GL_ARRAY_BUFFER, 0, sizeBytes, data);
+		}
+		modified = false;
+	}
+
+	private void ensureCapacity(int vertices) {
+		int required = vertices * FLOATS_PER_VERTEX;
+		if (required <= vertexData.capacity()) {
+			return;
+		}
+		int capacity = Math.max(required, vertexData.capacity() * 2);
+		FloatBuffer grown = Buffers.newDirectFloatBuffer(capacity);
+		vertexData.flip();
+		grown.put(vertexData);
+		vertexData = grown;
+	}
+}
@@ -0,0 +1,143 @@
+package com.binaryworkspace.rcp.jogl.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.media.opengl.GL2ES2;
+
+/**
+ * Viewport and projection of a GL view, updated at most once per frame.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Resize events only record the new size with {@link #setSize(int, int)},
+ * from any thread and without touching GL. The next frame applies the latest
+ * size with {@link #update(GL2ES2)}, so dragging a sash costs one viewport
+ * and projection update per drawn frame instead of one per event.
+ * <li>The projection is computed into a preallocated column major matrix.
+ * {@link #getProjectionVersion()} changes with every new projection, so
+ * uniforms only need to be pushed when it changed.
+ * <li>The default projection places the origin at the lower left with one
+ * unit per pixel; override {@link #computeProjection(float[], int, int)} for
+ * others.
+ * </ul>
+ */
+public class Viewport {
+
+	// Packed width and height last requested, NO_SIZE until the first request
+	private static final long NO_SIZE = -1L;
+
+	private final AtomicLong requestedSize = new AtomicLong(NO_SIZE);
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong updateCount = new AtomicLong();
+
+	// Frame thread
+	private long appliedSize = NO_SIZE;
+
+	private int width;
+
+	private int height;
+
+	private final float[] projection = new float[16];
+
+	private int projectionVersion;
+
+	public Viewport() {
+		computeProjection(projection, 1, 1);
+	}
+
+	/**
+	 * Records a new size, applied by the next {@link #update(GL2ES2)}. May be
+	 * called from any thread; only the last size before a frame is applied.
+	 */
+	public void setSize(int width, int height) {
+		requestedSize.set(pack(Math.max(width, 0), Math.max(height, 0)));
+		requestCount.incrementAndGet();
+	}
+
+	/**
+	 * Applies the last requested size: sets the GL viewport and recomputes the
+	 * projection. Does nothing if the size did not change. Must be called with
+	 * the GL context current.
+	 *
+	 * @return true if the viewport and projection changed.
+	 */
+	public boolean update(GL2ES2 gl2es2) {
+		long size = requestedSize.get();
+		if ((size == appliedSize) || (size == NO_SIZE)) {
+			return false;
+		}
+		appliedSize = size;
+		width = (int) (size >>> 32);
+		height = (int) size;
+		gl2es2.glViewport(0, 0, width, height);
+		computeProjection(projection, Math.max(width, 1), Math.max(height, 1));
+		projectionVersion++;
+		updateCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Computes the projection for a viewport size. The default matches
+	 * gluOrtho2D(0, width, 0, height).
+	 *
+	 * @param matrix
+	 *            column major 4x4 matrix to write to.
+	 */
+	protected void computeProjection(float[] matrix, int width, int height) {
+		GL2ES2_Util.ortho2D(matrix, 0.0f, width, 0.0f, height);
+	}
+
+	/**
+	 * @return the width applied by the last {@link #update(GL2ES2)}.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height applied by the last {@link #update(GL2ES2)}.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the column major projection matrix. Not a copy; must not be
+	 *         modified.
+	 */
+	public float[] getProjection() {
+		return projection;
+	}
+
+	/**
+	 * @return a number changing whenever {@link #getProjection()} changes.
+	 */
+	public int getProjectionVersion() {
+		return projectionVersion;
+	}
+
+	/**
+	 * @return the number of sizes recorded by {@link #setSize(int, int)}.
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return the number of sizes applied by {@link #update(GL2ES2)}.
+	 */
+	public long getUpdateCount() {
+		return updateCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "Viewport [width=" + width + ", height=" + height + ", requests=" + getRequestCount() + ", updates=" + getUpdateCount() + "]";
+	}
+
+	private static long pack(int width, int height) {
+		return ((long) width << 32) | (height & 0xffffffffL);
+	}
+}
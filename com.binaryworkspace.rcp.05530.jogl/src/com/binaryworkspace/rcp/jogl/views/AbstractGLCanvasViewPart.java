@@ -0,0 +1,551 @@
+package com.binaryworkspace.rcp.jogl.views;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GLProfile;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.events.ShellListener;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IWorkbenchPartReference;
+import org.eclipse.ui.part.ViewPart;
+
+import com.binaryworkspace.rcp.jogl.Activator;
+import com.binaryworkspace.rcp.jogl.render.FramePhase;
+import com.binaryworkspace.rcp.jogl.render.FrameScheduler;
+import com.binaryworkspace.rcp.jogl.render.FrameStatistics;
+import com.binaryworkspace.rcp.jogl.render.GLContextShareManager;
+import com.binaryworkspace.rcp.jogl.render.GLRenderThread;
+import com.binaryworkspace.rcp.jogl.render.GLStartup;
+import com.binaryworkspace.rcp.jogl.render.GLSurfaceType;
+import com.binaryworkspace.rcp.jogl.render.IGLSurface;
+import com.binaryworkspace.rcp.jogl.render.IGLSurfaceListener;
+import com.binaryworkspace.rcp.jogl.render.IRenderTarget;
+import com.binaryworkspace.rcp.jogl.render.RenderMode;
+import com.binaryworkspace.rcp.jogl.render.UILatencyProbe;
+import com.binaryworkspace.rcp.jogl.util.GLErrorChecker;
+import com.binaryworkspace.rcp.jogl.util.GpuFrameTimer;
+import com.binaryworkspace.rcp.jogl.util.Viewport;
+import com.jogamp.newt.opengl.GLWindow;
+
+/**
+ * Base class for views rendering with JOGL into an {@link IGLSurface}.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>Frames are driven by the shared {@link FrameScheduler} of the
+ * {@link Activator} instead of a render thread per view.
+ * <li>The {@link GLSurfaceType} chosen on the preference page decides how the
+ * drawable is embedded, see {@link #getSurfaceType()}. Surfaces drawing on
+ * the shared {@link GLRenderThread}, such as a NEWT {@link GLWindow}, keep all
+ * GL work off the UI thread; only frame requests cross threads, over the
+ * render thread's lock-free queue. Compare the {@link UILatencyProbe} or the
+ * {@link SurfaceLatencyViewPart} across surfaces for the effect on input
+ * latency. The {@value #RENDER_THREAD_PROPERTY} system property still selects
+ * NEWT by default.
+ * <li>The GL profile comes from the {@link GLStartup} of the
+ * {@link Activator}, which probes it in the background from the start of the
+ * plug-in. The first frame drawn ends its startup timing.
+ * <li>Subclasses only provide the drawing; the surface, its GL context and
+ * the projection set up on resize are handled here. The context shares with
+ * the {@link GLContextShareManager}, so GL objects created in
+ * {@link #initGL(GL2ES2)} are visible to every other view. The projection is
+ * kept as a matrix for shader uniforms, see {@link #getProjection()}.
+ * <li>Resize events are coalesced by a {@link Viewport}: the viewport and
+ * projection are updated once, at the start of the next frame, however many
+ * resize events arrived since.
+ * <li>Views render {@link RenderMode#ON_DEMAND} by default: a frame is drawn
+ * only after a resize, a paint (expose) event or {@link #invalidate()}.
+ * Animated views opt into {@link RenderMode#CONTINUOUS}.
+ * <li>Nothing is drawn while the view can't be seen: its tab is hidden or its
+ * window minimized. Once it reappears a single catch-up frame is drawn, so
+ * rendering cost scales with the visible views rather than the open ones.
+ * <li>GL errors are checked after each frame by a {@link GLErrorChecker} in
+ * the mode configured by its system property (off by default) and logged as
+ * warnings.
+ * <li>Each phase of a frame is timed into the view's {@link FrameStatistics},
+ * published over JMX. Setting the {@value #STATUS_LINE_STATISTICS_PROPERTY}
+ * system property to true also shows them in the view's status line.
+ * </ul>
+ *
+ * @see <a href=
+ *      "https://wadeawalker.wordpress.com/2010/10/09/tutorial-a-cross-platform-workbench-program-using-java-opengl-and-eclipse/">
+ *      https://wadeawalker.wordpress.com/2010/10/09/tutorial-a-cross-platform-
+ *      workbench-program-using-java-opengl-and-eclipse/</a>
+ */
+public abstract class AbstractGLCanvasViewPart extends ViewPart implements IRenderTarget {
+
+	public static final String STATUS_LINE_STATISTICS_PROPERTY = "com.binaryworkspace.rcp.jogl.statusLineStatistics"; //$NON-NLS-1$
+
+	public static final String RENDER_THREAD_PROPERTY = "com.binaryworkspace.rcp.jogl.renderThread"; //$NON-NLS-1$
+
+	private static final long STATUS_LINE_INTERVAL_NANOS = 500000000L;
+
+	private Composite baseComposite;
+
+	private Display display;
+
+	private IGLSurface surface;
+
+	// The control of the surface
+	private Control canvas;
+
+	private volatile boolean disposed;
+
+	// Frame Thread; the surface may draw on another thread while the frame thread waits
+	private long frameStartNanos;
+
+	private long drawnNanos;
+
+	private boolean frameDrawn;
+
+	// Swap interval set on the context, -1 while the driver's default
+	private int swapInterval = -1;
+
+	private volatile RenderMode renderMode = RenderMode.ON_DEMAND;
+
+	private final AtomicBoolean dirty = new AtomicBoolean(true);
+
+	private volatile boolean partVisible = true;
+
+	private volatile boolean iconified;
+
+	private final IPartListener2 partListener = new IPartListener2() {
+		public void partVisible(IWorkbenchPartReference partRef) {
+			if (partRef.getPart(false) == AbstractGLCanvasViewPart.this) {
+				partVisible = true;
+				visibilityChanged();
+			}
+		}
+
+		public void partHidden(IWorkbenchPartReference partRef) {
+			if (partRef.getPart(false) == AbstractGLCanvasViewPart.this) {
+				partVisible = false;
+				visibilityChanged();
+			}
+		}
+
+		public void partActivated(IWorkbenchPartReference partRef) {
+			// Do Nothing.
+		}
+
+		public void partBroughtToTop(IWorkbenchPartReference partRef) {
+			// Do Nothing.
+		}
+
+		public void partClosed(IWorkbenchPartReference partRef) {
+			// Do Nothing.
+		}
+
+		public void partDeactivated(IWorkbenchPartReference partRef) {
+			// Do Nothing.
+		}
+
+		public void partOpened(IWorkbenchPartReference partRef) {
+			// Do Nothing.
+		}
+
+		public void partInputChanged(IWorkbenchPartReference partRef) {
+			// Do Nothing.
+		}
+	};
+
+	private final ShellListener shellListener = new ShellAdapter() {
+		@Override
+		public void shellIconified(ShellEvent e) {
+			iconified = true;
+			visibilityChanged();
+		}
+
+		@Override
+		public void shellDeiconified(ShellEvent e) {
+			iconified = false;
+			visibilityChanged();
+		}
+	};
+
+	private final Viewport viewport = new Viewport();
+
+	private final GLErrorChecker errorChecker = new GLErrorChecker();
+
+	private final String drawDescription = getClass().getSimpleName() + ".draw"; //$NON-NLS-1$
+
+	private final FrameStatistics frameStatistics = new FrameStatistics(getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(this))); //$NON-NLS-1$
+
+	private final GpuFrameTimer gpuFrameTimer = new GpuFrameTimer(frameStatistics.getHistogram(FramePhase.GPU), GpuFrameTimer.DEFAULT_QUERY_COUNT);
+
+	private final boolean statusLineStatistics = Boolean.getBoolean(STATUS_LINE_STATISTICS_PROPERTY);
+
+	private long statusLineUpdateNanos;
+
+	private final Runnable statusLineRunnable = new Runnable() {
+		public void run() {
+			if (!isDisposed()) {
+				getViewSite().getActionBars().getStatusLineManager().setMessage("p50/p99/max " + frameStatistics.getSummary()); //$NON-NLS-1$
+			}
+		}
+	};
+
+	// Called by the surface with its context current, on the frame thread
+	private final IGLSurfaceListener surfaceListener = new IGLSurfaceListener() {
+		public void init(GL2ES2 gl2es2) {
+			errorChecker.install(gl2es2);
+			gpuFrameTimer.init(gl2es2);
+			initGL(gl2es2);
+		}
+
+		public void resized(int width, int height) {
+			// Applied by the next frame
+			viewport.setSize(width, height);
+		}
+
+		public void display(GL2ES2 gl2es2) {
+			long currentNanos = System.nanoTime();
+			frameStatistics.record(FramePhase.MAKE_CURRENT, currentNanos - frameStartNanos);
+			drawnNanos = drawFrame(gl2es2, currentNanos);
+		}
+
+		public void exposed() {
+			invalidate();
+		}
+
+		public void dispose(GL2ES2 gl2es2) {
+			disposeGL(gl2es2);
+			gpuFrameTimer.dispose(gl2es2);
+			errorChecker.uninstall(gl2es2);
+		}
+	};
+
+	@Override
+	public void createPartControl(Composite parent) {
+		// Base Composite
+		baseComposite = new Composite(parent, SWT.NONE);
+		baseComposite.setLayout(new FillLayout());
+
+		display = baseComposite.getDisplay();
+		GLContextShareManager contextShareManager = Activator.getDefault().getContextShareManager();
+
+		// GLProfile, probed in the background since the plug-in started
+		GLProfile glProfile = Activator.getDefault().getGLStartup().getProfile(GLProfile.GL2);
+
+		// Surface, sharing GL objects with every other view
+		surface = getSurfaceType().createSurface(contextShareManager, errorChecker);
+		canvas = surface.create(baseComposite, glProfile, surfaceListener);
+
+		// Redraw on resize, the surface reports the new size to the viewport
+		canvas.addListener(SWT.Resize, new Listener() {
+			public void handleEvent(Event event) {
+				invalidate();
+			}
+		});
+
+		// Redraw on expose
+		canvas.addListener(SWT.Paint, new Listener() {
+			public void handleEvent(Event event) {
+				invalidate();
+			}
+		});
+
+		// Track visibility
+		getSite().getPage().addPartListener(partListener);
+		Shell shell = getSite().getShell();
+		shell.addShellListener(shellListener);
+		iconified = shell.getMinimized();
+
+		if (UILatencyProbe.isEnabled()) {
+			Activator.getDefault().getUILatencyProbe();
+		}
+
+		// Join the shared frame loop
+		frameStatistics.register();
+		getFrameScheduler().register(this);
+		invalidate();
+	}
+
+	/**
+	 * Marks the view as needing a redraw and requests a frame. May be called
+	 * from any thread; several calls before the next frame result in a single
+	 * redraw.
+	 */
+	public void invalidate() {
+		dirty.set(true);
+		if (!isDisposed()) {
+			getFrameScheduler().requestFrame();
+		}
+	}
+
+	/**
+	 * @param renderMode
+	 *            {@link RenderMode#CONTINUOUS} to redraw on every scheduler
+	 *            tick, {@link RenderMode#ON_DEMAND} to redraw only when
+	 *            invalidated.
+	 */
+	public void setRenderMode(RenderMode renderMode) {
+		this.renderMode = renderMode;
+		if (!isDisposed()) {
+			getFrameScheduler().renderModeChanged();
+			invalidate();
+		}
+	}
+
+	public RenderMode getRenderMode() {
+		return renderMode;
+	}
+
+	public boolean isVisible() {
+		return partVisible && !iconified;
+	}
+
+	public boolean needsFrame() {
+		return (renderMode == RenderMode.CONTINUOUS) || dirty.get();
+	}
+
+	/**
+	 * Creates the GL resources of the view (programs, buffers). Called once
+	 * with the GL context current.
+	 */
+	protected void initGL(GL2ES2 gl2es2) {
+		// Do Nothing.
+	}
+
+	/**
+	 * Releases the GL resources created in {@link #initGL(GL2ES2)}. Called
+	 * once with the GL context current before the canvas is disposed.
+	 */
+	protected void disposeGL(GL2ES2 gl2es2) {
+		// Do Nothing.
+	}
+
+	/**
+	 * Called at the start of the first frame after the canvas was resized,
+	 * once the {@link Viewport} has set the GL viewport and computed the new
+	 * projection, see {@link #getProjection()}. Called with the GL context
+	 * current; resizes in between frames result in a single call.
+	 */
+	protected void reshape(GL2ES2 gl2es2, int width, int height) {
+		// Do Nothing.
+	}
+
+	/**
+	 * @return the column major projection matrix, placing the coordinate
+	 *         system origin at the lower left with one unit per pixel. Changes
+	 *         right before {@link #reshape(GL2ES2, int, int)}.
+	 */
+	protected float[] getProjection() {
+		return viewport.getProjection();
+	}
+
+	/**
+	 * @return the viewport of the view.
+	 */
+	protected Viewport getViewport() {
+		return viewport;
+	}
+
+	/**
+	 * @return the error checker of the view's GL context.
+	 */
+	protected GLErrorChecker getErrorChecker() {
+		return errorChecker;
+	}
+
+	/**
+	 * @return the surface type of the view, by default the one chosen on the
+	 *         preference page. Called once, when the view is created.
+	 */
+	protected GLSurfaceType getSurfaceType() {
+		return Activator.getDefault().getSurfaceType();
+	}
+
+	/**
+	 * @return the control showing the frames, for adding SWT listeners. On
+	 *         {@link GLSurfaceType#NEWT} and {@link GLSurfaceType#AWT_BRIDGE}
+	 *         surfaces, mouse and key events go to the {@link #getGLWindow()}
+	 *         or {@link #getAWTComponent()} instead.
+	 */
+	protected Control getCanvas() {
+		return canvas;
+	}
+
+	/**
+	 * @return the NEWT window drawn on the render thread, for adding NEWT
+	 *         listeners, or null unless the surface is
+	 *         {@link GLSurfaceType#NEWT}.
+	 */
+	protected GLWindow getGLWindow() {
+		Object inputSource = (surface != null) ? surface.getInputSource() : null;
+		return (inputSource instanceof GLWindow) ? (GLWindow) inputSource : null;
+	}
+
+	/**
+	 * @return the AWT canvas drawn on the render thread, for adding AWT
+	 *         listeners, or null unless the surface is
+	 *         {@link GLSurfaceType#AWT_BRIDGE}.
+	 */
+	protected java.awt.Component getAWTComponent() {
+		Object inputSource = (surface != null) ? surface.getInputSource() : null;
+		return (inputSource instanceof java.awt.Component) ? (java.awt.Component) inputSource : null;
+	}
+
+	/**
+	 * @return the frame timings of the view.
+	 */
+	public FrameStatistics getFrameStatistics() {
+		return frameStatistics;
+	}
+
+	/**
+	 * Draws a single frame. Called with the GL context current on the UI
+	 * thread, or for surfaces drawing on the {@link GLRenderThread} on that
+	 * thread or the one the surface hands the frame to; buffers are swapped
+	 * by the caller. Must not touch SWT widgets.
+	 */
+	protected abstract void draw(GL2ES2 gl2es2, int width, int height);
+
+	// Frame Thread
+	public void renderFrame() {
+		// Validate for disposal
+		if (isDisposed()) {
+			return;
+		}
+		long startNanos = System.nanoTime();
+		frameStatistics.record(FramePhase.DISPATCH, getFrameScheduler().getDispatchLatencyNanos());
+
+		// Clear before drawing so invalidations during the draw are kept
+		dirty.set(false);
+
+		// Makes the context current, draws and swaps through the surfaceListener
+		frameStartNanos = startNanos;
+		if (!surface.display()) {
+			// Not drawn, try again with the next frame
+			dirty.set(true);
+			return;
+		}
+		long endNanos = System.nanoTime();
+		frameStatistics.record(FramePhase.SWAP, endNanos - drawnNanos);
+		frameStatistics.record(FramePhase.TOTAL, endNanos - startNanos);
+		if (!frameDrawn) {
+			frameDrawn = true;
+			Activator.getDefault().getGLStartup().frameDrawn();
+		}
+		frameCompleted(endNanos);
+
+		if (statusLineStatistics && ((endNanos - statusLineUpdateNanos) >= STATUS_LINE_INTERVAL_NANOS)) {
+			statusLineUpdateNanos = endNanos;
+			if (surface.isOnRenderThread()) {
+				display.asyncExec(statusLineRunnable);
+			} else {
+				statusLineRunnable.run();
+			}
+		}
+	}
+
+	/**
+	 * Called on the frame thread after each frame drawn, once the surface
+	 * swapped its buffers.
+	 *
+	 * @param endNanos
+	 *            {@link System#nanoTime()} when the swap returned.
+	 */
+	protected void frameCompleted(long endNanos) {
+		// Do Nothing.
+	}
+
+	// Frame Thread, with the GL context current
+	private long drawFrame(GL2ES2 gl2es2, long currentNanos) {
+		// Swaps wait for vsync while the scheduler relies on them for pacing
+		boolean vsync = getFrameScheduler().isVsync();
+		if (vsync ? (swapInterval != 1) : (swapInterval == 1)) {
+			swapInterval = vsync ? 1 : 0;
+			gl2es2.setSwapInterval(swapInterval);
+		}
+
+		// Resizes since the last frame
+		boolean resized = viewport.update(gl2es2);
+		int width = viewport.getWidth();
+		int height = viewport.getHeight();
+		if (resized) {
+			reshape(gl2es2, width, height);
+		}
+
+		gpuFrameTimer.begin(gl2es2);
+		draw(gl2es2, width, height);
+		gpuFrameTimer.end(gl2es2);
+
+		// No-op unless error checking is enabled
+		try {
+			errorChecker.check(gl2es2, drawDescription);
+		} catch (RuntimeException e) {
+			Activator.getDefault().getLog().log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, e.getMessage(), e));
+		}
+		long drawnNanos = System.nanoTime();
+		frameStatistics.record(FramePhase.DRAW, drawnNanos - currentNanos);
+		return drawnNanos;
+	}
+
+	private void visibilityChanged() {
+		if (isDisposed()) {
+			return;
+		}
+		getFrameScheduler().visibilityChanged();
+		if (isVisible()) {
+			// Catch up with what happened while hidden
+			invalidate();
+		}
+		visibilityChanged(isVisible());
+	}
+
+	/**
+	 * Called on the UI thread when the view was shown or hidden, e.g. by
+	 * another view in its folder or the shell being iconified. Does nothing
+	 * by default.
+	 */
+	protected void visibilityChanged(boolean visible) {
+		// Do Nothing.
+	}
+
+	public boolean isDisposed() {
+		return disposed || (canvas == null) || canvas.isDisposed();
+	}
+
+	protected FrameScheduler getFrameScheduler() {
+		if ((surface != null) && surface.isOnRenderThread()) {
+			return Activator.getDefault().getRenderThreadScheduler();
+		}
+		return Activator.getDefault().getFrameScheduler();
+	}
+
+	@Override
+	public void setFocus() {
+		// Do Nothing.
+	}
+
+	@Override
+	public void dispose() {
+		if (canvas != null) {
+			disposed = true;
+			getFrameScheduler().unregister(this);
+			getSite().getPage().removePartListener(partListener);
+			Shell shell = getSite().getShell();
+			if ((shell != null) && !shell.isDisposed()) {
+				shell.removeShellListener(shellListener);
+			}
+			frameStatistics.unregister();
+			// Releases the GL resources through the surfaceListener
+			surface.dispose();
+		}
+		super.dispose();
+	}
+}
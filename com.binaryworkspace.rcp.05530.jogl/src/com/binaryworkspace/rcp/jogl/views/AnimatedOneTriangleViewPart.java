@@ -1,22 +1,18 @@
 package com.binaryworkspace.rcp.jogl.views;
 
 import javax.media.opengl.GL;
-import javax.media.opengl.GL2;
-import javax.media.opengl.GLContext;
-import javax.media.opengl.GLDrawableFactory;
-import javax.media.opengl.GLProfile;
-import javax.media.opengl.glu.GLU;
-
-import org.eclipse.swt.SWT;
-import org.eclipse.swt.graphics.Rectangle;
-import org.eclipse.swt.layout.FillLayout;
-import org.eclipse.swt.opengl.GLCanvas;
-import org.eclipse.swt.opengl.GLData;
+import javax.media.opengl.GL2ES2;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.swt.widgets.Composite;
-import org.eclipse.swt.widgets.Event;
-import org.eclipse.swt.widgets.Listener;
-import org.eclipse.ui.PlatformUI;
-import org.eclipse.ui.part.ViewPart;
+
+import com.binaryworkspace.rcp.jogl.Activator;
+import com.binaryworkspace.rcp.jogl.render.RenderMode;
+import com.binaryworkspace.rcp.jogl.util.AsyncProgramBuilder;
+import com.binaryworkspace.rcp.jogl.util.ShaderFileWatcher;
+import com.binaryworkspace.rcp.jogl.util.SimulationLoop;
+import com.binaryworkspace.rcp.jogl.util.VertexBatchRenderer;
 
 /**
  * Renders a basic color triangle being animated using JOGL in a SWT Composite.
@@ -25,6 +21,15 @@ import org.eclipse.ui.part.ViewPart;
  * <ul>
  * <li>This is a modification of the Animated One Triangle example presented as
  * part of the JOGL tutorials and two code examples provided by Wade Walker.
+ * <li>The rotation is advanced by a {@link SimulationLoop} at a fixed rate on
+ * its own thread, so the animation speed doesn't depend on the frame rate;
+ * frames draw the rotation interpolated between the last two steps. The
+ * simulation pauses while the view is hidden.
+ * <li>With the {@value ShaderFileWatcher#HOT_RELOAD_PROPERTY} system property
+ * set, the shaders are built from {@value #VERTEX_SHADER_PATH} and
+ * {@value #FRAGMENT_SHADER_PATH} by an {@link AsyncProgramBuilder} and rebuilt
+ * whenever either file is saved, while the animation keeps running with the
+ * previous program. Compile errors are logged.
  * </ul>
  * 
  * @author Chris Ludka
@@ -40,153 +45,133 @@ import org.eclipse.ui.part.ViewPart;
  *      https://jogamp.org/wiki/index.php/Using_JOGL_in_AWT_SWT_and_Swing</a>
  */
 
-public class AnimatedOneTriangleViewPart extends ViewPart {
+public class AnimatedOneTriangleViewPart extends AbstractGLCanvasViewPart {
 
 	public static final String ID = AnimatedOneTriangleViewPart.class.getName();
 
-	private Composite baseComposite;
+	// Radians per second, the former 0.01 per frame at 60 frames per second
+	private static final double THETA_PER_SECOND = 0.6;
+
+	/**
+	 * Triangle Model, the state is the rotation angle theta.
+	 */
+	private static final SimulationLoop.IModel<double[]> TRIANGLE_MODEL = new SimulationLoop.IModel<double[]>() {
+		public double[] createState() {
+			return new double[1];
+		}
+
+		public void copy(double[] source, double[] target) {
+			target[0] = source[0];
+		}
+
+		public void step(double[] state, double stepSeconds) {
+			state[0] += THETA_PER_SECOND * stepSeconds;
+		}
+
+		public void interpolate(double[] previous, double[] current, double alpha, double[] result) {
+			result[0] = previous[0] + ((current[0] - previous[0]) * alpha);
+		}
+	};
 
-	private GLCanvas glcanvas;
+	private final SimulationLoop<double[]> simulation = new SimulationLoop<double[]>(ID, TRIANGLE_MODEL, SimulationLoop.DEFAULT_STEPS_PER_SECOND);
 
-	private GLContext glContext;
+	// Frame thread
+	private final double[] theta = TRIANGLE_MODEL.createState();
 
-	// Triangle Model
-	private double theta = 0;
-	private double s = 0;
-	private double c = 0;
+	public static final String VERTEX_SHADER_PATH = "shaders/vertex_batch.vert"; //$NON-NLS-1$
+
+	public static final String FRAGMENT_SHADER_PATH = "shaders/vertex_batch.frag"; //$NON-NLS-1$
+
+	private final VertexBatchRenderer batch = new VertexBatchRenderer(3, Activator.getDefault().getShaderProgramCache());
+
+	// Shader hot reload, null unless enabled
+	private AsyncProgramBuilder programBuilder;
+
+	private ShaderFileWatcher shaderFileWatcher;
+
+	public AnimatedOneTriangleViewPart() {
+		setRenderMode(RenderMode.CONTINUOUS);
+		if (ShaderFileWatcher.isEnabled()) {
+			// Built-in sources until the files are read
+			programBuilder = new AsyncProgramBuilder();
+			programBuilder.request(VertexBatchRenderer.VERTEX_SHADER_SOURCE, VertexBatchRenderer.FRAGMENT_SHADER_SOURCE);
+			batch.setProgramBuilder(programBuilder);
+			shaderFileWatcher = new ShaderFileWatcher(Activator.getDefault().getBundle(), VERTEX_SHADER_PATH, FRAGMENT_SHADER_PATH, programBuilder, null);
+		}
+	}
 
 	@Override
 	public void createPartControl(Composite parent) {
-		// Base Composite
-		baseComposite = new Composite(parent, SWT.NONE);
-		baseComposite.setLayout(new FillLayout());
-
-		// GLCanvas
-		GLData gldata = new GLData();
-		gldata.doubleBuffer = true;
-		glcanvas = new GLCanvas(baseComposite, SWT.NO_BACKGROUND, gldata);
-		glcanvas.setCurrent();
-
-		// GLProfile
-		GLProfile glProfile = GLProfile.get(GLProfile.GL2);
-		glContext = GLDrawableFactory.getFactory(glProfile).createExternalGLContext();
-
-		// Add listener to resize the drawing
-		glcanvas.addListener(SWT.Resize, new Listener() {
-			public void handleEvent(Event event) {
-				// Get canvas size
-				Rectangle rectangle = glcanvas.getClientArea();
-				int width = rectangle.width;
-				int height = rectangle.height;
-
-				// Make current
-				glcanvas.setCurrent();
-				glContext.makeCurrent();
-
-				// Update the projection
-				GL2 gl2 = glContext.getGL().getGL2();
-				gl2.glMatrixMode(GL2.GL_PROJECTION);
-				gl2.glLoadIdentity();
-
-				/*
-				 * Size the draw space the coordinate system origin residing at
-				 * the lower left.
-				 */
-				GLU glu = new GLU();
-				glu.gluOrtho2D(0.0f, width, 0.0f, height);
-
-				// Identity
-				gl2.glMatrixMode(GL2.GL_MODELVIEW);
-				gl2.glLoadIdentity();
-
-				// Set GLViewPort
-				gl2.glViewport(0, 0, width, height);
-
-				// Release Context
-				glContext.release();
-			}
-		});
-
-		// Create render thread
-		(new Thread() {
-			public void run() {
-				while ((glcanvas != null) && !glcanvas.isDisposed()) {
-					render();
-					try {
-						/*
-						 * Don't make loop too tight, or not enough time to
-						 * process window messages properly.
-						 */
-						sleep(1);
-					} catch (InterruptedException interruptedexception) {
-						/*
-						 * Application just quits on interrupt, so nothing
-						 * required here.
-						 */
-					}
-				}
-			}
-		}).start();
+		super.createPartControl(parent);
+		simulation.start();
+		if (shaderFileWatcher != null) {
+			shaderFileWatcher.start();
+		}
+	}
+
+	@Override
+	protected void visibilityChanged(boolean visible) {
+		if (visible) {
+			simulation.start();
+		} else {
+			simulation.stop();
+		}
+	}
+
+	@Override
+	protected void initGL(GL2ES2 gl2es2) {
+		batch.init(gl2es2);
+	}
+
+	@Override
+	protected void reshape(GL2ES2 gl2es2, int width, int height) {
+		super.reshape(gl2es2, width, height);
+		batch.setProjection(getProjection());
 	}
 
-	// Render
-	protected void render() {
-		// UI Render Thread
-		PlatformUI.getWorkbench().getDisplay().syncExec(new Runnable() {
-			public void run() {
-				// Validate for disposal
-				if ((glcanvas == null) || glcanvas.isDisposed()) {
-					return;
-				}
-
-				// Get canvas size
-				Rectangle rectangle = glcanvas.getClientArea();
-				int width = rectangle.width;
-				int height = rectangle.height;
-
-				// Model Update
-				theta += 0.01;
-				s = Math.sin(theta);
-				c = Math.cos(theta);
-				double sx = (1 + s) * width / 2;
-				double sy = (1 + s) * height / 2;
-				double cx = (1 + c) * width / 2;
-				double cy = (1 + c) * height / 2;
-
-				// Make current
-				glcanvas.setCurrent();
-				glContext.makeCurrent();
-
-				// Update the projection
-				GL2 gl2 = glContext.getGL().getGL2();
-				gl2.glClear(GL.GL_COLOR_BUFFER_BIT);
-
-				// Draw a triangle filling the window
-				gl2.glLoadIdentity();
-				gl2.glBegin(GL.GL_TRIANGLES);
-				gl2.glColor3f(1, 0, 0);
-				gl2.glVertex2d(cx, cy);
-				gl2.glColor3f(0, 1, 0);
-				gl2.glVertex2d(0, cy);
-				gl2.glColor3f(0, 0, 1);
-				gl2.glVertex2d(sx, sy);
-				gl2.glEnd();
-
-				// Release Context
-				glcanvas.swapBuffers();
-				glContext.release();
+	@Override
+	protected void draw(GL2ES2 gl2es2, int width, int height) {
+		// Model state at the time of this frame
+		simulation.sample(theta);
+		double s = Math.sin(theta[0]);
+		double c = Math.cos(theta[0]);
+		float sx = (float) ((1 + s) * width / 2);
+		float sy = (float) ((1 + s) * height / 2);
+		float cx = (float) ((1 + c) * width / 2);
+		float cy = (float) ((1 + c) * height / 2);
+
+		// Clear
+		gl2es2.glClear(GL.GL_COLOR_BUFFER_BIT);
+
+		// Draw a triangle filling the window
+		batch.clear();
+		batch.addVertex(cx, cy, 1, 0, 0);
+		batch.addVertex(0, cy, 0, 1, 0);
+		batch.addVertex(sx, sy, 0, 0, 1);
+		batch.draw(gl2es2, GL.GL_TRIANGLES);
+
+		if (programBuilder != null) {
+			RuntimeException failure = programBuilder.takeFailure();
+			if (failure != null) {
+				Activator.getDefault().getLog().log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, failure.getMessage(), failure));
 			}
-		});
+		}
 	}
 
 	@Override
-	public void setFocus() {
-		// Do Nothing.
+	protected void disposeGL(GL2ES2 gl2es2) {
+		batch.dispose(gl2es2);
+		if (programBuilder != null) {
+			programBuilder.dispose(gl2es2);
+		}
 	}
 
 	@Override
 	public void dispose() {
-		glcanvas.dispose();
+		simulation.stop();
+		if (shaderFileWatcher != null) {
+			shaderFileWatcher.dispose();
+		}
 		super.dispose();
 	}
 }
@@ -0,0 +1,75 @@
+package com.binaryworkspace.rcp.jogl.views;
+
+import java.util.concurrent.ForkJoinPool;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
+
+import com.binaryworkspace.rcp.jogl.Activator;
+import com.binaryworkspace.rcp.jogl.render.RenderMode;
+import com.binaryworkspace.rcp.jogl.util.InstanceField;
+import com.binaryworkspace.rcp.jogl.util.InstancedRenderer;
+
+/**
+ * Renders a large number of animated color triangles with instanced drawing.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The instances are updated in parallel on the common fork/join pool and
+ * drawn by an {@link InstancedRenderer}: one template triangle plus a
+ * per-instance attribute buffer refreshed every frame.
+ * <li>The number of instances defaults to {@value #DEFAULT_INSTANCE_COUNT} and
+ * can be set with the {@value #INSTANCE_COUNT_PROPERTY} system property (1 to
+ * 1M and beyond).
+ * <li>Instances move by the time elapsed since the previous frame, so their
+ * speed doesn't depend on the frame rate.
+ * </ul>
+ */
+public class InstancedTrianglesViewPart extends AbstractGLCanvasViewPart {
+
+	public static final String ID = InstancedTrianglesViewPart.class.getName();
+
+	public static final String INSTANCE_COUNT_PROPERTY = "com.binaryworkspace.rcp.jogl.instanceCount"; //$NON-NLS-1$
+
+	public static final int DEFAULT_INSTANCE_COUNT = 100000;
+
+	// Longest step, so the instances don't jump after the view was hidden
+	private static final float MAX_STEP_SECONDS = 0.1f;
+
+	// Triangle around the instance position, in unit square coordinates
+	private static final float[] TEMPLATE = { -0.004f, -0.003f, 0.004f, -0.003f, 0.0f, 0.005f };
+
+	private final InstanceField instances = new InstanceField(Math.max(0, Integer.getInteger(INSTANCE_COUNT_PROPERTY, DEFAULT_INSTANCE_COUNT)), 5530);
+
+	private final InstancedRenderer renderer = new InstancedRenderer(TEMPLATE, Activator.getDefault().getShaderProgramCache());
+
+	// Frame thread
+	private long lastFrameNanos;
+
+	public InstancedTrianglesViewPart() {
+		setRenderMode(RenderMode.CONTINUOUS);
+	}
+
+	@Override
+	protected void initGL(GL2ES2 gl2es2) {
+		renderer.init(gl2es2);
+	}
+
+	@Override
+	protected void draw(GL2ES2 gl2es2, int width, int height) {
+		long now = System.nanoTime();
+		float seconds = (lastFrameNanos == 0) ? 0 : Math.min(MAX_STEP_SECONDS, (now - lastFrameNanos) / 1e9f);
+		lastFrameNanos = now;
+
+		// Clear
+		gl2es2.glClear(GL.GL_COLOR_BUFFER_BIT);
+
+		// Update and draw all instances
+		renderer.draw(gl2es2, instances, ForkJoinPool.commonPool(), seconds);
+	}
+
+	@Override
+	protected void disposeGL(GL2ES2 gl2es2) {
+		renderer.dispose(gl2es2);
+	}
+}
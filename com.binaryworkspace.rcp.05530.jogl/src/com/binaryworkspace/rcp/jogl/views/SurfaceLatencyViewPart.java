@@ -0,0 +1,293 @@
+package com.binaryworkspace.rcp.jogl.views;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.PartInitException;
+
+import com.binaryworkspace.rcp.jogl.Activator;
+import com.binaryworkspace.rcp.jogl.render.GLSurfaceType;
+import com.binaryworkspace.rcp.jogl.render.RenderMode;
+import com.binaryworkspace.rcp.jogl.util.FrameHistogram;
+import com.binaryworkspace.rcp.jogl.util.VertexBatchRenderer;
+import com.jogamp.newt.event.MouseAdapter;
+import com.jogamp.newt.event.MouseEvent;
+import com.jogamp.newt.opengl.GLWindow;
+
+/**
+ * Measures the input-to-photon latency and frame pacing of a
+ * {@link GLSurfaceType}, to choose the fastest surface per platform.
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The surface type is the view's secondary id, e.g. {@code NEWT};
+ * without one, the type chosen on the preference page.
+ * <li>Every {@value #PROBE_INTERVAL_MILLIS} ms a mouse move over the view is
+ * posted with {@link org.eclipse.swt.widgets.Display#post(Event)}, cycling
+ * through three positions. The surface's own input source (SWT, NEWT or AWT)
+ * reports the pointer position, and each frame draws a bar where the pointer
+ * was last reported. Input-to-photon is the time from posting the move until
+ * the buffers of the first frame drawing the bar at the new position were
+ * swapped; the time until the display scans the frame out is not included.
+ * <li>Frame pacing is the interval between the ends of consecutive frames,
+ * rendered {@link RenderMode#CONTINUOUS}ly; on a steady surface it stays
+ * close to the scheduler's frame period.
+ * <li>After {@value #WARM_UP_SAMPLES} warm up samples, {@value #SAMPLE_COUNT}
+ * samples are taken. A move not drawn within a second counts as lost. The
+ * results are logged and shown as the view's description.
+ * <li>This moves the real mouse pointer, so the view must stay on top and
+ * the mouse untouched while it runs. Setting the {@value #RUN_ALL_PROPERTY}
+ * system property to true opens the view at startup and runs every surface
+ * type in turn.
+ * </ul>
+ */
+public class SurfaceLatencyViewPart extends AbstractGLCanvasViewPart {
+
+	public static final String ID = SurfaceLatencyViewPart.class.getName();
+
+	public static final String RUN_ALL_PROPERTY = "com.binaryworkspace.rcp.jogl.surfaceLatency"; //$NON-NLS-1$
+
+	public static final int PROBE_INTERVAL_MILLIS = 50;
+
+	public static final int WARM_UP_SAMPLES = 10;
+
+	public static final int SAMPLE_COUNT = 200;
+
+	// Lets the surface realize and draw its first frames
+	private static final int START_DELAY_MILLIS = 1000;
+
+	private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private static final int BAR_WIDTH = 4;
+
+	private final VertexBatchRenderer batch = new VertexBatchRenderer(6, Activator.getDefault().getShaderProgramCache());
+
+	private final FrameHistogram inputToPhoton = new FrameHistogram();
+
+	private final FrameHistogram frameInterval = new FrameHistogram();
+
+	// Input Thread of the surface
+	private volatile int receivedX = -1;
+
+	// Posted on the UI thread, measured on the frame thread
+	private final AtomicBoolean pending = new AtomicBoolean();
+
+	private volatile int postedX = -1;
+
+	private volatile long postedNanos;
+
+	// UI Thread
+	private int probeCount;
+
+	private int lostCount;
+
+	// Frame Thread
+	private int drawnX = -1;
+
+	private long lastFrameEndNanos;
+
+	private final Runnable probe = new Runnable() {
+		public void run() {
+			if (isDisposed()) {
+				return;
+			}
+			if (pending.get()) {
+				if ((System.nanoTime() - postedNanos) < TIMEOUT_NANOS) {
+					// Not drawn yet
+					getCanvas().getDisplay().timerExec(PROBE_INTERVAL_MILLIS, this);
+					return;
+				}
+				if (pending.compareAndSet(true, false)) {
+					lostCount++;
+				}
+			}
+			if (probeCount == (WARM_UP_SAMPLES + SAMPLE_COUNT)) {
+				finish();
+				return;
+			}
+			if (probeCount == WARM_UP_SAMPLES) {
+				inputToPhoton.reset();
+				frameInterval.reset();
+				lostCount = 0;
+			}
+			if (!post()) {
+				Activator.getDefault().getLog().log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Surface latency: mouse moves can't be posted on this platform")); //$NON-NLS-1$
+				setContentDescription(getSurfaceType() + ": mouse moves can't be posted on this platform");
+				return;
+			}
+			probeCount++;
+			getCanvas().getDisplay().timerExec(PROBE_INTERVAL_MILLIS, this);
+		}
+	};
+
+	public SurfaceLatencyViewPart() {
+		setRenderMode(RenderMode.CONTINUOUS);
+	}
+
+	/**
+	 * Opens the view for the first surface type if the
+	 * {@value #RUN_ALL_PROPERTY} system property is set; each finished run
+	 * opens the next type.
+	 */
+	public static void openIfRequested(IWorkbenchWindow window) {
+		if (Boolean.getBoolean(RUN_ALL_PROPERTY)) {
+			showView(window.getActivePage(), GLSurfaceType.values()[0]);
+		}
+	}
+
+	@Override
+	protected GLSurfaceType getSurfaceType() {
+		return GLSurfaceType.parse(getViewSite().getSecondaryId(), super.getSurfaceType());
+	}
+
+	@Override
+	public void createPartControl(Composite parent) {
+		super.createPartControl(parent);
+		setPartName(getPartName() + " (" + getSurfaceType() + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+		addInputListener();
+		getCanvas().getDisplay().timerExec(START_DELAY_MILLIS, probe);
+	}
+
+	private void addInputListener() {
+		GLWindow glWindow = getGLWindow();
+		if (glWindow != null) {
+			glWindow.addMouseListener(new MouseAdapter() {
+				@Override
+				public void mouseMoved(MouseEvent e) {
+					receivedX = e.getX();
+				}
+			});
+			return;
+		}
+		java.awt.Component awtComponent = getAWTComponent();
+		if (awtComponent != null) {
+			awtComponent.addMouseMotionListener(new java.awt.event.MouseMotionAdapter() {
+				@Override
+				public void mouseMoved(java.awt.event.MouseEvent e) {
+					receivedX = e.getX();
+				}
+			});
+			return;
+		}
+		getCanvas().addListener(SWT.MouseMove, new Listener() {
+			public void handleEvent(Event event) {
+				receivedX = event.x;
+			}
+		});
+	}
+
+	// UI Thread
+	private boolean post() {
+		// Cycle through three positions, so every move changes the position
+		// drawn, even after a lost one
+		Control canvas = getCanvas();
+		Point size = canvas.getSize();
+		int x = (size.x * (1 + (probeCount % 3))) / 4;
+		Point location = canvas.toDisplay(x, size.y / 2);
+		Event event = new Event();
+		event.type = SWT.MouseMove;
+		event.x = location.x;
+		event.y = location.y;
+		postedX = x;
+		postedNanos = System.nanoTime();
+		pending.set(true);
+		return canvas.getDisplay().post(event);
+	}
+
+	// UI Thread
+	private void finish() {
+		String summary = String.format("%s: input-to-photon p50/p99/max %.1f/%.1f/%.1f ms, frame interval p50/p99/max %.1f/%.1f/%.1f ms, %d samples, %d lost", //$NON-NLS-1$
+				getSurfaceType(), toMillis(inputToPhoton.getPercentileNanos(50)), toMillis(inputToPhoton.getPercentileNanos(99)), toMillis(inputToPhoton.getMaxNanos()),
+				toMillis(frameInterval.getPercentileNanos(50)), toMillis(frameInterval.getPercentileNanos(99)), toMillis(frameInterval.getMaxNanos()), inputToPhoton.getCount(), lostCount);
+		setContentDescription(summary);
+		Activator.getDefault().getLog().log(new Status(IStatus.INFO, Activator.PLUGIN_ID, "Surface latency " + summary)); //$NON-NLS-1$
+
+		if (Boolean.getBoolean(RUN_ALL_PROPERTY)) {
+			// Next surface type, one view at a time
+			int next = getSurfaceType().ordinal() + 1;
+			if (next < GLSurfaceType.values().length) {
+				IWorkbenchPage page = getSite().getPage();
+				page.hideView(this);
+				showView(page, GLSurfaceType.values()[next]);
+			}
+		}
+	}
+
+	private static void showView(IWorkbenchPage page, GLSurfaceType surfaceType) {
+		try {
+			page.showView(ID, surfaceType.name(), IWorkbenchPage.VIEW_ACTIVATE);
+		} catch (PartInitException e) {
+			Activator.getDefault().getLog().log(new Status(IStatus.ERROR, Activator.PLUGIN_ID, e.getMessage(), e));
+		}
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / 1000000.0;
+	}
+
+	@Override
+	protected void initGL(GL2ES2 gl2es2) {
+		batch.init(gl2es2);
+	}
+
+	@Override
+	protected void reshape(GL2ES2 gl2es2, int width, int height) {
+		super.reshape(gl2es2, width, height);
+		batch.setProjection(getProjection());
+	}
+
+	@Override
+	protected void draw(GL2ES2 gl2es2, int width, int height) {
+		// Position reported by the input thread at the time of this frame
+		int x = receivedX;
+		drawnX = x;
+
+		// Clear
+		gl2es2.glClear(GL.GL_COLOR_BUFFER_BIT);
+
+		// Draw a bar at the pointer position
+		if (x >= 0) {
+			float left = x - (BAR_WIDTH / 2);
+			float right = left + BAR_WIDTH;
+			batch.clear();
+			batch.addVertex(left, 0, 1, 1, 1);
+			batch.addVertex(right, 0, 1, 1, 1);
+			batch.addVertex(right, height, 1, 1, 1);
+			batch.addVertex(left, 0, 1, 1, 1);
+			batch.addVertex(right, height, 1, 1, 1);
+			batch.addVertex(left, height, 1, 1, 1);
+			batch.draw(gl2es2, GL.GL_TRIANGLES);
+		}
+	}
+
+	@Override
+	protected void frameCompleted(long endNanos) {
+		if (lastFrameEndNanos != 0) {
+			frameInterval.record(endNanos - lastFrameEndNanos);
+		}
+		lastFrameEndNanos = endNanos;
+
+		// First frame showing the posted position
+		if ((drawnX == postedX) && pending.compareAndSet(true, false)) {
+			inputToPhoton.record(endNanos - postedNanos);
+		}
+	}
+
+	@Override
+	protected void disposeGL(GL2ES2 gl2es2) {
+		batch.dispose(gl2es2);
+	}
+}
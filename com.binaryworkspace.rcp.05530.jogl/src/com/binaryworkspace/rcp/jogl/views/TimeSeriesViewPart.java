@@ -0,0 +1,301 @@
+package com.binaryworkspace.rcp.jogl.views;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+
+import com.binaryworkspace.rcp.jogl.Activator;
+import com.binaryworkspace.rcp.jogl.util.DecimatedSeriesRenderer;
+import com.binaryworkspace.rcp.jogl.util.MappedSampleFile;
+import com.binaryworkspace.rcp.jogl.util.MinMaxPyramid;
+import com.jogamp.newt.event.MouseAdapter;
+import com.jogamp.newt.event.MouseEvent;
+import com.jogamp.newt.opengl.GLWindow;
+
+/**
+ * Plots a time series of any size from a memory-mapped sample file, with
+ * panning (drag) and zooming (mouse wheel).
+ * <p>
+ * <b>Notes:</b>
+ * <ul>
+ * <li>The file set by the {@value #SERIES_FILE_PROPERTY} system property is
+ * mapped by a {@link MappedSampleFile}: little endian 32 bit floats. Without
+ * it a file of {@value #SERIES_SAMPLES_PROPERTY} synthetic samples (default
+ * {@value #DEFAULT_SAMPLES}) is written to the plug-in's state location the
+ * first time the view opens, and reused afterwards.
+ * <li>Not part of the perspective, opened with File &gt; Time Series.
+ * <li>A {@link MinMaxPyramid} is built on the shared pyramid build pool of
+ * the {@link Activator} while the view already draws what is built.
+ * <li>A {@link DecimatedSeriesRenderer} draws one min/max per pixel, so frame
+ * time depends on the view size, not on the number of samples.
+ * </ul>
+ */
+public class TimeSeriesViewPart extends AbstractGLCanvasViewPart {
+
+	public static final String ID = TimeSeriesViewPart.class.getName();
+
+	public static final String SERIES_FILE_PROPERTY = "com.binaryworkspace.rcp.jogl.seriesFile"; //$NON-NLS-1$
+
+	public static final String SERIES_SAMPLES_PROPERTY = "com.binaryworkspace.rcp.jogl.seriesSamples"; //$NON-NLS-1$
+
+	public static final long DEFAULT_SAMPLES = 16L * 1024 * 1024;
+
+	// Zoom factor per wheel click
+	private static final double ZOOM_PER_CLICK = 0.8;
+
+	// Fewest samples across the view
+	private static final double MIN_SPAN = 16;
+
+	private volatile MinMaxPyramid pyramid;
+
+	// Samples at the left and right edges; replaced, never modified
+	private volatile double[] range;
+
+	private volatile boolean disposing;
+
+	// Frame thread
+	private DecimatedSeriesRenderer renderer;
+	private final float[] valueRange = new float[2];
+
+	// UI thread
+	private int dragX = -1;
+
+	private final Runnable invalidateRunnable = new Runnable() {
+		public void run() {
+			invalidate();
+		}
+	};
+
+	@Override
+	public void createPartControl(Composite parent) {
+		super.createPartControl(parent);
+		addNavigationListeners();
+
+		// Map the file and build its pyramid in the background
+		final ExecutorService executor = Activator.getDefault().getPyramidBuildExecutor();
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					MinMaxPyramid newPyramid = new MinMaxPyramid(new MappedSampleFile(getSeriesFile()), invalidateRunnable);
+					newPyramid.build(executor, Activator.getDefault().getPyramidBuildThreads());
+					pyramid = newPyramid;
+					if (disposing) {
+						close(newPyramid);
+					}
+					invalidate();
+				} catch (IOException | RuntimeException e) {
+					Activator.getDefault().getLog().log(new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Unable to open the time series", e));
+				}
+			}
+		});
+	}
+
+	// Pyramid Builder Thread
+	private static File getSeriesFile() throws IOException {
+		String path = System.getProperty(SERIES_FILE_PROPERTY);
+		if (path != null) {
+			return new File(path);
+		}
+		long samples = Long.getLong(SERIES_SAMPLES_PROPERTY, DEFAULT_SAMPLES);
+		File directory = Activator.getDefault().getStateLocation().append("series").toFile(); //$NON-NLS-1$
+		File file = new File(directory, "synthetic-" + samples + ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+		if (file.length() == (samples * MappedSampleFile.BYTES_PER_SAMPLE)) {
+			// Written by an earlier start
+			return file;
+		}
+
+		// Write to a temporary file first so a partial file is never reused
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create: " + directory);
+		}
+		File tempFile = new File(directory, file.getName() + ".tmp"); //$NON-NLS-1$
+		try {
+			MappedSampleFile.writeSynthetic(tempFile, samples, 5530);
+		} catch (IOException e) {
+			tempFile.delete();
+			throw e;
+		}
+		file.delete();
+		if (!tempFile.renameTo(file)) {
+			tempFile.delete();
+			throw new IOException("Unable to rename to: " + file);
+		}
+		return file;
+	}
+
+	private void addNavigationListeners() {
+		final GLWindow glWindow = getGLWindow();
+		if (glWindow != null) {
+			glWindow.addMouseListener(new MouseAdapter() {
+				@Override
+				public void mousePressed(MouseEvent e) {
+					dragX = e.getX();
+				}
+
+				@Override
+				public void mouseDragged(MouseEvent e) {
+					pan(dragX - e.getX(), glWindow.getWidth());
+					dragX = e.getX();
+				}
+
+				@Override
+				public void mouseWheelMoved(MouseEvent e) {
+					zoom(e.getX(), glWindow.getWidth(), e.getRotation()[1]);
+				}
+			});
+			return;
+		}
+		final java.awt.Component awtComponent = getAWTComponent();
+		if (awtComponent != null) {
+			java.awt.event.MouseAdapter mouseAdapter = new java.awt.event.MouseAdapter() {
+				@Override
+				public void mousePressed(java.awt.event.MouseEvent e) {
+					dragX = e.getX();
+				}
+
+				@Override
+				public void mouseDragged(java.awt.event.MouseEvent e) {
+					pan(dragX - e.getX(), awtComponent.getWidth());
+					dragX = e.getX();
+				}
+
+				@Override
+				public void mouseWheelMoved(java.awt.event.MouseWheelEvent e) {
+					// AWT counts rotation towards the user as positive
+					zoom(e.getX(), awtComponent.getWidth(), -e.getWheelRotation());
+				}
+			};
+			awtComponent.addMouseListener(mouseAdapter);
+			awtComponent.addMouseMotionListener(mouseAdapter);
+			awtComponent.addMouseWheelListener(mouseAdapter);
+			return;
+		}
+		Listener listener = new Listener() {
+			public void handleEvent(Event event) {
+				int width = getCanvas().getSize().x;
+				switch (event.type) {
+				case SWT.MouseDown:
+					dragX = (event.button == 1) ? event.x : -1;
+					break;
+				case SWT.MouseMove:
+					if (dragX >= 0) {
+						pan(dragX - event.x, width);
+						dragX = event.x;
+					}
+					break;
+				case SWT.MouseUp:
+					dragX = -1;
+					break;
+				case SWT.MouseVerticalWheel:
+					zoom(event.x, width, event.count);
+					break;
+				}
+			}
+		};
+		getCanvas().addListener(SWT.MouseDown, listener);
+		getCanvas().addListener(SWT.MouseMove, listener);
+		getCanvas().addListener(SWT.MouseUp, listener);
+		getCanvas().addListener(SWT.MouseVerticalWheel, listener);
+	}
+
+	// Input Thread
+	private void pan(int dx, int width) {
+		double[] current = range;
+		if ((current == null) || (width <= 0)) {
+			return;
+		}
+		double delta = (dx * (current[1] - current[0])) / width;
+		setRange(current[0] + delta, current[1] + delta);
+	}
+
+	// Input Thread
+	private void zoom(int x, int width, float clicks) {
+		double[] current = range;
+		if ((current == null) || (width <= 0) || (clicks == 0)) {
+			return;
+		}
+		double span = current[1] - current[0];
+		double anchor = current[0] + ((span * x) / width);
+		double count = pyramid.getCount();
+		double newSpan = Math.max(MIN_SPAN, Math.min(4 * count, span * Math.pow(ZOOM_PER_CLICK, clicks)));
+		double from = anchor - (((anchor - current[0]) * newSpan) / span);
+		setRange(from, from + newSpan);
+	}
+
+	private void setRange(double from, double to) {
+		range = new double[] { from, to };
+		invalidate();
+	}
+
+	@Override
+	protected void draw(GL2ES2 gl2es2, int width, int height) {
+		// Clear
+		gl2es2.glClear(GL.GL_COLOR_BUFFER_BIT);
+
+		MinMaxPyramid current = pyramid;
+		if (current == null) {
+			return;
+		}
+		if (renderer == null) {
+			renderer = new DecimatedSeriesRenderer(current, Activator.getDefault().getShaderProgramCache());
+			renderer.init(gl2es2);
+		}
+		if (range == null) {
+			range = new double[] { 0, Math.max(1, current.getCount()) };
+		}
+		double[] visible = range;
+
+		// Scale to all samples once known, with a margin
+		if (!current.totalMinMax(valueRange, 0) || (valueRange[0] >= valueRange[1])) {
+			valueRange[0] = -1;
+			valueRange[1] = 1;
+		}
+		float margin = (valueRange[1] - valueRange[0]) * 0.05f;
+
+		// Draw the visible samples
+		if (!renderer.draw(gl2es2, visible[0], visible[1], valueRange[0] - margin, valueRange[1] + margin, width)) {
+			// Complete with the next frame; tiles still building are also
+			// reported by the pyramid's progress listener
+			if (current.getFailure() == null) {
+				invalidate();
+			}
+		}
+	}
+
+	@Override
+	protected void disposeGL(GL2ES2 gl2es2) {
+		if (renderer != null) {
+			renderer.dispose(gl2es2);
+			renderer = null;
+		}
+	}
+
+	@Override
+	public void dispose() {
+		disposing = true;
+		MinMaxPyramid current = pyramid;
+		if (current != null) {
+			close(current);
+		}
+		super.dispose();
+	}
+
+	private static void close(MinMaxPyramid pyramid) {
+		pyramid.cancel();
+		try {
+			pyramid.getFile().close();
+		} catch (IOException e) {
+			Activator.getDefault().getLog().log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Unable to close the time series", e));
+		}
+	}
+}